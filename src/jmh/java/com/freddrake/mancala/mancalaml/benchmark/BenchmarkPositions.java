@@ -0,0 +1,43 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+
+import java.util.Random;
+
+/**
+ * Builds a fixed set of mid-game positions, so benchmarks can cycle through realistic boards instead
+ * of measuring the same one over and over.
+ */
+final class BenchmarkPositions {
+    private BenchmarkPositions() {}
+
+    /**
+     * Plays random games and keeps a copy of the board at a random point in each one.  Every returned
+     * board has at least one valid move for player one.
+     */
+    static GameBoard[] randomPositions(int count, long seed) {
+        Random random = new Random(seed);
+        RandomEngine playerOne = RandomEngine.builder().player(Player.PLAYER_ONE).random(random).build();
+        RandomEngine playerTwo = RandomEngine.builder().player(Player.PLAYER_TWO).random(random).build();
+
+        GameBoard[] positions = new GameBoard[count];
+        GameBoard board = new GameBoard();
+        int found = 0;
+        while (found < count) {
+            board.resetGameBoard();
+            int turns = random.nextInt(20);
+            for (int turn = 0; turn < turns; turn++) {
+                if (playerOne.executeMove(board) || playerTwo.executeMove(board)) {
+                    break;
+                }
+            }
+            if (!board.isGameOver(Player.PLAYER_ONE)) {
+                positions[found] = new GameBoard();
+                board.copyInto(positions[found++]);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,78 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.BoardSnapshot;
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation, position keys and copying boards over a set of random mid-game positions.  GameBoard.executeMove
+ * is covered by SowingBenchmark.  copyByReset is how boards were copied before copyInto existed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private GameBoard[] positions;
+    private int next;
+    private final GameBoard scratch = new GameBoard();
+    private final BoardSnapshot snapshot = new BoardSnapshot();
+    private final int[] pods = new int[12];
+
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(1024, 42);
+    }
+
+    @Benchmark
+    public List<Integer> validMoves() {
+        return nextPosition().validMoves(Player.PLAYER_ONE);
+    }
+
+    @Benchmark
+    public int validMoveMask() {
+        return nextPosition().validMoveMask(Player.PLAYER_ONE);
+    }
+
+    @Benchmark
+    public long positionHash() {
+        return nextPosition().positionHash(Player.PLAYER_ONE);
+    }
+
+    @Benchmark
+    public boolean isGameOver() {
+        return nextPosition().isGameOver(Player.PLAYER_ONE);
+    }
+
+    @Benchmark
+    public GameBoard copyInto() {
+        nextPosition().copyInto(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public GameBoard copyByReset() {
+        GameBoard position = nextPosition();
+        scratch.resetGameBoard(position.playerPoints(Player.PLAYER_ONE), position.playerPoints(Player.PLAYER_TWO),
+                position.pebbleField(Player.PLAYER_ONE, pods));
+        return scratch;
+    }
+
+    @Benchmark
+    public GameBoard snapshotRestore() {
+        nextPosition().snapshot(snapshot);
+        scratch.restore(snapshot);
+        return scratch;
+    }
+
+    private GameBoard nextPosition() {
+        next = (next + 1) & (positions.length - 1);
+        return positions[next];
+    }
+}
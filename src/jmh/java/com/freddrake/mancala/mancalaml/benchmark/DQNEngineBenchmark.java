@@ -0,0 +1,58 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.DQNEngine;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.nd4j.linalg.learning.config.Adam;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One forward pass per move through an untrained network shaped like the one AppConfiguration builds.
+ * Needs a working ND4J backend; see dl4j.backend in the pom.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DQNEngineBenchmark {
+    private GameBoard[] positions;
+    private int next;
+    private DQNEngine dqnEngine;
+
+    @Setup
+    public void setUp() throws IOException {
+        positions = BenchmarkPositions.randomPositions(1024, 42);
+
+        DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+                .l2(0.01)
+                .numLayer(1)
+                .numHiddenNodes(250)
+                .updater(new Adam())
+                .build();
+        IDQN dqn = new DQNFactoryStdDense(netConfiguration).buildDQN(new int[]{12}, 6);
+        ByteArrayOutputStream network = new ByteArrayOutputStream();
+        dqn.save(network);
+
+        dqnEngine = DQNEngine.builder()
+                .player(Player.PLAYER_ONE)
+                .observationSpace(new ArrayObservationSpace<>(new int[]{12}))
+                .networkInputStream(new ByteArrayInputStream(network.toByteArray()))
+                .build();
+    }
+
+    @Benchmark
+    public int chooseMove() {
+        next = (next + 1) & (positions.length - 1);
+        return dqnEngine.chooseMove(positions[next]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The simulation path that feeds QLearningDiscreteDense: choosing a random move, and stepping the
+ * MDP, which plays our move plus the opponent's reply.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+    private GameBoard[] positions;
+    private int next;
+    private RandomEngine randomEngine;
+
+    private GameMDP gameMDP;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(1024, 42);
+        randomEngine = RandomEngine.builder().player(Player.PLAYER_ONE).random(new Random(42)).build();
+
+        gameMDP = GameMDP.builder()
+                .player(Player.PLAYER_ONE)
+                .oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(7)).build())
+                .discreteSpace(new DiscreteSpace(6))
+                .observationSpace(new ArrayObservationSpace<>(new int[]{12}))
+                .illegalMoveReward(-100)
+                .build();
+        gameMDP.reset();
+        random = new Random(42);
+    }
+
+    @Benchmark
+    public int randomEngineChooseMove() {
+        next = (next + 1) & (positions.length - 1);
+        return randomEngine.chooseMove(positions[next]);
+    }
+
+    @Benchmark
+    public StepReply<GameObservation> gameMDPStep() {
+        if (gameMDP.isDone()) {
+            gameMDP.reset();
+        }
+
+        // Only pick legal moves, so that every step is a real move rather than a forfeit.
+        return gameMDP.step(GameBoard.randomMoveBit(gameMDP.getGameBoard().validMoveMask(Player.PLAYER_ONE), random));
+    }
+}
@@ -0,0 +1,66 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.search.MctsEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monte Carlo tree search over random mid-game positions with a fixed simulation budget per move.
+ * simulationsPerSecond counts the simulations run by all threads together.  Run with -p threads=...
+ * to match the machine's cores.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MctsBenchmark {
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    @Param({"10000"})
+    private long simulations;
+
+    private GameBoard[] positions;
+    private MctsEngine engine;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Simulations {
+        public long simulations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            simulations = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(64, 42);
+        engine = MctsEngine.builder()
+                .player(Player.PLAYER_ONE)
+                .threads(threads)
+                .simulations(simulations)
+                .seed(42L)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int simulationsPerSecond(Simulations counter) {
+        next = (next + 1) & (positions.length - 1);
+        int move = engine.chooseMove(positions[next]);
+        counter.simulations += engine.getLastSimulations();
+        return move;
+    }
+}
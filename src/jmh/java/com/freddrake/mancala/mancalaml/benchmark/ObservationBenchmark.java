@@ -0,0 +1,64 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.ObservationEncoder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a board into the network's observation, from either player's perspective.  toArray is the
+ * path rl4j takes; the encoder benchmarks write into reused INDArrays and should show no allocation
+ * under -prof gc.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ObservationBenchmark {
+    @Param({"PLAYER_ONE", "PLAYER_TWO"})
+    private Player player;
+
+    private GameBoard[] positions;
+    private GameObservation[] observations;
+    private ObservationEncoder encoder;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(1024, 42);
+        observations = new GameObservation[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            observations[i] = new GameObservation(positions[i], player);
+        }
+        encoder = new ObservationEncoder(32);
+    }
+
+    @Benchmark
+    public double[] toArray() {
+        next = (next + 1) & (observations.length - 1);
+        return observations[next].toArray();
+    }
+
+    @Benchmark
+    public INDArray encode() {
+        next = (next + 1) & (positions.length - 1);
+        return encoder.encode(positions[next], player);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(32)
+    public INDArray encodeBatch() {
+        INDArray batch = encoder.getBatch();
+        for (int row = 0; row < 32; row++) {
+            next = (next + 1) & (positions.length - 1);
+            encoder.encode(positions[next], player, batch, row);
+        }
+        return batch;
+    }
+}
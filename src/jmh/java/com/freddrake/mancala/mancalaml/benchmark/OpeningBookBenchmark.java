@@ -0,0 +1,76 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBook;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBookBuilder;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBookEngine;
+import com.freddrake.mancala.mancalaml.engine.search.AlphaBetaEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time to play the first plies of a game, searching every move versus playing book moves while
+ * the game is in an opening book built from the same search's self-play.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OpeningBookBenchmark {
+    @Param({"8"})
+    private int plies;
+
+    @Param({"8"})
+    private int depth;
+
+    private final GameBoard board = new GameBoard();
+    private GamingEngine[] searchEngines;
+    private GamingEngine[] bookEngines;
+
+    @Setup
+    public void setUp() {
+        searchEngines = new GamingEngine[] {search(Player.PLAYER_ONE), search(Player.PLAYER_TWO)};
+        OpeningBook book = OpeningBookBuilder.builder()
+                .playerOneEngine(random -> search(Player.PLAYER_ONE))
+                .playerTwoEngine(random -> search(Player.PLAYER_TWO))
+                .games(2000)
+                .seed(42L)
+                .plies(plies)
+                .build()
+                .generate();
+        bookEngines = new GamingEngine[] {
+                OpeningBookEngine.builder().player(Player.PLAYER_ONE).book(book).engine(searchEngines[0]).build(),
+                OpeningBookEngine.builder().player(Player.PLAYER_TWO).book(book).engine(searchEngines[1]).build()};
+    }
+
+    private AlphaBetaEngine search(Player player) {
+        return AlphaBetaEngine.builder().player(player).maxDepth(depth).moveTimeMillis(0L).build();
+    }
+
+    @Benchmark
+    public int openingWithSearch() {
+        return playOpening(searchEngines);
+    }
+
+    @Benchmark
+    public int openingWithBook() {
+        return playOpening(bookEngines);
+    }
+
+    private int playOpening(GamingEngine[] engines) {
+        board.resetGameBoard();
+        Player side = Player.PLAYER_ONE;
+        for (int ply = 0; ply < plies && !board.isGameOver(side); ply++) {
+            GamingEngine engine = engines[side == Player.PLAYER_ONE ? 0 : 1];
+            if (!board.executeMove(side, engine.chooseMove(board))) {
+                side = side == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+            }
+        }
+        return board.playerPoints(Player.PLAYER_ONE);
+    }
+}
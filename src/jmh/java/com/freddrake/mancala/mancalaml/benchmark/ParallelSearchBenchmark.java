@@ -0,0 +1,84 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.search.ParallelSearchEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the Lazy SMP search with thread count, searching random mid-game positions to a fixed
+ * depth with an empty transposition table each time.  timeToDepth is the average time to complete
+ * the search; nodesPerSecond counts the nodes searched by all threads together.  Run with
+ * -p threads=... to match the machine's cores.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSearchBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    private int threads;
+
+    @Param({"12"})
+    private int depth;
+
+    private GameBoard[] positions;
+    private ParallelSearchEngine engine;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(64, 42);
+        engine = ParallelSearchEngine.builder()
+                .player(Player.PLAYER_ONE)
+                .threads(threads)
+                .maxDepth(depth)
+                .moveTimeMillis(0L)
+                .transpositionTableSize(1 << 18)
+                .build();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        engine.clearTranspositionTable();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int timeToDepth() {
+        return search();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int nodesPerSecond(Nodes counter) {
+        int move = search();
+        counter.nodes += engine.getLastNodes();
+        return move;
+    }
+
+    private int search() {
+        next = (next + 1) & (positions.length - 1);
+        return engine.chooseMove(positions[next]);
+    }
+}
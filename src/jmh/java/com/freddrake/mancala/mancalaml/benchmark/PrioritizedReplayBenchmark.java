@@ -0,0 +1,76 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.engine.reinforcement.PrioritizedReplayMemory;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.ReplayMemory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay memory operations at a million transitions: a batch of 32 sampled uniformly, the same batch
+ * sampled by priority, and the priority update the learner makes after fitting it.  Sampling includes
+ * decoding the batch into INDArrays, so needs a working ND4J backend; see dl4j.backend in the pom.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PrioritizedReplayBenchmark {
+    private static final int CAPACITY = 1 << 20;
+    private static final int BATCH_SIZE = 32;
+
+    private ReplayMemory uniform;
+    private PrioritizedReplayMemory prioritized;
+    private Random random;
+    private int[] slots;
+    private double[] errors;
+
+    @Setup
+    public void setUp() {
+        uniform = new ReplayMemory(CAPACITY);
+        prioritized = PrioritizedReplayMemory.builder().capacity(CAPACITY).build();
+        random = new Random(1);
+        int[] observation = new int[12];
+        int[] next = new int[12];
+        for (int i = 0; i < CAPACITY; i++) {
+            for (int pod = 0; pod < 12; pod++) {
+                observation[pod] = random.nextInt(13);
+                next[pod] = random.nextInt(13);
+            }
+            uniform.store(observation, i % 6, random.nextDouble(), i % 40 == 0, next);
+            prioritized.store(observation, i % 6, random.nextDouble(), i % 40 == 0, next);
+        }
+        slots = new int[BATCH_SIZE];
+        errors = new double[BATCH_SIZE];
+        for (int i = 0; i < CAPACITY; i += BATCH_SIZE) {
+            for (int row = 0; row < BATCH_SIZE; row++) {
+                slots[row] = i + row;
+                errors[row] = random.nextDouble() * 2;
+            }
+            prioritized.updatePriorities(slots, errors, BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    public ReplayMemory.Batch sampleUniform() {
+        return uniform.sample(BATCH_SIZE, random);
+    }
+
+    @Benchmark
+    public ReplayMemory.Batch samplePrioritized() {
+        return prioritized.sample(BATCH_SIZE, random);
+    }
+
+    @Benchmark
+    public double updatePriorities() {
+        for (int row = 0; row < BATCH_SIZE; row++) {
+            slots[row] = random.nextInt(CAPACITY);
+            errors[row] = random.nextDouble() * 2;
+        }
+        prioritized.updatePriorities(slots, errors, BATCH_SIZE);
+        return prioritized.getTotalPriority();
+    }
+}
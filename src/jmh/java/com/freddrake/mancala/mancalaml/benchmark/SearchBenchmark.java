@@ -0,0 +1,52 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.search.AlphaBetaEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed depth alpha-beta searches from random mid-game positions.  The primary score is searches per
+ * second; the nodes counter is reported as nodes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"6", "8", "10"})
+    private int depth;
+
+    private GameBoard[] positions;
+    private AlphaBetaEngine engine;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        positions = BenchmarkPositions.randomPositions(256, 42);
+        engine = AlphaBetaEngine.builder().player(Player.PLAYER_ONE).maxDepth(depth).moveTimeMillis(0L).build();
+    }
+
+    @Benchmark
+    public int alphaBeta(Nodes counter) {
+        next = (next + 1) & (positions.length - 1);
+        int move = engine.chooseMove(positions[next]);
+        counter.nodes += engine.getLastNodes();
+        return move;
+    }
+}
@@ -0,0 +1,55 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves per second through the sowing engine, on the default 4 pebble board and on boards that start
+ * with more pebbles per pod, where relay chains get much longer.  Players alternate random legal
+ * moves, and the board is reset whenever the game ends.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SowingBenchmark {
+    @Param({"4", "8", "16", "32"})
+    private int pebblesPerPod;
+
+    private final GameBoard board = new GameBoard();
+    private final Random random = new Random(42);
+    private int[] startingPebbles;
+    private Player player;
+
+    @Setup
+    public void setUp() {
+        startingPebbles = new int[12];
+        Arrays.fill(startingPebbles, pebblesPerPod);
+        resetBoard();
+    }
+
+    @Benchmark
+    public boolean executeMove() {
+        if (board.isGameOver(player)) {
+            resetBoard();
+        }
+
+        boolean playAgain = board.executeMove(player, GameBoard.randomMoveBit(board.validMoveMask(player), random) + 1);
+        if (!playAgain) {
+            player = player == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+        }
+        return playAgain;
+    }
+
+    private void resetBoard() {
+        board.resetGameBoard(0, 0, startingPebbles);
+        player = Player.PLAYER_ONE;
+    }
+}
@@ -0,0 +1,80 @@
+package com.freddrake.mancala.mancalaml.benchmark;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.ActionMask;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.NetworkOpponent;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.VectorizedGameMDP;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.Adam;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Experience collection against a network opponent, with the network also choosing the player's
+ * moves: one forward pass for the player and one per round of opponent moves, for every board at once.
+ * Each invocation collects 64 transitions, so the scores are transitions per millisecond whatever the
+ * number of environments.  Needs a working ND4J backend; see dl4j.backend in the pom.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorizedGameMDPBenchmark {
+    private static final int TRANSITIONS = 64;
+
+    @Param({"1", "8", "64"})
+    public int environments;
+
+    private IDQN dqn;
+    private VectorizedGameMDP environment;
+    private INDArray observations;
+    private int[] actions;
+
+    @Setup
+    public void setUp() throws IOException {
+        DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+                .l2(0.01)
+                .numLayer(1)
+                .numHiddenNodes(250)
+                .updater(new Adam())
+                .build();
+        dqn = new DQNFactoryStdDense(netConfiguration).buildDQN(new int[]{12}, 6);
+        ByteArrayOutputStream network = new ByteArrayOutputStream();
+        dqn.save(network);
+
+        environment = VectorizedGameMDP.builder()
+                .player(Player.PLAYER_ONE)
+                .opponent(NetworkOpponent.builder()
+                        .player(Player.PLAYER_TWO)
+                        .networkInputStream(new ByteArrayInputStream(network.toByteArray()))
+                        .batchSize(environments)
+                        .build())
+                .environments(environments)
+                .illegalMoveReward(-100)
+                .maskIllegalMoves(true)
+                .build();
+        observations = environment.reset();
+        actions = new int[environments];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSITIONS)
+    public long collect() {
+        for (int step = 0; step < TRANSITIONS / environments; step++) {
+            INDArray qValues = dqn.output(observations);
+            for (int i = 0; i < environments; i++) {
+                actions[i] = ActionMask.bestAction(qValues, i, environment.legalActions(i));
+            }
+            observations = environment.step(actions).getObservations();
+        }
+        return environment.getEpisodes();
+    }
+}
@@ -0,0 +1,14 @@
+package com.freddrake.mancala.mancalaml;
+
+/**
+ * The complete state of a {@link GameBoard} as a handful of primitives: the pods and points piles,
+ * whether the game was forced to end, the position hash and the details of the last move.  Taking a
+ * snapshot or restoring one is a 14 element array copy, so a search can hold one snapshot per ply and
+ * reuse them instead of allocating boards.  The move trace is not part of a snapshot.
+ */
+public final class BoardSnapshot {
+    final int[] cells = new int[PackedBoard.CELLS];
+    boolean forceQuit;
+    long hash;
+    int hops;
+}
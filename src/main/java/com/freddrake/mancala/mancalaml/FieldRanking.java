@@ -0,0 +1,90 @@
+package com.freddrake.mancala.mancalaml;
+
+/**
+ * Ranks pebble fields with no gaps: every way of spreading up to maxPebbles pebbles over the 12 pods
+ * gets its own rank.  Fields are ordered by their number of pebbles, then lexicographically, using the
+ * combinatorial number system: there are C(n + 11, 11) ways to put exactly n pebbles in 12 pods, and
+ * C(n + 11, 12) ways to put fewer than n in them.  EndgameIndex and PositionCodec's observation keys
+ * are both ranks in this order, over different numbers of pebbles.
+ */
+public final class FieldRanking {
+    public static final int PODS = PackedBoard.PEBBLE_PODS;
+
+    private final int maxPebbles;
+    // compositions[k][s] is the number of ways to put s pebbles in k pods, C(s + k - 1, k - 1).
+    private final long[][] compositions;
+
+    /**
+     * @param maxPebbles the most pebbles a ranked field holds; 48 still keeps every rank in a long
+     */
+    public FieldRanking(int maxPebbles) {
+        if (maxPebbles < 0) {
+            throw new MancalaException("A field ranking holds 0 pebbles or more.");
+        }
+        this.maxPebbles = maxPebbles;
+        compositions = new long[PODS + 2][maxPebbles + 1];
+        for (int s = 0; s <= maxPebbles; s++) {
+            compositions[1][s] = 1;
+        }
+        for (int k = 2; k < compositions.length; k++) {
+            for (int s = 0; s <= maxPebbles; s++) {
+                compositions[k][s] = compositions[k - 1][s] + (s == 0 ? 0 : compositions[k][s - 1]);
+            }
+        }
+    }
+
+    public int getMaxPebbles() {
+        return maxPebbles;
+    }
+
+    /**
+     * @param pebbles at most maxPebbles
+     * @return the number of fields with at most that many pebbles
+     */
+    public long size(int pebbles) {
+        return compositions[PODS + 1][pebbles];
+    }
+
+    /**
+     * @param pebbleField the 12 pods, each holding zero or more pebbles
+     * @param pebbles the total of the field, at most maxPebbles, which the caller usually already has
+     * @return the field's rank, between 0 and size(pebbles) - 1
+     */
+    public long rank(int[] pebbleField, int pebbles) {
+        long rank = pebbles == 0 ? 0 : compositions[PODS + 1][pebbles - 1];
+        int remaining = pebbles;
+        for (int i = 0; i < PODS - 1 && remaining > 0; i++) {
+            // Fields whose pod i holds fewer pebbles come first.
+            int pods = PODS - i;
+            remaining -= pebbleField[i];
+            rank += compositions[pods][remaining + pebbleField[i]] - compositions[pods][remaining];
+        }
+        return rank;
+    }
+
+    /**
+     * The inverse of rank(): writes the field with the given rank, below size(maxPebbles), into the array.
+     * @return the number of pebbles in the field
+     */
+    public int unrank(long rank, int[] into) {
+        int pebbles = 0;
+        while (compositions[PODS + 1][pebbles] <= rank) {
+            pebbles++;
+        }
+        rank -= pebbles == 0 ? 0 : compositions[PODS + 1][pebbles - 1];
+        int remaining = pebbles;
+        for (int i = 0; i < PODS - 1; i++) {
+            int pods = PODS - i;
+            int count = 0;
+            // The fields with count pebbles in pod i are the compositions[pods - 1][remaining - count] after those with fewer.
+            while (rank >= compositions[pods - 1][remaining - count]) {
+                rank -= compositions[pods - 1][remaining - count];
+                count++;
+            }
+            into[i] = count;
+            remaining -= count;
+        }
+        into[PODS - 1] = remaining;
+        return pebbles;
+    }
+}
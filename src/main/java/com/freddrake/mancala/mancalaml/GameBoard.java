@@ -1,25 +1,28 @@
 package com.freddrake.mancala.mancalaml;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static com.freddrake.mancala.mancalaml.PackedBoard.side;
 
 /**
- * Represents the state of a game board.  It is not thread safe.
+ * Represents the state of a game board.  It is a thin facade over {@link PackedBoard}, which holds
+ * the pods and points in a reusable primitive buffer.  It is not thread safe.
  */
 public class GameBoard {
 	;
 	
-	private static final Logger log = LoggerFactory.getLogger(GameBoard.class);
-	private static final int PEBBLE_PODS = 12; // Value should always be even.
+	private static final int PEBBLE_PODS = PackedBoard.PEBBLE_PODS;
 	private static final int INITIAL_PEBBLES_PER_POD = 4;
-	private int[] points;
-	private int[] pebbles;
-	private boolean forceQuit;
+	private final PackedBoard board = new PackedBoard();
+	private MoveTrace moveTrace;
+	// Undo stack for makeMove/unmakeMove.  Snapshots are created the first time a depth is reached
+	// and reused after that.
+	private BoardSnapshot[] undo = new BoardSnapshot[0];
+	private int undoDepth;
 	
 	public GameBoard() {
 		resetGameBoard();
@@ -36,10 +39,8 @@ public class GameBoard {
 	}
 	
 	public void resetGameBoard() {
-		points = new int[] {0, 0};
-		pebbles = new int[PEBBLE_PODS];
-		Arrays.fill(pebbles, INITIAL_PEBBLES_PER_POD);
-		forceQuit = false;
+		board.reset(INITIAL_PEBBLES_PER_POD);
+		undoDepth = 0;
 	}
 	
 	public void resetGameBoard(int player1Points, int player2Points, int... pebbles) {
@@ -52,36 +53,95 @@ public class GameBoard {
 		if (pebbles == null || pebbles.length != PEBBLE_PODS) {
 			throw new MancalaException("Pebbles array must contain 12 positive integers.");
 		}
-		Arrays.stream(pebbles).forEach(p -> {
+		for (int p : pebbles) {
 			if (p < 0) {
 				throw new MancalaException("All pebbles must contain positive integers.");
 			}
-		});
+		}
 		
-		points = new int[] {player1Points, player2Points};
-		this.pebbles = pebbles;		
+		// The pebbles are copied, so the caller's array can be reused.
+		board.reset(player1Points, player2Points, pebbles);
+		undoDepth = 0;
 	}
 	
-	public int playerPoints(Player player) {
-		if (player == null || player == Player.NOBODY) {
-			throw new MancalaException("Player must be defined");
+	/**
+	 * Copies this board's position onto another board, without allocating.  The target's move trace
+	 * and undo stack are left alone.
+	 * @param target the board to overwrite
+	 */
+	public void copyInto(GameBoard target) {
+		board.copyInto(target.board);
+	}
+	
+	/**
+	 * @return a new snapshot of the current position; see snapshot(BoardSnapshot) to reuse one
+	 */
+	public BoardSnapshot snapshot() {
+		return snapshot(new BoardSnapshot());
+	}
+	
+	/**
+	 * Saves the current position into an existing snapshot, without allocating.
+	 * @param into the snapshot to overwrite
+	 * @return the given snapshot
+	 */
+	public BoardSnapshot snapshot(BoardSnapshot into) {
+		board.save(into);
+		return into;
+	}
+	
+	/**
+	 * Puts the board back to a snapshot, taken from this board or any other.  The move trace and undo
+	 * stack are left alone.
+	 */
+	public void restore(BoardSnapshot snapshot) {
+		board.restore(snapshot);
+	}
+	
+	/**
+	 * Same as executeMove, but first saves the position so that unmakeMove() can take the move back.
+	 * Moves can be made and unmade to any depth; once the undo stack has grown to a depth, making
+	 * moves no deeper than that doesn't allocate.
+	 * @return true if they ended their turn by dropping a pebble in their points pile, otherwise false
+	 */
+	public boolean makeMove(Player player, int location) {
+		if (undoDepth == undo.length) {
+			undo = Arrays.copyOf(undo, Math.max(8, undo.length * 2));
+			for (int i = undoDepth; i < undo.length; i++) {
+				undo[i] = new BoardSnapshot();
+			}
 		}
-		
-		return player == Player.PLAYER_ONE ? points[0] : points[1];
+		board.save(undo[undoDepth]);
+		boolean playAgain = executeMove(player, location);
+		undoDepth++;
+		return playAgain;
 	}
 	
-	public int[] playerPebbles(Player player) {
-		if (player == null || player == Player.NOBODY) {
-			throw new MancalaException("Player must be defined");
+	/**
+	 * Takes back the most recent makeMove.
+	 */
+	public void unmakeMove() {
+		if (undoDepth == 0) {
+			throw new MancalaException("There is no move to unmake.");
 		}
-		
+		board.restore(undo[--undoDepth]);
+	}
+	
+	public int playerPoints(Player player) {
+		return board.points(definedSide(player));
+	}
+
+	/**
+	 * @return the player's points minus their opponent's
+	 */
+	public int pointsLead(Player player) {
+		int side = definedSide(player);
+		return board.points(side) - board.points(1 - side);
+	}
+	
+	public int[] playerPebbles(Player player) {
 		int[] pPebbles = new int[PEBBLE_PODS / 2];
-		int pebbleIndex = (player == Player.PLAYER_ONE) ? 0 : PEBBLE_PODS / 2;
-		for(int i=0; i<pPebbles.length; i++) {
-			pPebbles[i] = pebbles[pebbleIndex];
-			pebbleIndex++;
-		}
-		
+		System.arraycopy(board.cells, definedSide(player) * pPebbles.length, pPebbles, 0, pPebbles.length);
 		return pPebbles;
 	}
 	
@@ -89,24 +149,41 @@ public class GameBoard {
 	 * Outputs the pebble field, from the perspective of the player.  The first elements
 	 * will be the pods that are in front of the player, and the remaining will follow
 	 * in the same clockwise order that the game is normally played.
-	 * @param player the player on which we have perspective
+	 * @param player the player on which we have perspective; anyone but player two gets player one's
 	 * @return the pods with the number of pebbles in each pod
 	 */
 	public int[] pebbleField(Player player) {
-		final int[] playerPebbles = new int[pebbles.length];
-		IntStream.range(0, pebbles.length).forEach(index -> {
-			int playerIndex = index;
-			if (player == Player.PLAYER_TWO) {
-				playerIndex = index + pebbles.length / 2;
-				if (playerIndex >= pebbles.length) {
-					playerIndex -= pebbles.length;
-				}					
-			}
-			
-			playerPebbles[playerIndex] = pebbles[index];
-		});
-		
-		return playerPebbles;
+		return pebbleField(player, new int[PEBBLE_PODS]);
+	}
+	
+	/**
+	 * Same as pebbleField(player), but copies into a caller supplied array so that it can be reused.
+	 * @param player the player on which we have perspective
+	 * @param into an array of at least 12 elements
+	 * @return the given array
+	 */
+	public int[] pebbleField(Player player, int[] into) {
+		board.pebbleField(player == Player.PLAYER_TWO ? 1 : 0, into);
+		return into;
+	}
+	
+	/**
+	 * A 64 bit Zobrist key for the current position: every pod, both points piles and the player to
+	 * move.  It is updated incrementally as pebbles are sown, so reading it is O(1).  Equal positions
+	 * always have equal keys, and keys are stable across runs; different positions collide with
+	 * negligible probability.
+	 * @param sideToMove the player whose turn it is
+	 * @return the position key
+	 */
+	public long positionHash(Player sideToMove) {
+		return board.hash(definedSide(sideToMove));
+	}
+	
+	/**
+	 * The primitive board behind this one, for the encoders in this package.
+	 */
+	PackedBoard packed() {
+		return board;
 	}
 	
 	/**
@@ -116,21 +193,69 @@ public class GameBoard {
 	 * @return true if they ended their turn by dropping a pebble in their points pile, otherwise false
 	 */
 	public boolean executeMove(Player player, int location) {
-		log.debug("Executing move: {} on location {}", player, location);
 		if (player == null) {
 			throw new MancalaException("Player must be defined");
 		}
 
-		log.debug(dumpCurrentState(
-				player == Player.PLAYER_ONE ? location - 1 : location + pebbles.length / 2 - 1, false));
 		if (location < 1 || location > (PEBBLE_PODS / 2)) {
 			throw new MancalaException("Illegal location "+location+
                     ".  Location must be between 1 and "+(PEBBLE_PODS / 2));
 		}
 		
+		if (player == Player.NOBODY) {
+			throw new MancalaException("Player cannot be nobody.");
+		}
+		
 		// Convert the player's chosen location to the index represented on the board.
+		int side = side(player);
 		int boardIndex = player == Player.PLAYER_ONE ? location - 1 : location + (PEBBLE_PODS / 2 - 1);
-		return executeSubsequentMove(player, boardIndex);
+		if (board.cells[boardIndex] == 0) {
+			// Illegal move.  Demonstrate this by ending the game early, and give the
+			// player a score of -1.
+			board.set(PackedBoard.store(side), -1);
+			board.forceQuit = true;
+			if (moveTrace != null) {
+				moveTrace.record(side, location, 0, 0, MoveTrace.ILLEGAL);
+			}
+			return false;
+		}
+		
+		int pointsBefore = board.points(side);
+		boolean playAgain = board.move(side, boardIndex);
+		if (moveTrace != null) {
+			moveTrace.record(side, location, board.hops, board.points(side) - pointsBefore,
+					playAgain ? MoveTrace.EXTRA_TURN : 0);
+		}
+		return playAgain;
+	}
+	
+	/**
+	 * Starts recording every move made on this board into a ring buffer of the given size, replacing
+	 * any trace already in place.  Tracing is off by default.
+	 * @param capacity the number of most recent moves to keep
+	 * @return the new trace
+	 */
+	public MoveTrace enableMoveTrace(int capacity) {
+		moveTrace = new MoveTrace(capacity);
+		return moveTrace;
+	}
+	
+	public void disableMoveTrace() {
+		moveTrace = null;
+	}
+	
+	/**
+	 * @return the trace of recent moves, or null if tracing is not enabled
+	 */
+	public MoveTrace getMoveTrace() {
+		return moveTrace;
+	}
+	
+	/**
+	 * @return the number of laps sown during the last move, including the first one
+	 */
+	public int lastMoveHops() {
+		return board.hops;
 	}
 	
 	public String dumpCurrentState(int location, boolean endOnPointsPile) {
@@ -143,7 +268,7 @@ public class GameBoard {
 		
 		b.append("Player1 ("+playerPoints(Player.PLAYER_ONE)+"): ");
 		int[] p1Pebbles = playerPebbles(Player.PLAYER_ONE);
-		if (location >= 0 && location < pebbles.length / 2) {
+		if (location >= 0 && location < PEBBLE_PODS / 2) {
 			// Make sure the location is highlighted
 			b.append("[");
 			for(int i=0; i<p1Pebbles.length; i++) {
@@ -161,7 +286,7 @@ public class GameBoard {
 		
 		b.append(", Player2 ("+playerPoints(Player.PLAYER_TWO)+"): ");
 		int[] p2Pebbles = playerPebbles(Player.PLAYER_TWO);
-		if (location >= pebbles.length / 2) {
+		if (location >= PEBBLE_PODS / 2) {
 			b.append("[");
 			for(int i=0; i<p2Pebbles.length; i++) {
 				if (i > 0) b.append(", ");
@@ -185,9 +310,9 @@ public class GameBoard {
 	
 	public List<Integer> validMoves(Player player) {
 		ArrayList<Integer> validMoves = new ArrayList<>();
-		int[] playerPebbles = playerPebbles(player);
-		for (int i=0; i<playerPebbles.length; i++) {
-			if (playerPebbles[i] > 0) {
+		int mask = validMoveMask(player);
+		for (int i=0; i<PEBBLE_PODS / 2; i++) {
+			if ((mask & (1 << i)) != 0) {
 				validMoves.add(i+1);
 			}
 		}
@@ -195,90 +320,69 @@ public class GameBoard {
 		return validMoves;
 	}
 	
+	/**
+	 * The valid moves for a player as a bitmask, without allocating.  Bit 0 represents location 1,
+	 * bit 5 represents location 6.
+	 * @param player the player who is moving
+	 * @return the mask of pods that contain pebbles
+	 */
+	public int validMoveMask(Player player) {
+		return board.legalMoves(definedSide(player));
+	}
+	
+	/**
+	 * Picks one of the moves in a valid move mask uniformly, without allocating.
+	 * @param validMoves a mask from validMoveMask, which must not be empty
+	 * @return the bit of the chosen move, that is its location - 1
+	 */
+	public static int randomMoveBit(int validMoves, Random random) {
+		return nthMoveBit(validMoves, random.nextInt(Integer.bitCount(validMoves)));
+	}
+	
+	/**
+	 * Same as randomMoveBit(validMoves, Random), for callers that draw from a SplittableRandom.
+	 */
+	public static int randomMoveBit(int validMoves, SplittableRandom random) {
+		return nthMoveBit(validMoves, random.nextInt(Integer.bitCount(validMoves)));
+	}
+	
+	private static int nthMoveBit(int validMoves, int n) {
+		// Drop the lowest set bits until we reach the chosen valid move.
+		for (int skip = n; skip > 0; skip--) {
+			validMoves &= validMoves - 1;
+		}
+		return Integer.numberOfTrailingZeros(validMoves);
+	}
+	
 	/**
 	 * The game is over when the given player's pods are all empty.
 	 * @return true if the game is over, false otherwise
 	 */
 	public boolean isGameOver(Player player) {
-		return forceQuit || IntStream.of(playerPebbles(player)).sum() == 0;
+		return board.forceQuit || board.legalMoves(definedSide(player)) == 0;
+	}
+	
+	/**
+	 * @return the player's side of the packed board
+	 * @throws MancalaException if the player is null or nobody
+	 */
+	private static int definedSide(Player player) {
+		if (player == null || player == Player.NOBODY) {
+			throw new MancalaException("Player must be defined");
+		}
+		return side(player);
 	}
 	
 	public Player getPointsLeader() {
-		if (points[0] > points[1]) {
+		int player1Points = board.points(0);
+		int player2Points = board.points(1);
+		if (player1Points > player2Points) {
 			return Player.PLAYER_ONE;
 		}
-		if (points[1] > points[0]) {
+		if (player2Points > player1Points) {
 			return Player.PLAYER_TWO;
 		}
 		
 		return Player.NOBODY;
 	}
-	
-	/**
-	 * Perform a move by a player at a given location.  The difference between this call
-	 * and executeMove(player,location) is that this is intended to be the internal to the
-	 * class; it allows a selection for any pod on the board (zero based, so 0 through 11)
-	 * and it will recursively call itself each time it moves again.
-	 * @param player the player who is moving
-	 * @param location a pod location on the board, a number between 0 and 11
-	 * @return true if they ended their turn by dropping a pebble in their points pile, otherwise false
-	 */
-	private boolean executeSubsequentMove(Player player, int location) {
-		// Update each pebble pod until you run out of pebbles in your hand.
-		// Then as long as the final pod doesn't contain one, recursively call this method.
-		if (pebbles[location] == 0) {
-			// Illegal move.  Demonstrate this by ending the game early, and give the
-            // player a score of -1.
-            points[player == Player.PLAYER_ONE ? 0 : 1] = -1;
-            forceQuit = true;
-            return false;
-		}
-
-		if (player == Player.NOBODY) {
-			throw new MancalaException("Player cannot be nobody.");
-		}
-		
-		// Place pebbles from the given location to the player's hand.
-		int pebblesInHand = pebbles[location];
-		pebbles[location] = 0;
-		log.trace("Pebbles in hand: {}", pebblesInHand);
-
-		int nextLocation = location;
-		while (pebblesInHand > 0) {
-			nextLocation = (nextLocation == PEBBLE_PODS - 1) ? 0 : nextLocation + 1;
-			// Is the next location going to be that player's points pile?
-			if ((player == Player.PLAYER_ONE && nextLocation == PEBBLE_PODS / 2) ||
-					(player == Player.PLAYER_TWO && nextLocation == 0)) {
-				// A pebble goes into the points pile
-				if (player == Player.PLAYER_ONE) {
-					log.trace("Point for player 1");
-					points[0]++;
-				} else {
-					log.trace("Point for player 2");
-					points[1]++;
-				}
-				pebblesInHand--;
-				
-				if (pebblesInHand == 0) { // That was the last pebble in their hand
-					log.debug(dumpCurrentState(nextLocation, true, true));
-					return true;
-				}				
-			}
-			
-			// Add a pebble to this next pod			
-			pebblesInHand--;
-			pebbles[nextLocation]++;
-			log.trace("Pebbles now in location {}: {}", nextLocation, pebbles[nextLocation]);
-		}
-		log.debug(dumpCurrentState(nextLocation, false, true));
-		
-		// If that pod's location wasn't empty before the player dropped their last stone,
-		// pick up that pile of stones and move again.
-		if (pebbles[nextLocation] > 1) {
-			return executeSubsequentMove(player, nextLocation);
-		}
-		
-		// The pod they dropped their last stone into was empty.  Their turn ends.
-		return false;
-	}
 }
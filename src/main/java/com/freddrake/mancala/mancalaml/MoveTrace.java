@@ -0,0 +1,85 @@
+package com.freddrake.mancala.mancalaml;
+
+/**
+ * Fixed size ring buffer of the most recent moves made on a {@link GameBoard}.  Moves are recorded as
+ * primitive events, and are only turned into text when render() (or toString()) is called, so a trace
+ * can be handed to a logger as an argument and costs nothing unless that log level is enabled.  It is
+ * not thread safe.
+ */
+public class MoveTrace {
+    static final int EXTRA_TURN = 1;
+    static final int ILLEGAL = 1 << 1;
+
+    private final byte[] sides;
+    private final byte[] locations;
+    private final int[] hops;
+    private final int[] storeHits;
+    private final byte[] flags;
+    private long recorded;
+
+    public MoveTrace(int capacity) {
+        if (capacity < 1) {
+            throw new MancalaException("Move trace capacity must be at least 1.");
+        }
+        sides = new byte[capacity];
+        locations = new byte[capacity];
+        hops = new int[capacity];
+        storeHits = new int[capacity];
+        flags = new byte[capacity];
+    }
+
+    void record(int side, int location, int moveHops, int moveStoreHits, int moveFlags) {
+        int slot = (int) (recorded % sides.length);
+        sides[slot] = (byte) side;
+        locations[slot] = (byte) location;
+        hops[slot] = moveHops;
+        storeHits[slot] = moveStoreHits;
+        flags[slot] = (byte) moveFlags;
+        recorded++;
+    }
+
+    /**
+     * @return the number of moves currently held, at most the capacity
+     */
+    public int size() {
+        return (int) Math.min(recorded, sides.length);
+    }
+
+    /**
+     * @return the number of moves recorded since this trace was created or cleared
+     */
+    public long totalRecorded() {
+        return recorded;
+    }
+
+    public void clear() {
+        recorded = 0;
+    }
+
+    /**
+     * Renders the held moves, oldest first, one per line.
+     */
+    public String render() {
+        StringBuilder b = new StringBuilder();
+        for (long move = recorded - size(); move < recorded; move++) {
+            int slot = (int) (move % sides.length);
+            if (b.length() > 0) b.append('\n');
+            b.append('#').append(move + 1).append(' ')
+                    .append(sides[slot] == 0 ? Player.PLAYER_ONE : Player.PLAYER_TWO)
+                    .append(" location ").append(locations[slot]);
+            if ((flags[slot] & ILLEGAL) != 0) {
+                b.append(": illegal");
+                continue;
+            }
+            b.append(": ").append(hops[slot]).append(hops[slot] == 1 ? " hop, " : " hops, ")
+                    .append(storeHits[slot]).append(storeHits[slot] == 1 ? " point" : " points");
+            if ((flags[slot] & EXTRA_TURN) != 0) b.append(", extra turn");
+        }
+        return b.toString();
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+}
@@ -0,0 +1,225 @@
+package com.freddrake.mancala.mancalaml;
+
+import java.util.Arrays;
+
+/**
+ * Primitive board engine behind {@link GameBoard}.  The 12 pods and both points piles live in one
+ * reusable int buffer, so querying the board, generating moves and sowing pebbles never allocate.
+ * Players are addressed by side: 0 for player one and 1 for player two.  It is not thread safe.
+ *
+ * The board also keeps a Zobrist hash of its cells: the xor of one fixed random key per cell and
+ * pebble count.  Every write to a cell swaps that cell's key for the new count, so the hash stays
+ * current as pebbles are sown and reading it is O(1).  Cells must only be written through the
+ * methods here, never through the array directly.
+ */
+final class PackedBoard {
+    static final int PEBBLE_PODS = 12; // Value should always be even.
+    static final int PODS_PER_SIDE = PEBBLE_PODS / 2;
+    static final int CELLS = PEBBLE_PODS + 2;
+    static final int ENDED_IN_STORE = -1;
+
+    // Keys for pebble counts below ZOBRIST_COUNTS come from the table; larger (or negative) counts,
+    // which only show up on unusual custom boards, are keyed by mixing the cell and count instead.
+    private static final int ZOBRIST_COUNTS = 64;
+    private static final long[] ZOBRIST = new long[CELLS * ZOBRIST_COUNTS];
+    // ZOBRIST_INCREMENT[i] is ZOBRIST[i] ^ ZOBRIST[i + 1]: the change to the hash when sowing one
+    // pebble into a cell, so that sowing costs one lookup per pebble.
+    private static final long[] ZOBRIST_INCREMENT = new long[CELLS * ZOBRIST_COUNTS];
+    private static final long SIDE_TO_MOVE_KEY;
+
+    static {
+        // A fixed seed, so that hashes are stable across runs and can be stored in files.
+        long seed = 0x4D616E63616C6121L;
+        for (int i = 0; i < ZOBRIST.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            ZOBRIST[i] = mix(seed);
+        }
+        SIDE_TO_MOVE_KEY = mix(seed + 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < ZOBRIST.length; i++) {
+            ZOBRIST_INCREMENT[i] = (i + 1) % ZOBRIST_COUNTS == 0 ? 0 : ZOBRIST[i] ^ ZOBRIST[i + 1];
+        }
+    }
+
+    // Pods 0-5 belong to player one, 6-11 to player two, followed by the two points piles.
+    final int[] cells = new int[CELLS];
+    boolean forceQuit;
+    private long hash;
+
+    // Details of the last move, kept as primitives so that nothing is allocated per move.
+    int hops;
+
+    void reset(int pebblesPerPod) {
+        Arrays.fill(cells, 0, PEBBLE_PODS, pebblesPerPod);
+        cells[store(0)] = 0;
+        cells[store(1)] = 0;
+        forceQuit = false;
+        hash = computeHash();
+    }
+
+    void reset(int player1Points, int player2Points, int[] pebbles) {
+        System.arraycopy(pebbles, 0, cells, 0, PEBBLE_PODS);
+        cells[store(0)] = player1Points;
+        cells[store(1)] = player2Points;
+        forceQuit = false;
+        hash = computeHash();
+    }
+
+    void copyInto(PackedBoard target) {
+        System.arraycopy(cells, 0, target.cells, 0, CELLS);
+        target.forceQuit = forceQuit;
+        target.hash = hash;
+        target.hops = hops;
+    }
+
+    void save(BoardSnapshot snapshot) {
+        System.arraycopy(cells, 0, snapshot.cells, 0, CELLS);
+        snapshot.forceQuit = forceQuit;
+        snapshot.hash = hash;
+        snapshot.hops = hops;
+    }
+
+    void restore(BoardSnapshot snapshot) {
+        System.arraycopy(snapshot.cells, 0, cells, 0, CELLS);
+        forceQuit = snapshot.forceQuit;
+        hash = snapshot.hash;
+        hops = snapshot.hops;
+    }
+
+    void set(int cell, int pebbles) {
+        hash ^= zobrist(cell, cells[cell]) ^ zobrist(cell, pebbles);
+        cells[cell] = pebbles;
+    }
+
+    private void increment(int cell) {
+        int pebbles = cells[cell];
+        hash ^= pebbles >= 0 && pebbles < ZOBRIST_COUNTS - 1
+                ? ZOBRIST_INCREMENT[cell * ZOBRIST_COUNTS + pebbles]
+                : zobrist(cell, pebbles) ^ zobrist(cell, pebbles + 1);
+        cells[cell] = pebbles + 1;
+    }
+
+    static int side(Player player) {
+        return player == Player.PLAYER_ONE ? 0 : 1;
+    }
+
+    static int store(int side) {
+        return PEBBLE_PODS + side;
+    }
+
+    int points(int side) {
+        return cells[store(side)];
+    }
+
+    /**
+     * Legal moves for a side as a bitmask; bit 0 is the side's first pod (location 1).
+     */
+    int legalMoves(int side) {
+        int mask = 0;
+        int base = side * PODS_PER_SIDE;
+        for (int i = 0; i < PODS_PER_SIDE; i++) {
+            if (cells[base + i] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * A 64 bit key for the pods, both points piles and the side to move, kept up to date incrementally.
+     */
+    long hash(int sideToMove) {
+        return sideToMove == 0 ? hash : hash ^ SIDE_TO_MOVE_KEY;
+    }
+
+    /**
+     * The Zobrist hash of the cells, built from scratch.
+     */
+    long computeHash() {
+        long h = 0;
+        for (int i = 0; i < CELLS; i++) {
+            h ^= zobrist(i, cells[i]);
+        }
+        return h;
+    }
+
+    private static long zobrist(int cell, int pebbles) {
+        if (pebbles >= 0 && pebbles < ZOBRIST_COUNTS) {
+            return ZOBRIST[cell * ZOBRIST_COUNTS + pebbles];
+        }
+        return mix(((long) cell << 32 | (pebbles & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L + SIDE_TO_MOVE_KEY);
+    }
+
+    // The splitmix64 finalizer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Copies the pods into the given array from the perspective of a side; the side's own pods
+     * come first.
+     */
+    void pebbleField(int side, int[] into) {
+        int offset = side * PODS_PER_SIDE;
+        System.arraycopy(cells, offset, into, 0, PEBBLE_PODS - offset);
+        System.arraycopy(cells, 0, into, PEBBLE_PODS - offset, offset);
+    }
+
+    /**
+     * Picks up every pebble at a board index and sows them, one per pod, skipping the opponent's
+     * points pile.  This is a single lap; relaying from the final pod is up to the caller.
+     * @param side the side who is sowing
+     * @param location a pod location on the board, a number between 0 and 11
+     * @return the board index the last pebble landed on, or ENDED_IN_STORE if it was the points pile
+     */
+    int sow(int side, int location) {
+        int pebblesInHand = cells[location];
+        set(location, 0);
+
+        // The pod that follows this side's points pile.
+        int afterStore = side == 0 ? PODS_PER_SIDE : 0;
+        int nextLocation = location;
+        while (pebblesInHand > 0) {
+            nextLocation = (nextLocation == PEBBLE_PODS - 1) ? 0 : nextLocation + 1;
+            if (nextLocation == afterStore) {
+                increment(PEBBLE_PODS + side);
+                pebblesInHand--;
+                if (pebblesInHand == 0) {
+                    return ENDED_IN_STORE;
+                }
+            }
+            pebblesInHand--;
+            increment(nextLocation);
+        }
+
+        return nextLocation;
+    }
+
+    /**
+     * Executes a whole move: sows from the given pod, and keeps relaying from the pod the last pebble
+     * landed in for as long as that pod wasn't empty.  The relay chain runs as a flat loop.
+     *
+     * A relay chain can't go around forever.  Sowing only moves forward, so every 13 pebbles sown pass
+     * the mover's points pile and put one in it.  The points pile never shrinks during a move, so the
+     * chain never comes back to a position it has already been in, and the pods soon run out.
+     * @param side the side who is moving
+     * @param location a non-empty pod location on the board, a number between 0 and 11
+     * @return true if they ended their turn by dropping a pebble in their points pile, otherwise false
+     */
+    boolean move(int side, int location) {
+        hops = 0;
+        while (true) {
+            int nextLocation = sow(side, location);
+            hops++;
+            if (nextLocation == ENDED_IN_STORE) {
+                return true;
+            }
+            if (cells[nextLocation] <= 1) {
+                // The pod they dropped their last stone into was empty.  Their turn ends.
+                return false;
+            }
+            location = nextLocation;
+        }
+    }
+}
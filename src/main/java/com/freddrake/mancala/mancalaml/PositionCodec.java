@@ -0,0 +1,132 @@
+package com.freddrake.mancala.mancalaml;
+
+import static com.freddrake.mancala.mancalaml.PackedBoard.side;
+
+/**
+ * Compact, canonical encodings of a position, for anything that stores positions in bulk: replay,
+ * caches, logs and files.  Positions are always written from the perspective of one player, the side
+ * to move, so a position and its mirror image with the players swapped encode the same way.
+ *
+ * The byte form is 14 unsigned bytes: the player's six pods, the opponent's six pods, the player's
+ * points pile and the opponent's.  The first 12 bytes are the network's observation, so a batch can be
+ * decoded from them directly.  The key form is a single long for the observation alone, the pods
+ * without the points piles, for caching anything that is a function of the observation.  Fields of up
+ * to KEY_PEBBLES pebbles, which covers every standard game, get an exact key: their rank in a
+ * FieldRanking, the order EndgameIndex also uses.  Larger fields, which only custom boards reach, get
+ * a hashed key with the top bit set, so they can collide with each other but never with an exact key.
+ */
+public final class PositionCodec {
+    public static final int BYTES = PackedBoard.CELLS;
+    public static final int PODS = PackedBoard.PEBBLE_PODS;
+    public static final int KEY_PEBBLES = 48;
+
+    private static final FieldRanking RANKING = new FieldRanking(KEY_PEBBLES);
+    private static final ThreadLocal<int[]> FIELDS = ThreadLocal.withInitial(() -> new int[PODS]);
+
+    private PositionCodec() {}
+
+    /**
+     * Writes the position from a player's perspective into 14 bytes of an array.
+     * @param sideToMove the player whose pods come first
+     */
+    public static void encode(GameBoard gameBoard, Player sideToMove, byte[] into, int offset) {
+        int[] cells = gameBoard.packed().cells;
+        int podOffset = side(sideToMove) * PackedBoard.PODS_PER_SIDE;
+        for (int i = 0; i < PODS; i++) {
+            into[offset + i] = toByte(cells[(podOffset + i) % PODS]);
+        }
+        into[offset + PODS] = toByte(cells[PackedBoard.store(side(sideToMove))]);
+        into[offset + PODS + 1] = toByte(cells[PackedBoard.store(1 - side(sideToMove))]);
+    }
+
+    /**
+     * Sets a board to an encoded position, the inverse of encode().  The board's move trace is left alone
+     * and its undo stack is cleared.
+     * @param sideToMove the player the position was encoded for
+     */
+    public static void decode(byte[] from, int offset, GameBoard gameBoard, Player sideToMove) {
+        int podOffset = side(sideToMove) * PackedBoard.PODS_PER_SIDE;
+        int[] pebbles = new int[PODS];
+        for (int i = 0; i < PODS; i++) {
+            pebbles[(podOffset + i) % PODS] = pebbles(from, offset, i);
+        }
+        int own = pebbles(from, offset, PODS);
+        int opponent = pebbles(from, offset, PODS + 1);
+        if (sideToMove == Player.PLAYER_ONE) {
+            gameBoard.resetGameBoard(own, opponent, pebbles);
+        } else {
+            gameBoard.resetGameBoard(opponent, own, pebbles);
+        }
+    }
+
+    /**
+     * @param cell 0-11 for the pods, 12 and 13 for the points piles
+     * @return the number of pebbles in a cell of an encoded position
+     */
+    public static int pebbles(byte[] position, int offset, int cell) {
+        return position[offset + cell] & 0xFF;
+    }
+
+    /**
+     * @return the observation key of a board from a player's perspective, without allocating
+     */
+    public static long observationKey(GameBoard gameBoard, Player player) {
+        return observationKey(gameBoard.pebbleField(player, FIELDS.get()));
+    }
+
+    /**
+     * @param pebbleField the 12 pods, the player's own first, as from GameBoard.pebbleField
+     * @return the observation key of the field
+     */
+    public static long observationKey(int[] pebbleField) {
+        int total = 0;
+        for (int i = 0; i < PODS; i++) {
+            total += pebbleField[i];
+        }
+        return total > KEY_PEBBLES ? hashedKey(pebbleField) : RANKING.rank(pebbleField, total);
+    }
+
+    /**
+     * The inverse of observationKey for exact keys: writes the field with the given key into the array.
+     */
+    public static void pebbleField(long key, int[] into) {
+        if (key < 0) {
+            throw new MancalaException("Hashed observation keys can't be decoded.");
+        }
+        RANKING.unrank(key, into);
+    }
+
+    /**
+     * A one line rendering of an encoded position for logs, e.g. "4 4 4 4 4 4 | 4 4 4 4 4 4 | 0-0".
+     */
+    public static String render(byte[] position, int offset) {
+        StringBuilder b = new StringBuilder(40);
+        for (int i = 0; i < PODS; i++) {
+            if (i == PackedBoard.PODS_PER_SIDE) {
+                b.append(" |");
+            }
+            if (i > 0) {
+                b.append(' ');
+            }
+            b.append(pebbles(position, offset, i));
+        }
+        return b.append(" | ").append(pebbles(position, offset, PODS)).append('-')
+                .append(pebbles(position, offset, PODS + 1)).toString();
+    }
+
+    private static byte toByte(int pebbles) {
+        if (pebbles < 0 || pebbles > 0xFF) {
+            throw new MancalaException("Encoded positions hold between 0 and 255 pebbles per cell.");
+        }
+        return (byte) pebbles;
+    }
+
+    private static long hashedKey(int[] pods) {
+        long h = 0x4D616E63616C6121L;
+        for (int i = 0; i < PODS; i++) {
+            h = (h ^ pods[i]) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return h | Long.MIN_VALUE;
+    }
+}
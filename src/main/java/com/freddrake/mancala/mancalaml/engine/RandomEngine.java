@@ -6,7 +6,6 @@ import com.freddrake.mancala.mancalaml.Player;
 import lombok.Builder;
 import lombok.NonNull;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 
@@ -21,12 +20,11 @@ public class RandomEngine extends AbstractGamingEngine {
 	
 	@Override
 	public int chooseMove(GameBoard gameBoard) {
-		List<Integer> validMoves = gameBoard.validMoves(player);
-		if (validMoves.isEmpty()) {
+		int validMoves = gameBoard.validMoveMask(player);
+		if (validMoves == 0) {
 			throw new MancalaException("Cannot play a move");
 		}
-		
-		return validMoves.get(random.nextInt(validMoves.size()));
+		return GameBoard.randomMoveBit(validMoves, random) + 1;
 	}
 
     @Override
@@ -0,0 +1,153 @@
+package com.freddrake.mancala.mancalaml.engine;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Plays a number of games between two engines across a pool of threads.  GameBoard and the engines
+ * are not thread safe, so every worker builds its own board and its own engines through the given
+ * factories.  Each worker's Random is seeded from the tournament seed and the worker's index, so a
+ * run is repeatable for the same seed and thread count.  Workers keep their own record, and the
+ * records are merged once all of them are done, so nothing is shared while games are being played.
+ * Engines that are AutoCloseable are closed when their worker is done with them.
+ */
+@Slf4j
+public class Tournament {
+    private final Function<Random, GamingEngine> playerOneEngine;
+    private final Function<Random, GamingEngine> playerTwoEngine;
+    private final int games;
+    private final int threads;
+    private final long seed;
+    private final int maxTurns;
+
+    /**
+     * @param playerOneEngine builds player one's engine for a worker; player one moves first
+     * @param playerTwoEngine builds player two's engine for a worker
+     * @param games the number of games to play, 10 by default
+     * @param threads the size of the thread pool, one per core by default
+     * @param seed the seed every worker's Random is derived from
+     * @param maxTurns turns after which an unfinished game is scored by the points leader
+     */
+    @Builder
+    private Tournament(@NonNull Function<Random, GamingEngine> playerOneEngine,
+                       @NonNull Function<Random, GamingEngine> playerTwoEngine,
+                       Integer games, Integer threads, Long seed, Integer maxTurns) {
+        this.playerOneEngine = playerOneEngine;
+        this.playerTwoEngine = playerTwoEngine;
+        this.games = Optional.ofNullable(games).orElse(10);
+        this.threads = Optional.ofNullable(threads).filter(t -> t > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        this.seed = Optional.ofNullable(seed).orElse(System.nanoTime());
+        this.maxTurns = Optional.ofNullable(maxTurns).orElse(1000);
+    }
+
+    public TournamentRecord play() {
+        TournamentRecord record = new TournamentRecord();
+        runWorkers(games, threads, seed, this::playGames).forEach(record::merge);
+        return record;
+    }
+
+    /**
+     * Plays a worker's share of the games.
+     */
+    @FunctionalInterface
+    public interface Worker<T> {
+        T play(int games, Random random);
+    }
+
+    /**
+     * Spreads games over a fixed pool of at most threads workers, the way a Tournament plays them: the
+     * games are split as evenly as possible, and each worker gets a Random seeded from the seed and its
+     * index, so a run is repeatable for the same seed and thread count.
+     * @return the workers' results, in worker order, once all of them are done
+     */
+    public static <T> List<T> runWorkers(int games, int threads, long seed, Worker<T> worker) {
+        int workers = Math.max(1, Math.min(threads, games));
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<T>> futures = new ArrayList<>(workers);
+            for (int index = 0; index < workers; index++) {
+                int workerGames = games / workers + (index < games % workers ? 1 : 0);
+                long workerSeed = seeds.nextLong();
+                futures.add(executor.submit(() -> worker.play(workerGames, new Random(workerSeed))));
+            }
+
+            List<T> results = new ArrayList<>(workers);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MancalaException(e);
+        } catch (ExecutionException e) {
+            throw new MancalaException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TournamentRecord playGames(int workerGames, Random random) {
+        GameBoard board = new GameBoard();
+        GamingEngine playerOne = null;
+        GamingEngine playerTwo = null;
+        try {
+            playerOne = playerOneEngine.apply(random);
+            playerTwo = playerTwoEngine.apply(random);
+            TournamentRecord record = new TournamentRecord();
+
+            for (int game = 0; game < workerGames; game++) {
+                board.resetGameBoard();
+                // Each engine returns true when it can't move because the game is over.
+                for (int turn = 0; turn < maxTurns; turn++) {
+                    if (playerOne.executeMove(board) || playerTwo.executeMove(board)) {
+                        break;
+                    }
+                }
+                record.add(board.getPointsLeader());
+            }
+
+            log.debug("Worker finished {} games: {}", workerGames, record);
+            return record;
+        } finally {
+            close(playerOne);
+            close(playerTwo);
+        }
+    }
+
+    /**
+     * Closes an engine that holds threads or other resources; does nothing for the others.
+     */
+    public static void close(GamingEngine engine) {
+        if (engine instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) engine).close();
+            } catch (Exception e) {
+                throw new MancalaException(e);
+            }
+        }
+    }
+
+    /**
+     * Convenience factory for a random opponent that draws from the worker's Random.
+     */
+    public static Function<Random, GamingEngine> randomEngine(Player player) {
+        return random -> RandomEngine.builder().player(player).random(random).build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.freddrake.mancala.mancalaml.engine;
+
+import com.freddrake.mancala.mancalaml.Player;
+import lombok.Getter;
+
+/**
+ * Win, tie and loss counts from player one's point of view.  Each tournament worker keeps its own
+ * record, so it is not thread safe; records are merged once the workers are done.
+ */
+@Getter
+public class TournamentRecord {
+    private long wins;
+    private long ties;
+    private long losses;
+
+    public void add(Player pointsLeader) {
+        switch (pointsLeader) {
+            case PLAYER_ONE:
+                wins++;
+                break;
+            case PLAYER_TWO:
+                losses++;
+                break;
+            default:
+                ties++;
+                break;
+        }
+    }
+
+    public void merge(TournamentRecord other) {
+        wins += other.wins;
+        ties += other.ties;
+        losses += other.losses;
+    }
+
+    public long getGames() {
+        return wins + ties + losses;
+    }
+
+    @Override
+    public String toString() {
+        return wins + "-" + ties + "-" + losses;
+    }
+}
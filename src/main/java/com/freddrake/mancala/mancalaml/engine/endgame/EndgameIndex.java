@@ -0,0 +1,49 @@
+package com.freddrake.mancala.mancalaml.engine.endgame;
+
+import com.freddrake.mancala.mancalaml.FieldRanking;
+import com.freddrake.mancala.mancalaml.MancalaException;
+
+/**
+ * A perfect hash of pebble fields: every way of spreading up to maxPebbles pebbles over the 12 pods
+ * gets its own index, with no gaps.  The index is the field's rank in a FieldRanking.
+ */
+public final class EndgameIndex {
+    public static final int PODS = FieldRanking.PODS;
+    /** The largest table whose index still fits in an int, and so in a single mapped buffer. */
+    public static final int MAX_PEBBLES = 24;
+
+    private static final FieldRanking RANKING = new FieldRanking(MAX_PEBBLES);
+
+    private EndgameIndex() {}
+
+    /**
+     * @return the number of pebble fields with at most maxPebbles pebbles
+     */
+    public static int size(int maxPebbles) {
+        checkPebbles(maxPebbles);
+        return (int) RANKING.size(maxPebbles);
+    }
+
+    /**
+     * @param pebbleField the 12 pods, each holding zero or more pebbles
+     * @param pebbles the total of the field, which the caller usually already has
+     * @return the field's index, between 0 and size(pebbles) - 1
+     */
+    public static int index(int[] pebbleField, int pebbles) {
+        return (int) RANKING.rank(pebbleField, pebbles);
+    }
+
+    /**
+     * The inverse of index(): writes the field with the given index into the array.
+     * @return the number of pebbles in the field
+     */
+    public static int field(int index, int[] into) {
+        return RANKING.unrank(index, into);
+    }
+
+    static void checkPebbles(int maxPebbles) {
+        if (maxPebbles < 0 || maxPebbles > MAX_PEBBLES) {
+            throw new MancalaException("Tablebases hold between 0 and " + MAX_PEBBLES + " pebbles.");
+        }
+    }
+}
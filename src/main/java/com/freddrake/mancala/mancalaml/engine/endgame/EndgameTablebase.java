@@ -0,0 +1,145 @@
+package com.freddrake.mancala.mancalaml.engine.endgame;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exact values of endgame positions, as solved by EndgameTablebaseGenerator.  A file is a 16 byte
+ * header followed by one signed byte per position, at its EndgameIndex; it is memory mapped, so
+ * opening even a large table is immediate and the operating system pages in only the parts that are
+ * used.  Lookups are an index computation and a single read.  Only absolute reads are made on the
+ * buffer, so one tablebase can be shared by any number of threads.
+ */
+public class EndgameTablebase {
+    static final int MAGIC = 0x4D544231; // "MTB1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private static final int PODS = EndgameIndex.PODS;
+
+    private final ByteBuffer table;
+    private final int maxPebbles;
+    private final ThreadLocal<int[]> fields = ThreadLocal.withInitial(() -> new int[PODS]);
+    private final ThreadLocal<GameBoard> boards = ThreadLocal.withInitial(GameBoard::new);
+
+    private EndgameTablebase(ByteBuffer table, int maxPebbles) {
+        this.table = table;
+        this.maxPebbles = maxPebbles;
+    }
+
+    /**
+     * Maps a table written by EndgameTablebaseGenerator.write.
+     */
+    public static EndgameTablebase open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new MancalaException(path + " is not an endgame tablebase.");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new MancalaException(path + " has unsupported tablebase version " + buffer.getInt(4));
+            }
+            int maxPebbles = buffer.getInt(8);
+            EndgameIndex.checkPebbles(maxPebbles);
+            if (buffer.getInt(12) != EndgameIndex.size(maxPebbles)
+                    || buffer.remaining() != HEADER_SIZE + EndgameIndex.size(maxPebbles)) {
+                throw new MancalaException(path + " is truncated.");
+            }
+            buffer.position(HEADER_SIZE);
+            return new EndgameTablebase(buffer.slice(), maxPebbles);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    /**
+     * Wraps a table held in memory, as returned by EndgameTablebaseGenerator.generate.
+     */
+    public static EndgameTablebase of(byte[] values, int maxPebbles) {
+        if (values.length != EndgameIndex.size(maxPebbles)) {
+            throw new MancalaException("A " + maxPebbles + " pebble tablebase has "
+                    + EndgameIndex.size(maxPebbles) + " positions, not " + values.length);
+        }
+        return new EndgameTablebase(ByteBuffer.wrap(values), maxPebbles);
+    }
+
+    public int getMaxPebbles() {
+        return maxPebbles;
+    }
+
+    /**
+     * @return true if the board has few enough pebbles left in its pods to be in the table
+     */
+    public boolean contains(GameBoard board) {
+        return pebbles(board.pebbleField(Player.PLAYER_ONE, fields.get())) <= maxPebbles;
+    }
+
+    /**
+     * @return the most points sideToMove can still gain over their opponent, with best play from both
+     * @throws MancalaException if the position has too many pebbles to be in the table
+     */
+    public int margin(GameBoard board, Player sideToMove) {
+        return margin(board.pebbleField(sideToMove, fields.get()));
+    }
+
+    /**
+     * Same as margin(board, sideToMove) for a pebble field from the mover's perspective, as filled in
+     * by GameBoard.pebbleField.
+     */
+    public int margin(int[] pebbleField) {
+        int pebbles = pebbles(pebbleField);
+        if (pebbles > maxPebbles) {
+            throw new MancalaException("The tablebase only holds positions with up to " + maxPebbles + " pebbles.");
+        }
+        return table.get(EndgameIndex.index(pebbleField, pebbles));
+    }
+
+    /**
+     * Finds a move that keeps the position's value, by looking up the result of every legal move.
+     * @return the location, between 1 and 6, of the best move for sideToMove
+     * @throws MancalaException if the position has too many pebbles to be in the table, or no moves
+     */
+    public int bestMove(GameBoard board, Player sideToMove) {
+        int validMoves = board.validMoveMask(sideToMove);
+        if (validMoves == 0) {
+            throw new MancalaException("Cannot play a move");
+        }
+        int[] field = fields.get();
+        if (pebbles(board.pebbleField(Player.PLAYER_ONE, field)) > maxPebbles) {
+            throw new MancalaException("The tablebase only holds positions with up to " + maxPebbles + " pebbles.");
+        }
+        Player opponent = sideToMove == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+        GameBoard child = boards.get();
+        int best = 0;
+        int bestValue = Integer.MIN_VALUE;
+        for (; validMoves != 0; validMoves &= validMoves - 1) {
+            int location = Integer.numberOfTrailingZeros(validMoves) + 1;
+            board.copyInto(child);
+            int before = child.playerPoints(sideToMove) - child.playerPoints(opponent);
+            boolean playAgain = child.executeMove(sideToMove, location);
+            int gained = child.playerPoints(sideToMove) - child.playerPoints(opponent) - before;
+            int value = gained + (playAgain ? margin(child, sideToMove) : -margin(child, opponent));
+            if (value > bestValue) {
+                bestValue = value;
+                best = location;
+            }
+        }
+        return best;
+    }
+
+    private static int pebbles(int[] pebbleField) {
+        int pebbles = 0;
+        for (int i = 0; i < PODS; i++) {
+            pebbles += pebbleField[i];
+        }
+        return pebbles;
+    }
+}
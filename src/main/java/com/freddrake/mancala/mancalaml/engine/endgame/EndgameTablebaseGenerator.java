@@ -0,0 +1,143 @@
+package com.freddrake.mancala.mancalaml.engine.endgame;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Solves every position with up to maxPebbles pebbles left in the pods, under the same rules as
+ * GameBoard since it plays the moves on one.  A position's value is the most points the player to
+ * move can gain over their opponent from there on, with best play from both; it doesn't depend on
+ * the points already scored, so one entry covers every score.  Positions are stored from the mover's
+ * point of view, so one entry also covers both players.
+ *
+ * A move either puts pebbles in the mover's points pile, leaving fewer in play, or it only moves
+ * pebbles forward on the mover's own side, since reaching the other side means passing the points
+ * pile.  So within a pebble count every move that doesn't score strictly brings the pebbles closer
+ * to a points pile, and the positions form an acyclic graph.  Each pebble count is solved after all
+ * the smaller ones, and a position's same-count successors are solved, depth first, before it.
+ * Every position is visited once, and no iterating to a fixed point is needed.
+ */
+@Slf4j
+public class EndgameTablebaseGenerator {
+    static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    private final int maxPebbles;
+    private byte[] values;
+    private GameBoard[] boards;
+    private int[][] fields;
+
+    /**
+     * @param maxPebbles the most pebbles left in the pods, 12 by default; the table takes
+     *                   C(maxPebbles + 12, 12) bytes, 2.7MB for 12 pebbles and 30MB for 16
+     */
+    @Builder
+    private EndgameTablebaseGenerator(Integer maxPebbles) {
+        this.maxPebbles = Optional.ofNullable(maxPebbles).orElse(12);
+        EndgameIndex.checkPebbles(this.maxPebbles);
+    }
+
+    /**
+     * @return the value of every position, by EndgameIndex
+     */
+    public byte[] generate() {
+        values = new byte[EndgameIndex.size(maxPebbles)];
+        Arrays.fill(values, UNSOLVED);
+        // Every recursive step lowers the sum of the pebbles' distances to the points pile ahead of them.
+        int maxDepth = EndgameIndex.PODS * maxPebbles + 2;
+        boards = new GameBoard[maxDepth];
+        fields = new int[maxDepth][EndgameIndex.PODS];
+        for (int depth = 0; depth < maxDepth; depth++) {
+            boards[depth] = new GameBoard();
+        }
+
+        long start = System.nanoTime();
+        for (int pebbles = 0; pebbles <= maxPebbles; pebbles++) {
+            int first = pebbles == 0 ? 0 : EndgameIndex.size(pebbles - 1);
+            int end = EndgameIndex.size(pebbles);
+            for (int index = first; index < end; index++) {
+                if (values[index] == UNSOLVED) {
+                    EndgameIndex.field(index, fields[0]);
+                    solve(fields[0], pebbles, index, 0);
+                }
+            }
+            log.info("Solved {} positions with {} pebbles after {}ms", end - first, pebbles,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        byte[] solved = values;
+        values = null;
+        boards = null;
+        fields = null;
+        return solved;
+    }
+
+    /**
+     * Generates the table and writes it to a file, through a temporary file so that a reader never
+     * sees half a table.
+     */
+    public void write(Path path) {
+        byte[] table = generate();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(EndgameTablebase.HEADER_SIZE);
+            header.putInt(EndgameTablebase.MAGIC).putInt(EndgameTablebase.VERSION).putInt(maxPebbles).putInt(table.length);
+            header.flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(table));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        log.info("Wrote a {} pebble endgame tablebase of {} positions to {}", maxPebbles, table.length, path);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private int solve(int[] field, int pebbles, int index, int depth) {
+        GameBoard board = boards[depth];
+        int[] child = fields[depth + 1];
+        int best = Integer.MIN_VALUE;
+        for (int location = 1; location <= EndgameIndex.PODS / 2; location++) {
+            if (field[location - 1] == 0) {
+                continue;
+            }
+            board.resetGameBoard(0, 0, field);
+            boolean playAgain = board.executeMove(Player.PLAYER_ONE, location);
+            int gained = board.playerPoints(Player.PLAYER_ONE);
+            board.pebbleField(playAgain ? Player.PLAYER_ONE : Player.PLAYER_TWO, child);
+            int childPebbles = pebbles - gained;
+            int childIndex = EndgameIndex.index(child, childPebbles);
+            int childValue = values[childIndex];
+            if (childValue == UNSOLVED) {
+                childValue = solve(child, childPebbles, childIndex, depth + 1);
+            }
+            best = Math.max(best, gained + (playAgain ? childValue : -childValue));
+        }
+        // With no pebbles on the mover's side the game is over, and nobody gains anything more.
+        int value = best == Integer.MIN_VALUE ? 0 : best;
+        values[index] = (byte) value;
+        return value;
+    }
+}
@@ -0,0 +1,146 @@
+package com.freddrake.mancala.mancalaml.engine.opening;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Move statistics for opening positions, as collected by OpeningBookBuilder.  A file is a 16 byte
+ * header followed by fixed size entries sorted by position hash: the 8 byte GameBoard.positionHash of
+ * the position, then for each of the 6 moves the games it was played in and the half points it
+ * scored for the mover (2 for a win, 1 for a tie), as unsigned shorts.  The file is memory mapped, so
+ * opening it is immediate, and positions are found by binary search over the mapped entries.  Only
+ * absolute reads are made on the buffer, so one book can be shared by any number of threads.
+ */
+public class OpeningBook {
+    static final int MAGIC = 0x4D4F4231; // "MOB1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int MOVES = 6;
+    static final int ENTRY_SIZE = 8 + MOVES * 4;
+
+    private final ByteBuffer entries;
+    private final int size;
+    private final int plies;
+
+    private OpeningBook(ByteBuffer entries, int size, int plies) {
+        this.entries = entries;
+        this.size = size;
+        this.plies = plies;
+    }
+
+    /**
+     * Maps a book written by OpeningBookBuilder.write.
+     */
+    public static OpeningBook open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString());
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    /**
+     * Reads a book held in memory, in the same format as the file.
+     */
+    static OpeningBook of(ByteBuffer buffer, String name) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new MancalaException(name + " is not an opening book.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new MancalaException(name + " has unsupported opening book version " + buffer.getInt(4));
+        }
+        int size = buffer.getInt(8);
+        if (buffer.remaining() != HEADER_SIZE + (long) size * ENTRY_SIZE) {
+            throw new MancalaException(name + " is truncated.");
+        }
+        buffer.position(HEADER_SIZE);
+        return new OpeningBook(buffer.slice(), size, buffer.getInt(12));
+    }
+
+    /**
+     * @return the number of positions in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of plies from the start of each game that were recorded
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Picks the legal move with the best score among those played in at least minGames games.
+     * @return the location, between 1 and 6, of the book move, or 0 if the book has none
+     */
+    public int bestMove(GameBoard gameBoard, Player player, int minGames) {
+        int entry = find(gameBoard.positionHash(player));
+        if (entry < 0) {
+            return 0;
+        }
+        int validMoves = gameBoard.validMoveMask(player);
+        int best = 0;
+        double bestScore = -1;
+        int bestGames = 0;
+        for (int move = 0; move < MOVES; move++) {
+            int games = games(entry, move);
+            if ((validMoves & (1 << move)) == 0 || games == 0 || games < minGames) {
+                continue;
+            }
+            double score = halfPoints(entry, move) / (2.0 * games);
+            if (score > bestScore || (score == bestScore && games > bestGames)) {
+                best = move + 1;
+                bestScore = score;
+                bestGames = games;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the games the move, between 0 and 5, was played in from the position, or 0 if the
+     * position isn't in the book
+     */
+    public int games(GameBoard gameBoard, Player player, int move) {
+        int entry = find(gameBoard.positionHash(player));
+        return entry < 0 ? 0 : games(entry, move);
+    }
+
+    /**
+     * @return the entry holding the key, or -1
+     */
+    int find(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = entries.getLong(middle * ENTRY_SIZE);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int games(int entry, int move) {
+        return entries.getChar(entry * ENTRY_SIZE + 8 + move * 4);
+    }
+
+    private int halfPoints(int entry, int move) {
+        return entries.getChar(entry * ENTRY_SIZE + 10 + move * 4);
+    }
+}
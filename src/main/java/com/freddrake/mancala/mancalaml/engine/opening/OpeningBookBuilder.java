@@ -0,0 +1,200 @@
+package com.freddrake.mancala.mancalaml.engine.opening;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Builds an OpeningBook from self-play.  Games are spread over a thread pool like a Tournament, and
+ * every move in the first plies of each game is recorded against its position with the game's
+ * result for the mover.  Within those plies a move is sometimes picked at random instead, so the book
+ * covers more than the engines' single favourite line.  Each worker counts into its own map, and the
+ * maps are merged, sorted by position hash and written out once all games are done.
+ */
+@Slf4j
+public class OpeningBookBuilder {
+    private static final int MAX_COUNT = Character.MAX_VALUE;
+
+    private final Function<Random, GamingEngine> playerOneEngine;
+    private final Function<Random, GamingEngine> playerTwoEngine;
+    private final int games;
+    private final int threads;
+    private final long seed;
+    private final int plies;
+    private final double exploration;
+    private final int minGames;
+
+    /**
+     * @param playerOneEngine builds player one's engine for a worker
+     * @param playerTwoEngine builds player two's engine for a worker
+     * @param games the number of self-play games, 10,000 by default
+     * @param threads the size of the thread pool, one per core by default
+     * @param plies the number of moves from the start of each game to record, 8 by default
+     * @param exploration the chance of playing a random legal move within those plies, 0.1 by default
+     * @param minGames positions reached in fewer games are left out of the book, 10 by default
+     */
+    @Builder
+    private OpeningBookBuilder(@NonNull Function<Random, GamingEngine> playerOneEngine,
+                               @NonNull Function<Random, GamingEngine> playerTwoEngine, Integer games,
+                               Integer threads, Long seed, Integer plies, Double exploration, Integer minGames) {
+        this.playerOneEngine = playerOneEngine;
+        this.playerTwoEngine = playerTwoEngine;
+        this.games = Optional.ofNullable(games).orElse(10_000);
+        this.threads = Optional.ofNullable(threads).filter(t -> t > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        this.seed = Optional.ofNullable(seed).orElse(System.nanoTime());
+        this.plies = Optional.ofNullable(plies).orElse(8);
+        this.exploration = Optional.ofNullable(exploration).orElse(0.1);
+        this.minGames = Optional.ofNullable(minGames).orElse(10);
+    }
+
+    /**
+     * Plays the games and returns the book in memory.
+     */
+    public OpeningBook generate() {
+        return OpeningBook.of(playAndEncode(), "Opening book");
+    }
+
+    /**
+     * Plays the games and writes the book to a file, through a temporary file so that a reader never
+     * sees half a book.
+     */
+    public void write(Path path) {
+        ByteBuffer book = playAndEncode();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (book.hasRemaining()) {
+                channel.write(book);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        log.info("Wrote an opening book to {}", path);
+    }
+
+    private ByteBuffer playAndEncode() {
+        long start = System.nanoTime();
+        Map<Long, int[]> statistics = play();
+        ByteBuffer book = encode(statistics);
+        log.info("Opening book of {} positions from {} games ({} seen) in {}ms", book.getInt(8), games,
+                statistics.size(), (System.nanoTime() - start) / 1_000_000);
+        return book;
+    }
+
+    private Map<Long, int[]> play() {
+        Map<Long, int[]> statistics = new HashMap<>();
+        for (Map<Long, int[]> workerStatistics : Tournament.runWorkers(games, threads, seed, this::playGames)) {
+            workerStatistics.forEach((key, counts) -> statistics.merge(key, counts, (a, b) -> {
+                for (int i = 0; i < a.length; i++) {
+                    a[i] += b[i];
+                }
+                return a;
+            }));
+        }
+        return statistics;
+    }
+
+    /**
+     * @return for every position seen, the games and half points of each move; games at [move] and
+     * half points at [OpeningBook.MOVES + move]
+     */
+    private Map<Long, int[]> playGames(int workerGames, Random random) {
+        GameBoard board = new GameBoard();
+        GamingEngine playerOne = null;
+        GamingEngine playerTwo = null;
+        try {
+            playerOne = playerOneEngine.apply(random);
+            playerTwo = playerTwoEngine.apply(random);
+            Map<Long, int[]> statistics = new HashMap<>();
+            long[] keys = new long[plies];
+            Player[] movers = new Player[plies];
+            int[] moves = new int[plies];
+
+            for (int game = 0; game < workerGames; game++) {
+                board.resetGameBoard();
+                Player side = Player.PLAYER_ONE;
+                int recorded = 0;
+                for (int ply = 0; ply < 1000 && !board.isGameOver(side); ply++) {
+                    int location;
+                    if (ply < plies && random.nextDouble() < exploration) {
+                        location = GameBoard.randomMoveBit(board.validMoveMask(side), random) + 1;
+                    } else {
+                        location = (side == Player.PLAYER_ONE ? playerOne : playerTwo).chooseMove(board);
+                    }
+                    if (ply < plies) {
+                        keys[recorded] = board.positionHash(side);
+                        movers[recorded] = side;
+                        moves[recorded++] = location - 1;
+                    }
+                    if (!board.executeMove(side, location)) {
+                        side = side == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+                    }
+                }
+
+                Player winner = board.getPointsLeader();
+                for (int i = 0; i < recorded; i++) {
+                    int[] counts = statistics.computeIfAbsent(keys[i], key -> new int[OpeningBook.MOVES * 2]);
+                    counts[moves[i]]++;
+                    counts[OpeningBook.MOVES + moves[i]] += winner == Player.NOBODY ? 1 : winner == movers[i] ? 2 : 0;
+                }
+            }
+            return statistics;
+        } finally {
+            Tournament.close(playerOne);
+            Tournament.close(playerTwo);
+        }
+    }
+
+    private ByteBuffer encode(Map<Long, int[]> statistics) {
+        long[] keys = statistics.entrySet().stream()
+                .filter(entry -> Arrays.stream(entry.getValue(), 0, OpeningBook.MOVES).sum() >= minGames)
+                .mapToLong(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+
+        ByteBuffer book = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + keys.length * OpeningBook.ENTRY_SIZE);
+        book.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(keys.length).putInt(plies);
+        for (long key : keys) {
+            int[] counts = statistics.get(key);
+            // Counts are stored as unsigned shorts; scale a position's counts down together if they don't fit.
+            int largest = 0;
+            for (int count : counts) {
+                largest = Math.max(largest, count);
+            }
+            double scale = largest > MAX_COUNT ? (double) MAX_COUNT / largest : 1;
+            book.putLong(key);
+            for (int move = 0; move < OpeningBook.MOVES; move++) {
+                book.putChar((char) Math.round(counts[move] * scale));
+                book.putChar((char) Math.round(counts[OpeningBook.MOVES + move] * scale));
+            }
+        }
+        book.flip();
+        return book;
+    }
+}
@@ -0,0 +1,60 @@
+package com.freddrake.mancala.mancalaml.engine.opening;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import lombok.Builder;
+import lombok.NonNull;
+
+import java.util.Optional;
+
+/**
+ * Plays book moves while the position is in an OpeningBook, and asks another engine, such as a
+ * network or a search, once it isn't.  A book lookup is a binary search over the mapped file, far
+ * cheaper than a forward pass or a search.
+ */
+public class OpeningBookEngine extends AbstractGamingEngine {
+    private final OpeningBook book;
+    private final GamingEngine engine;
+    private final int minGames;
+    private long bookMoves;
+    private long engineMoves;
+
+    /**
+     * @param engine plays for the same player whenever the book has no move
+     * @param minGames book moves played in fewer games are ignored, 10 by default
+     */
+    @Builder
+    private OpeningBookEngine(@NonNull Player player, @NonNull OpeningBook book, @NonNull GamingEngine engine,
+                              Integer minGames) {
+        this.player = player;
+        this.book = book;
+        this.engine = engine;
+        this.minGames = Optional.ofNullable(minGames).orElse(10);
+    }
+
+    @Override
+    public int chooseMove(GameBoard gameBoard) {
+        int move = book.bestMove(gameBoard, player, minGames);
+        if (move != 0) {
+            bookMoves++;
+            return move;
+        }
+        engineMoves++;
+        return engine.chooseMove(gameBoard);
+    }
+
+    @Override
+    public boolean isGameOver(GameBoard gameBoard) {
+        return gameBoard.isGameOver(player);
+    }
+
+    public long getBookMoves() {
+        return bookMoves;
+    }
+
+    public long getEngineMoves() {
+        return engineMoves;
+    }
+}
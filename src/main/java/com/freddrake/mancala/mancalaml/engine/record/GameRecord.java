@@ -0,0 +1,240 @@
+package com.freddrake.mancala.mancalaml.engine.record;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.PositionCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One game from the perspective of the player who made the recorded moves, as GameMDP plays it: the
+ * position before each of the player's moves, the move and its reward, then the final position.  The
+ * opponent's replies happen between steps and aren't recorded.  Positions are PositionCodec
+ * encodings for the player, so a step is 17 bytes: the 14 byte position, the action and the reward as
+ * a short.  The bytes held here are exactly the bytes of the game in a file.
+ *
+ * A record is reused: start() clears it for a new game, and GameRecordReader.read overwrites it with a
+ * game from a file.  It is not thread safe.
+ */
+public class GameRecord {
+    /** The game ended on an illegal move by the player. */
+    public static final int ILLEGAL_MOVE = 1;
+    /** The game ended early, on reaching a tablebase position; the last reward holds its value. */
+    public static final int TABLEBASE = 1 << 1;
+    /** The game was abandoned before it ended, so its last step isn't terminal. */
+    public static final int TRUNCATED = 1 << 2;
+
+    static final int HEADER_SIZE = 4;
+    static final int STEP_SIZE = PositionCodec.BYTES + 3;
+    private static final int PODS = PositionCodec.PODS;
+
+    private byte[] data = new byte[HEADER_SIZE + 64 * STEP_SIZE + PositionCodec.BYTES];
+    private int length;
+    private int steps;
+    private Player player;
+    private boolean finished;
+    private final int[] observation = new int[PODS];
+    private final int[] nextObservation = new int[PODS];
+
+    /**
+     * Receives the transitions of a game, in the shape ReplayMemory.store takes them.
+     */
+    public interface TransitionHandler {
+        void accept(int[] observation, int action, double reward, boolean done, int[] nextObservation);
+    }
+
+    /**
+     * Clears the record for a new game.
+     * @param player the player whose moves are recorded
+     */
+    public void start(Player player) {
+        this.player = player;
+        steps = 0;
+        length = HEADER_SIZE;
+        finished = false;
+        data[2] = (byte) (player == Player.PLAYER_ONE ? 0 : 1);
+        data[3] = 0;
+    }
+
+    /**
+     * Records the position before one of the player's moves, and the move.
+     * @param action the zero based action
+     * @return the step, for setReward
+     */
+    public int addStep(GameBoard gameBoard, int action) {
+        if (player == null || finished) {
+            throw new MancalaException("Start a game record before adding steps to it.");
+        }
+        if (steps == Character.MAX_VALUE) {
+            throw new MancalaException("A game record holds at most " + (int) Character.MAX_VALUE + " steps.");
+        }
+        ensureCapacity(length + STEP_SIZE + PositionCodec.BYTES);
+        PositionCodec.encode(gameBoard, player, data, length);
+        data[length + PositionCodec.BYTES] = (byte) action;
+        data[length + PositionCodec.BYTES + 1] = 0;
+        data[length + PositionCodec.BYTES + 2] = 0;
+        length += STEP_SIZE;
+        return steps++;
+    }
+
+    public void setReward(int step, int reward) {
+        if (reward < Short.MIN_VALUE || reward > Short.MAX_VALUE) {
+            throw new MancalaException("Reward " + reward + " doesn't fit in a game record.");
+        }
+        int offset = stepOffset(step) + PositionCodec.BYTES + 1;
+        data[offset] = (byte) (reward >> 8);
+        data[offset + 1] = (byte) reward;
+    }
+
+    /**
+     * Records the final position and how the game ended.  After an illegal move the board holds a
+     * points pile of -1, so the position before the move is recorded as the final one instead.
+     * @param flags any of ILLEGAL_MOVE, TABLEBASE and TRUNCATED
+     */
+    public void finish(GameBoard gameBoard, int flags) {
+        if (player == null || finished) {
+            throw new MancalaException("Start a game record before finishing it.");
+        }
+        if ((flags & ILLEGAL_MOVE) != 0 && steps > 0) {
+            System.arraycopy(data, stepOffset(steps - 1), data, length, PositionCodec.BYTES);
+        } else {
+            PositionCodec.encode(gameBoard, player, data, length);
+        }
+        length += PositionCodec.BYTES;
+        data[0] = (byte) (steps >> 8);
+        data[1] = (byte) steps;
+        data[3] = (byte) flags;
+        finished = true;
+    }
+
+    /**
+     * @return true if steps have been added since start() and the game hasn't been finished
+     */
+    public boolean isInProgress() {
+        return player != null && !finished && steps > 0;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return the number of moves the player made
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    public int getFlags() {
+        return data[3];
+    }
+
+    public int getAction(int step) {
+        return data[stepOffset(step) + PositionCodec.BYTES];
+    }
+
+    public int getReward(int step) {
+        int offset = stepOffset(step) + PositionCodec.BYTES + 1;
+        return (short) ((data[offset] << 8) | (data[offset + 1] & 0xFF));
+    }
+
+    /**
+     * @param step the step, or getSteps() for the final position
+     * @param cell 0-11 for the pods, the player's own first, 12 and 13 for the player's and opponent's points
+     */
+    public int pebbles(int step, int cell) {
+        return PositionCodec.pebbles(data, positionOffset(step), cell);
+    }
+
+    /**
+     * Copies the observation before a step, or the final one, into an array.
+     * @return the given array
+     */
+    public int[] pebbleField(int step, int[] into) {
+        int offset = positionOffset(step);
+        for (int i = 0; i < PODS; i++) {
+            into[i] = PositionCodec.pebbles(data, offset, i);
+        }
+        return into;
+    }
+
+    /**
+     * Sets a board to the position before a step, or the final one.
+     */
+    public void decode(int step, GameBoard gameBoard) {
+        PositionCodec.decode(data, positionOffset(step), gameBoard, player);
+    }
+
+    /**
+     * @return the player's points less the opponent's in the final position
+     */
+    public int getMargin() {
+        return pebbles(steps, PODS) - pebbles(steps, PODS + 1);
+    }
+
+    /**
+     * Hands every step to a handler as a transition, the next observation being the position before
+     * the following step.  Only the last step of a game that wasn't truncated is terminal.
+     * @return the number of transitions
+     */
+    public int forEachTransition(TransitionHandler handler) {
+        boolean truncated = (getFlags() & TRUNCATED) != 0;
+        for (int step = 0; step < steps; step++) {
+            pebbleField(step, observation);
+            pebbleField(step + 1, nextObservation);
+            handler.accept(observation, getAction(step), getReward(step), step == steps - 1 && !truncated,
+                    nextObservation);
+        }
+        return steps;
+    }
+
+    /**
+     * @return the game's bytes, from 0 to length(), as they appear in a file
+     */
+    byte[] data() {
+        return data;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Overwrites the record with a game read from a file.
+     */
+    void load(ByteBuffer from, int offset, int gameLength) {
+        ensureCapacity(gameLength);
+        for (int i = 0; i < gameLength; i++) {
+            data[i] = from.get(offset + i);
+        }
+        length = gameLength;
+        steps = ((data[0] & 0xFF) << 8) | (data[1] & 0xFF);
+        player = data[2] == 0 ? Player.PLAYER_ONE : Player.PLAYER_TWO;
+        finished = true;
+        if (gameLength != HEADER_SIZE + steps * STEP_SIZE + PositionCodec.BYTES) {
+            throw new MancalaException("Game record of " + steps + " steps has " + gameLength + " bytes.");
+        }
+    }
+
+    private int stepOffset(int step) {
+        if (step < 0 || step >= steps) {
+            throw new MancalaException("Step " + step + " is outside a game of " + steps + " steps.");
+        }
+        return HEADER_SIZE + step * STEP_SIZE;
+    }
+
+    private int positionOffset(int step) {
+        if (step == steps && finished) {
+            return HEADER_SIZE + steps * STEP_SIZE;
+        }
+        return stepOffset(step);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (data.length < capacity) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.freddrake.mancala.mancalaml.engine.record;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Random access to the games in a file written by GameRecordWriter.  Opening a file reads only the
+ * chunk headers, to index the first game of every chunk; the chunks themselves are memory mapped, so
+ * the operating system pages in only the games that are read.  Finding a game is a binary search
+ * over the chunks and one read of the chunk's offsets.  Mappings are limited to 2GB, so large files
+ * are mapped in several segments, each a run of whole chunks.
+ *
+ * Only absolute reads are made on the mapped buffers, so one reader can be shared by any number of
+ * threads, each reading into its own GameRecord.  Chunks appended after the file was opened are not
+ * seen; open it again for them.
+ */
+public class GameRecordReader {
+    private final ByteBuffer[] segments;
+    private final int[] chunkSegment;
+    private final int[] chunkOffset;
+    private final long[] firstGame;
+
+    private GameRecordReader(ByteBuffer[] segments, int[] chunkSegment, int[] chunkOffset, long[] firstGame) {
+        this.segments = segments;
+        this.chunkSegment = chunkSegment;
+        this.chunkOffset = chunkOffset;
+        this.firstGame = firstGame;
+    }
+
+    public static GameRecordReader open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> chunks = new ArrayList<>();
+            long end = scan(channel, path.toString(), chunks);
+
+            int[] chunkSegment = new int[chunks.size()];
+            int[] chunkOffset = new int[chunks.size()];
+            long[] firstGame = new long[chunks.size() + 1];
+            List<ByteBuffer> segments = new ArrayList<>();
+            long segmentStart = GameRecordWriter.HEADER_SIZE;
+            for (int chunk = 0; chunk < chunks.size(); chunk++) {
+                long start = chunks.get(chunk)[0];
+                long chunkEnd = chunk + 1 < chunks.size() ? chunks.get(chunk + 1)[0] : end;
+                if (chunkEnd - segmentStart > Integer.MAX_VALUE) {
+                    // The mapping stays valid after the channel is closed.
+                    segments.add(map(channel, segmentStart, start));
+                    segmentStart = start;
+                }
+                chunkSegment[chunk] = segments.size();
+                chunkOffset[chunk] = (int) (start - segmentStart);
+                firstGame[chunk + 1] = firstGame[chunk] + chunks.get(chunk)[1];
+            }
+            segments.add(map(channel, segmentStart, end));
+            return new GameRecordReader(segments.toArray(new ByteBuffer[0]), chunkSegment, chunkOffset, firstGame);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    /**
+     * @return the number of games in the file
+     */
+    public long size() {
+        return firstGame[firstGame.length - 1];
+    }
+
+    /**
+     * @return the number of chunks the games are stored in
+     */
+    public int getChunks() {
+        return chunkOffset.length;
+    }
+
+    /**
+     * Copies a game into a record.
+     * @param game between 0 and size() - 1, in the order the games were appended
+     */
+    public void read(long game, GameRecord into) {
+        int chunk = chunk(game);
+        ByteBuffer segment = segments[chunkSegment[chunk]];
+        int index = (int) (game - firstGame[chunk]);
+        int start = gameOffset(chunk, index);
+        int end = index + 1 < firstGame[chunk + 1] - firstGame[chunk]
+                ? gameOffset(chunk, index + 1)
+                : gameOffset(chunk, 0) + segment.getInt(chunkOffset[chunk] + 8);
+        into.load(segment, start, end - start);
+    }
+
+    /**
+     * @return the number of moves recorded in a game, without reading the rest of it
+     */
+    public int steps(long game) {
+        int chunk = chunk(game);
+        int start = gameOffset(chunk, (int) (game - firstGame[chunk]));
+        return segments[chunkSegment[chunk]].getChar(start);
+    }
+
+    /**
+     * @return the game's flags, any of GameRecord.ILLEGAL_MOVE, TABLEBASE and TRUNCATED, without reading
+     * the rest of it
+     */
+    public int flags(long game) {
+        int chunk = chunk(game);
+        int start = gameOffset(chunk, (int) (game - firstGame[chunk]));
+        return segments[chunkSegment[chunk]].get(start + 3);
+    }
+
+    /**
+     * Hands every transition of a range of games to a handler, for example to warm start a replay memory.
+     * @return the number of transitions
+     */
+    public long forEachTransition(long first, long games, GameRecord.TransitionHandler handler) {
+        GameRecord record = new GameRecord();
+        long transitions = 0;
+        for (long game = first; game < first + games; game++) {
+            read(game, record);
+            transitions += record.forEachTransition(handler);
+        }
+        return transitions;
+    }
+
+    /**
+     * @return the chunk holding a game
+     */
+    private int chunk(long game) {
+        if (game < 0 || game >= size()) {
+            throw new MancalaException("Game " + game + " is outside a file of " + size() + " games.");
+        }
+        int low = 0;
+        int high = chunkOffset.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstGame[middle] <= game) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return where the index-th game of a chunk starts in the chunk's segment
+     */
+    private int gameOffset(int chunk, int index) {
+        ByteBuffer segment = segments[chunkSegment[chunk]];
+        int offset = chunkOffset[chunk];
+        int payload = offset + GameRecordWriter.CHUNK_HEADER_SIZE + segment.getInt(offset + 4) * Integer.BYTES;
+        return payload + segment.getInt(offset + GameRecordWriter.CHUNK_HEADER_SIZE + index * Integer.BYTES);
+    }
+
+    /**
+     * Checks a file's header and walks its chunk headers.
+     * @param chunks when not null, receives the offset and number of games of every complete chunk
+     * @return the end of the last complete chunk
+     */
+    static long scan(FileChannel channel, String name, List<long[]> chunks) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.HEADER_SIZE);
+        if (readFully(channel, header, 0) < GameRecordWriter.HEADER_SIZE || header.getInt(0) != GameRecordWriter.MAGIC) {
+            throw new MancalaException(name + " is not a game record file.");
+        }
+        if (header.getInt(4) != GameRecordWriter.VERSION) {
+            throw new MancalaException(name + " has unsupported game record version " + header.getInt(4));
+        }
+
+        long size = channel.size();
+        long position = GameRecordWriter.HEADER_SIZE;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(GameRecordWriter.CHUNK_HEADER_SIZE);
+        while (readFully(channel, chunkHeader, position) == GameRecordWriter.CHUNK_HEADER_SIZE
+                && chunkHeader.getInt(0) == GameRecordWriter.CHUNK_MAGIC) {
+            int games = chunkHeader.getInt(4);
+            long end = position + GameRecordWriter.CHUNK_HEADER_SIZE + (long) games * Integer.BYTES
+                    + chunkHeader.getInt(8);
+            if (games < 1 || end > size) {
+                break;
+            }
+            if (chunks != null) {
+                chunks.add(new long[] {position, games});
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+}
@@ -0,0 +1,163 @@
+package com.freddrake.mancala.mancalaml.engine.record;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends games to a game record file.  A file is a 16 byte header followed by chunks, each a 12 byte
+ * chunk header (magic, number of games, payload bytes), the offset of every game within the payload,
+ * then the games' bytes as GameRecord holds them.  Games are collected into a chunk in memory and the
+ * chunk is written with one call once it reaches chunkBytes, or on flush() and close(), so recording
+ * costs a copy per game and a write per chunk.
+ *
+ * Files are only ever appended to.  A chunk left incomplete by a crash is cut off when the file is
+ * next opened for writing, and is ignored by readers until then.  Games can be appended from any
+ * number of threads; each thread should fill its own GameRecord.
+ */
+@Slf4j
+public class GameRecordWriter implements AutoCloseable {
+    static final int MAGIC = 0x4D475231; // "MGR1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int CHUNK_MAGIC = 0x4D474331; // "MGC1"
+    static final int CHUNK_HEADER_SIZE = 12;
+    static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private ByteBuffer payload;
+    private int[] offsets = new int[256];
+    private int chunkGames;
+    private long games;
+    private long chunks;
+
+    private GameRecordWriter(Path path, FileChannel channel, int chunkBytes) {
+        this.path = path;
+        this.channel = channel;
+        this.chunkBytes = chunkBytes;
+        payload = ByteBuffer.allocate(chunkBytes + chunkBytes / 4);
+    }
+
+    /**
+     * Opens a file for appending, creating it if needed, with chunks of about a megabyte.
+     */
+    public static GameRecordWriter open(Path path) {
+        return open(path, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes the payload size at which a chunk is written out
+     */
+    public static GameRecordWriter open(Path path, int chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new MancalaException("Game record chunks must be at least 1 byte.");
+        }
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+                write(channel, header);
+            } else {
+                long end = GameRecordReader.scan(channel, path.toString(), null);
+                if (end < channel.size()) {
+                    log.warn("Cutting an incomplete chunk of {} bytes off the end of {}", channel.size() - end, path);
+                    channel.truncate(end);
+                }
+            }
+            channel.position(channel.size());
+            return new GameRecordWriter(path, channel, chunkBytes);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    /**
+     * Appends a finished game.  It is in the file once its chunk is written.
+     */
+    public synchronized void append(GameRecord record) {
+        if (record.isInProgress()) {
+            throw new MancalaException("Only finished games can be appended.");
+        }
+        if (payload.remaining() < record.length()) {
+            payload = ByteBuffer.allocate(Math.max(payload.capacity() * 2, payload.position() + record.length()))
+                    .put((ByteBuffer) payload.flip());
+        }
+        if (chunkGames == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[chunkGames++] = payload.position();
+        payload.put(record.data(), 0, record.length());
+        games++;
+        if (payload.position() >= chunkBytes) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes out the games collected so far, as a chunk of their own.
+     */
+    public synchronized void flush() {
+        writeChunk();
+    }
+
+    /**
+     * @return the number of games appended through this writer
+     */
+    public synchronized long getGames() {
+        return games;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d games appended in %d chunks", path, games, chunks);
+    }
+
+    @Override
+    public synchronized void close() {
+        writeChunk();
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    private void writeChunk() {
+        if (chunkGames == 0) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE + chunkGames * Integer.BYTES);
+        header.putInt(CHUNK_MAGIC).putInt(chunkGames).putInt(payload.position());
+        for (int i = 0; i < chunkGames; i++) {
+            header.putInt(offsets[i]);
+        }
+        header.flip();
+        payload.flip();
+        try {
+            write(channel, header);
+            write(channel, payload);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        payload.clear();
+        chunkGames = 0;
+        chunks++;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
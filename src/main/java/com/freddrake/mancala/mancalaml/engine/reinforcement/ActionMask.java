@@ -0,0 +1,81 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Legal move masks over the network's six actions.  Bit i is set when action i, that is location
+ * i + 1, is a legal move.  A mask can come from the board (GameBoard.validMoveMask) or from an
+ * encoded observation, whose first six values are the moving player's own pods.
+ */
+public final class ActionMask {
+    public static final int ACTIONS = 6;
+    public static final int ALL = (1 << ACTIONS) - 1;
+
+    private ActionMask() {
+    }
+
+    public static int fromObservation(INDArray observations, int row) {
+        int mask = 0;
+        for (int action = 0; action < ACTIONS; action++) {
+            if (observations.getDouble(row, action) > 0) {
+                mask |= 1 << action;
+            }
+        }
+        return mask;
+    }
+
+    public static int fromPebbleField(int[] pebbleField) {
+        int mask = 0;
+        for (int action = 0; action < ACTIONS; action++) {
+            if (pebbleField[action] > 0) {
+                mask |= 1 << action;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the legal action with the highest Q value in the given row, or the best action overall
+     * if the mask is empty
+     */
+    public static int bestAction(INDArray qValues, int row, int mask) {
+        if (mask == 0) {
+            mask = ALL;
+        }
+        int best = Integer.numberOfTrailingZeros(mask);
+        double bestValue = qValues.getDouble(row, best);
+        for (int legal = mask & (mask - 1); legal != 0; legal &= legal - 1) {
+            int action = Integer.numberOfTrailingZeros(legal);
+            double value = qValues.getDouble(row, action);
+            if (value > bestValue) {
+                best = action;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Same as bestAction(qValues, row, mask), for Q values held in a plain array.
+     */
+    public static int bestAction(double[] qValues, int mask) {
+        if (mask == 0) {
+            mask = ALL;
+        }
+        int best = Integer.numberOfTrailingZeros(mask);
+        for (int legal = mask & (mask - 1); legal != 0; legal &= legal - 1) {
+            int action = Integer.numberOfTrailingZeros(legal);
+            if (qValues[action] > qValues[best]) {
+                best = action;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the highest Q value among the legal actions in the given row
+     */
+    public static double maxValue(INDArray qValues, int row, int mask) {
+        return qValues.getDouble(row, bestAction(qValues, row, mask));
+    }
+}
@@ -0,0 +1,209 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.util.DataManager;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Q learning with acting and learning on separate threads.  Actor threads each play their own GameMDP,
+ * made by newInstance, with their own copy of the network, and offer every transition to a
+ * TransitionQueue; they never wait for the learner, and transitions that don't fit are dropped.  The
+ * rl4j loop runs the learner: every training step drains the queue into replay memory and fits one
+ * batch, so it only waits when replay doesn't hold a batch yet.  Every syncInterval updates the learner
+ * publishes a copy of its network, which the actors pick up before their next move.
+ *
+ * As with VectorizedQLearningDiscreteDense the MDP handed to rl4j is never stepped, so every epoch runs
+ * for maxEpochStep updates and maxStep counts updates.  Actors explore with the learner's epsilon.
+ */
+@Slf4j
+public class ActorLearnerQLearningDiscreteDense extends MaskedQLearningDiscreteDense {
+    private final GameMDP gameMDP;
+    private final int actors;
+    private final int syncInterval;
+    private final TransitionQueue queue;
+    private final TransitionQueue.Handler store = this::store;
+
+    private volatile boolean running;
+    private volatile Throwable actorFailure;
+    private volatile IDQN published;
+    private volatile int publishedVersion;
+    private final LongAdder actorSteps = new LongAdder();
+    private long updates;
+    private long stored;
+    private double drainedReward;
+    private long idleNanos;
+    private long startNanos;
+
+    /**
+     * @param actors the number of actor threads
+     * @param queueCapacity the most transitions waiting for the learner
+     * @param syncInterval the number of updates between copies of the network to the actors
+     * @param replayMemory where transitions are kept; when null, rl4j's replay memory is used
+     */
+    public ActorLearnerQLearningDiscreteDense(@NonNull GameMDP mdp, IDQN dqn, QLConfiguration conf,
+                                              DataManager dataManager, int actors, int queueCapacity,
+                                              int syncInterval, ReplayMemory replayMemory) {
+        super(mdp, dqn, conf, dataManager, replayMemory);
+        if (actors < 1) {
+            throw new MancalaException("There must be at least one actor.");
+        }
+        this.gameMDP = mdp;
+        this.actors = actors;
+        this.syncInterval = Math.max(1, syncInterval);
+        queue = new TransitionQueue(queueCapacity);
+    }
+
+    public TransitionQueue getQueue() {
+        return queue;
+    }
+
+    public long getActorSteps() {
+        return actorSteps.sum();
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * @return the share of the learner's time spent waiting for transitions
+     */
+    public double getLearnerIdleRatio() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : (double) idleNanos / elapsed;
+    }
+
+    @Override
+    public void train() {
+        publish();
+        running = true;
+        startNanos = System.nanoTime();
+        Thread[] threads = new Thread[actors];
+        for (int i = 0; i < actors; i++) {
+            // Clone on this thread, before the learner starts changing the network.
+            IDQN network = getCurrentDQN().clone();
+            int number = i;
+            threads[i] = new Thread(() -> runActor(number, network), "actor-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        try {
+            super.train();
+        } finally {
+            running = false;
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            log.info("Actor/learner: {}", this);
+        }
+    }
+
+    @Override
+    public void postEpoch() {
+        super.postEpoch();
+        log.debug("Actor/learner: {}", this);
+    }
+
+    @Override
+    protected QLStepReturn<GameObservation> trainStep(GameObservation obs) {
+        drainedReward = 0;
+        int drained = queue.drain(store, queue.getCapacity());
+        int batchSize = getConfiguration().getBatchSize();
+        while (stored < batchSize) {
+            if (actorFailure != null) {
+                throw new MancalaException(actorFailure);
+            }
+            long idleStart = System.nanoTime();
+            LockSupport.parkNanos(50_000);
+            drained += queue.drain(store, queue.getCapacity());
+            idleNanos += System.nanoTime() - idleStart;
+        }
+
+        if (getStepCounter() > getConfiguration().getUpdateStart()) {
+            fitBatch();
+            if (++updates % syncInterval == 0) {
+                publish();
+            }
+        }
+
+        return new QLStepReturn<>(Double.NaN, getCurrentDQN().getLatestScore(),
+                new StepReply<>(obs, drained == 0 ? 0 : drainedReward / drained, false, null));
+    }
+
+    @Override
+    public String toString() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return String.format("actors %.0f steps/s, learner %.0f updates/s (%.0f%% idle), queue %s",
+                getActorSteps() / seconds, updates / seconds, 100 * getLearnerIdleRatio(), queue);
+    }
+
+    private void store(int[] observation, int action, double reward, boolean done, int[] nextObservation) {
+        storeTransition(observation, action, reward, done, nextObservation);
+        stored++;
+        drainedReward += reward;
+    }
+
+    private void publish() {
+        // The copy is written before the version, so an actor that sees a new version also sees the
+        // network that came with it.  It is never changed after that, so actors can read it together.
+        published = getCurrentDQN().clone();
+        publishedVersion++;
+    }
+
+    private void runActor(int number, IDQN network) {
+        GameMDP mdp = null;
+        try {
+            mdp = (GameMDP) gameMDP.newInstance();
+            Player player = mdp.getPlayer();
+            GameBoard board = mdp.getGameBoard();
+            ObservationEncoder encoder = new ObservationEncoder();
+            Random random = new Random(getConfiguration().getSeed() + number);
+            double rewardFactor = getConfiguration().getRewardFactor();
+            int[] observation = new int[ObservationEncoder.OBSERVATION_SIZE];
+            int[] nextObservation = new int[ObservationEncoder.OBSERVATION_SIZE];
+            int version = -1;
+
+            mdp.reset();
+            while (running) {
+                if (version != publishedVersion) {
+                    version = publishedVersion;
+                    network.copy(published);
+                }
+
+                board.pebbleField(player, observation);
+                int mask = mdp.isMaskingIllegalMoves() ? board.validMoveMask(player) : ActionMask.ALL;
+                int action = random.nextFloat() < getEgPolicy().getEpsilon()
+                        ? GameBoard.randomMoveBit(mask, random)
+                        : ActionMask.bestAction(network.output(encoder.encode(board, player)), 0, mask);
+                StepReply<GameObservation> reply = mdp.step(action);
+                boolean done = reply.isDone() || mdp.isDone();
+                board.pebbleField(player, nextObservation);
+                queue.offer(observation, action, reply.getReward() * rewardFactor, done, nextObservation);
+                actorSteps.increment();
+                if (done) {
+                    mdp.reset();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Actor {} failed", number, e);
+            actorFailure = e;
+        } finally {
+            if (mdp != null) {
+                mdp.close();
+            }
+        }
+    }
+}
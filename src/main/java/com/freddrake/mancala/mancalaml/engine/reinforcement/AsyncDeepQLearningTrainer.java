@@ -0,0 +1,102 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.engine.Trainer;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.rl4j.learning.async.AsyncLearning;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscrete;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscreteDense;
+import org.deeplearning4j.rl4j.network.dqn.DQN;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.deeplearning4j.ui.api.UIServer;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Trains the network with asynchronous n-step Q learning.  numThread workers each play their own
+ * GameMDP, made by gameMDP.newInstance, compute gradients on their own copy of the network and hand
+ * them to a single global network, so experience is collected on every core at once and there is no
+ * replay memory.  Give the GameMDP an oppositionEngineFactory when its engine isn't thread safe.
+ */
+@Slf4j
+public class AsyncDeepQLearningTrainer implements Trainer {
+    private final AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration learningConfiguration;
+    private final DQNFactoryStdDense.Configuration netConfiguration;
+    private final GameMDP gameMDP;
+    private final InputStream networkInputStream;
+    private final OutputStream networkOutputStream;
+    private final UIServer uiServer;
+
+    @Builder
+    private AsyncDeepQLearningTrainer(@NonNull AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration learningConfiguration,
+                                      DQNFactoryStdDense.Configuration netConfiguration,
+                                      @NonNull GameMDP gameMDP,
+                                      InputStream networkInputStream,
+                                      OutputStream networkOutputStream,
+                                      UIServer uiServer) {
+        if (networkInputStream == null && netConfiguration == null) {
+            throw new MancalaException("Either a network or a network configuration is needed.");
+        }
+        this.learningConfiguration = learningConfiguration;
+        this.netConfiguration = netConfiguration;
+        this.gameMDP = gameMDP;
+        this.networkInputStream = networkInputStream;
+        this.networkOutputStream = networkOutputStream;
+        this.uiServer = uiServer;
+    }
+
+    @Override
+    public void train() {
+        DataManager dataManager;
+        try {
+            dataManager = new DataManager(true);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+
+        IDQN dqn;
+        if (networkInputStream == null) {
+            dqn = new DQNFactoryStdDense(netConfiguration).buildDQN(
+                    gameMDP.getObservationSpace().getShape(), gameMDP.getActionSpace().getSize());
+        } else {
+            try {
+                MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(networkInputStream);
+                dqn = new DQN(model);
+            } catch (IOException e) {
+                throw new MancalaException(e);
+            }
+        }
+
+        AsyncLearning<GameObservation, Integer, DiscreteSpace, IDQN> learning = gameMDP.isMaskingIllegalMoves()
+                ? new MaskedAsyncNStepQLearningDiscreteDense(gameMDP, dqn, learningConfiguration, dataManager)
+                : new AsyncNStepQLearningDiscreteDense<>(gameMDP, dqn, learningConfiguration, dataManager);
+        long start = System.nanoTime();
+        learning.train();
+        log.info("Done training with {} workers in {}s", learningConfiguration.getNumThread(),
+                String.format("%.1f", (System.nanoTime() - start) / 1e9));
+
+        if (networkOutputStream != null) {
+            try {
+                learning.getNeuralNet().save(networkOutputStream);
+            } catch (IOException e) {
+                throw new MancalaException(e);
+            }
+        }
+
+        gameMDP.close();
+
+        if (uiServer != null) {
+            uiServer.stop();
+        }
+        log.info("Done saving.");
+    }
+}
@@ -0,0 +1,31 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * Same play as DQNEngine, but the forward pass goes through a shared BatchedInferenceService, so that
+ * many games running on different threads are evaluated together.
+ */
+public class BatchedDQNEngine extends AbstractGamingEngine {
+    private final BatchedInferenceService inferenceService;
+
+    @Builder
+    private BatchedDQNEngine(@NonNull BatchedInferenceService inferenceService, @NonNull Player player) {
+        this.inferenceService = inferenceService;
+        this.player = player;
+    }
+
+    @Override
+    public int chooseMove(GameBoard gameBoard) {
+        return inferenceService.chooseAction(gameBoard, player) + 1;
+    }
+
+    @Override
+    public boolean isGameOver(GameBoard gameBoard) {
+        return gameBoard.isGameOver(player);
+    }
+}
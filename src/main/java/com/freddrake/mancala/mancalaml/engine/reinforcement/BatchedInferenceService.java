@@ -0,0 +1,289 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.PositionCodec;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs network inference for many concurrent games at once.  Games hand in their observation and
+ * block; a single inference thread collects observations until it has a full batch or the oldest one
+ * has waited maxWait, stacks them into one INDArray, runs a single forward pass and hands each game
+ * back the legal action with the highest Q value.  Only the inference thread touches the network, so it
+ * doesn't need to be thread safe.
+ *
+ * Each calling thread reuses its own request object, and observations are encoded straight into a
+ * preallocated batch array, so neither submitting nor evaluating an observation allocates per move.
+ * Positions found in the optional PositionCache are answered without taking a row in the batch.
+ *
+ * Once closed, every request already handed in is answered, by the last batch or as failed, and new
+ * ones are refused, so no caller is left waiting.
+ */
+@Slf4j
+public class BatchedInferenceService implements AutoCloseable {
+    private final MultiLayerNetwork network;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue;
+    private final ThreadLocal<Request> requests = ThreadLocal.withInitial(Request::new);
+    private final Request[] batch;
+    private final Request[] pending;
+    private final PositionCache positionCache;
+    private final double[] qValues = new double[ActionMask.ACTIONS];
+    private final Thread inferenceThread;
+    private volatile boolean running = true;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param networkInputStream the network to run, as saved by DQN.save
+     * @param batchSize the most observations run in one forward pass, 32 by default
+     * @param maxWaitMicros how long the oldest observation may wait for a batch to fill, 200us by default
+     * @param positionCacheSize the number of positions whose Q values are kept; 0 or null disables the cache
+     */
+    @Builder
+    private BatchedInferenceService(@NonNull InputStream networkInputStream, Integer batchSize,
+                                    Long maxWaitMicros, Integer positionCacheSize) {
+        try {
+            network = ModelSerializer.restoreMultiLayerNetwork(networkInputStream);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        this.batchSize = Optional.ofNullable(batchSize).orElse(32);
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(Optional.ofNullable(maxWaitMicros).orElse(200L));
+        queue = new ArrayBlockingQueue<>(this.batchSize * 4);
+        batch = new Request[this.batchSize];
+        pending = new Request[this.batchSize];
+        positionCache = positionCacheSize != null && positionCacheSize > 0 ? new PositionCache(positionCacheSize) : null;
+
+        inferenceThread = new Thread(this::runInference, "batched-inference");
+        inferenceThread.setDaemon(true);
+        inferenceThread.start();
+    }
+
+    /**
+     * Blocks until the network has evaluated the board from the player's perspective.
+     * @return the zero based legal action with the highest Q value
+     */
+    public int chooseAction(GameBoard gameBoard, Player player) {
+        if (!running) {
+            throw new MancalaException("Batched inference service was closed");
+        }
+        Request request = requests.get();
+        gameBoard.pebbleField(player, request.pebbleField);
+        request.key = positionCache == null ? 0 : PositionCodec.observationKey(request.pebbleField);
+        request.action = Request.PENDING;
+        request.waiter = Thread.currentThread();
+        request.submittedNanos = System.nanoTime();
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MancalaException(e);
+        }
+        // A request put after close() drained the queue would never be answered; take it back.
+        if (!running && queue.remove(request)) {
+            throw new MancalaException("Batched inference service was closed");
+        }
+
+        while (request.action == Request.PENDING) {
+            LockSupport.park(this);
+        }
+        if (request.action == Request.FAILED) {
+            throw new MancalaException("Batched inference service was closed");
+        }
+        return request.action;
+    }
+
+    public long getRequests() {
+        return requestCount.sum();
+    }
+
+    public long getBatches() {
+        return batchCount.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0 : (double) requestCount.sum() / batches;
+    }
+
+    /**
+     * @return the mean time from submitting an observation to getting its action, in microseconds
+     */
+    public double getAverageLatencyMicros() {
+        long requests = requestCount.sum();
+        return requests == 0 ? 0 : totalLatencyNanos.sum() / 1000.0 / requests;
+    }
+
+    public double getMaxLatencyMicros() {
+        return maxLatencyNanos.get() / 1000.0;
+    }
+
+    /**
+     * @return observations evaluated per second since the service started
+     */
+    public double getThroughput() {
+        return requestCount.sum() / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * @return the cache of evaluated positions, or null if caching is disabled.  Only read it once the
+     * service is closed, since the inference thread updates it.
+     */
+    public PositionCache getPositionCache() {
+        return positionCache;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests in %d batches (%.1f per batch), %.0f/s, latency avg %.0fus max %.0fus",
+                getRequests(), getBatches(), getAverageBatchSize(), getThroughput(),
+                getAverageLatencyMicros(), getMaxLatencyMicros())
+                + (positionCache == null ? "" : "; cache " + positionCache);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        inferenceThread.interrupt();
+        try {
+            inferenceThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            complete(request, Request.FAILED);
+        }
+    }
+
+    private void runInference() {
+        INDArray input = new ObservationEncoder(batchSize).getBatch();
+        while (running) {
+            int size;
+            try {
+                size = collectBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (size == 0) {
+                continue;
+            }
+
+            evaluate(input, size);
+        }
+    }
+
+    /**
+     * Waits for the first observation, then takes more until the batch is full or the first one has
+     * waited long enough.  Interrupted once it holds observations, it returns them so that they are
+     * still answered.
+     */
+    private int collectBatch() throws InterruptedException {
+        Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return 0;
+        }
+        batch[0] = first;
+        int size = 1;
+        long deadline = first.submittedNanos + maxWaitNanos;
+        while (size < batchSize) {
+            Request next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                try {
+                    if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            batch[size++] = next;
+        }
+        return size;
+    }
+
+    private void evaluate(INDArray input, int size) {
+        int misses = 0;
+        for (int i = 0; i < size; i++) {
+            Request request = batch[i];
+            if (positionCache != null && positionCache.get(request.key, qValues)) {
+                finish(request, ActionMask.bestAction(qValues, ActionMask.fromPebbleField(request.pebbleField)));
+                continue;
+            }
+            ObservationEncoder.encode(request.pebbleField, input, misses);
+            pending[misses++] = request;
+        }
+
+        if (misses > 0) {
+            INDArray output;
+            try {
+                INDArray rows = misses == batchSize ? input : input.get(NDArrayIndex.interval(0, misses), NDArrayIndex.all());
+                output = network.output(rows);
+            } catch (Throwable e) {
+                log.error("Batched inference failed", e);
+                for (int i = 0; i < misses; i++) {
+                    complete(pending[i], Request.FAILED);
+                }
+                return;
+            }
+            for (int i = 0; i < misses; i++) {
+                for (int action = 0; action < qValues.length; action++) {
+                    qValues[action] = output.getDouble(i, action);
+                }
+                if (positionCache != null) {
+                    positionCache.put(pending[i].key, qValues);
+                }
+                finish(pending[i], ActionMask.bestAction(qValues, ActionMask.fromPebbleField(pending[i].pebbleField)));
+            }
+            batchCount.increment();
+        }
+        requestCount.add(size);
+    }
+
+    private void finish(Request request, int action) {
+        long latency = System.nanoTime() - request.submittedNanos;
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        complete(request, action);
+    }
+
+    private static void complete(Request request, int action) {
+        Thread waiter = request.waiter;
+        request.action = action;
+        LockSupport.unpark(waiter);
+    }
+
+    private static class Request {
+        static final int PENDING = -1;
+        static final int FAILED = -2;
+
+        final int[] pebbleField = new int[ObservationEncoder.OBSERVATION_SIZE];
+        long key;
+        volatile int action = PENDING;
+        Thread waiter;
+        long submittedNanos;
+    }
+}
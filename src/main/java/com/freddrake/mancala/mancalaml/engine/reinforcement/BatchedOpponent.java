@@ -0,0 +1,32 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+
+/**
+ * Chooses the opponent's moves for many boards at once, so that VectorizedGameMDP can make every
+ * opponent move of a lockstep step in one call.  Implementations backed by a network should run all of
+ * the boards through a single forward pass.
+ */
+public interface BatchedOpponent {
+    /**
+     * @param boards every board of the environment
+     * @param indices the boards on which the opponent is to move; only the first count are used, and
+     *                the opponent has at least one legal move on each of them
+     * @param count the number of boards to move on
+     * @param moves receives the chosen location, between 1 and 6, for each of indices[0..count)
+     */
+    void chooseMoves(GameBoard[] boards, int[] indices, int count, int[] moves);
+
+    /**
+     * Plays every board, one at a time, with the same engine.  The engine must be able to play any
+     * board it is handed, which the engines in this project can.
+     */
+    static BatchedOpponent of(GamingEngine engine) {
+        return (boards, indices, count, moves) -> {
+            for (int i = 0; i < count; i++) {
+                moves[i] = engine.chooseMove(boards[indices[i]]);
+            }
+        };
+    }
+}
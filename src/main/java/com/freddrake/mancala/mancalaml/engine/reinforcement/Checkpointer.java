@@ -0,0 +1,254 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes training checkpoints without holding up training.  Every interval steps the training thread
+ * takes a snapshot, a clone of the network with its updater state and a copy of the replay memory,
+ * and a background thread writes it to a temporary file that is then moved over the checkpoint, so
+ * the file always holds a whole checkpoint.  When the previous checkpoint is still being written the
+ * next one is put off until the following epoch rather than waited for.
+ *
+ * A checkpoint file is a 28 byte header (magic, version, step, epoch, the length of the network, the
+ * replay memory's kind and capacity), the network as ModelSerializer writes it, then the replay memory
+ * as ReplayMemory.write writes it.  restore reads one back before training starts.
+ */
+@Slf4j
+public class Checkpointer implements AutoCloseable {
+    static final int MAGIC = 0x4d434b31; // "MCK1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 28;
+    private static final int NO_REPLAY = 0;
+    private static final int UNIFORM_REPLAY = 1;
+    private static final int PRIORITIZED_REPLAY = 2;
+
+    private final Path location;
+    private final int interval;
+    private final ExecutorService writer;
+    private Future<?> pending;
+    private ReplayMemory replaySnapshot;
+    private long nextStep;
+    private int written;
+    private int deferred;
+
+    /**
+     * @param location the checkpoint file
+     * @param interval the number of training steps between checkpoints, 10000 by default
+     */
+    @Builder
+    private Checkpointer(@NonNull Path location, Integer interval) {
+        this.location = location;
+        this.interval = Math.max(1, Optional.ofNullable(interval).orElse(10000));
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        nextStep = this.interval;
+    }
+
+    public Path getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the number of checkpoints written so far
+     */
+    public synchronized int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the number of checkpoints put off because the previous one was still being written
+     */
+    public int getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Takes a snapshot and starts writing it if interval steps have passed since the last one.  Called
+     * from the training thread between epochs.
+     * @param replayMemory the off-heap replay memory, or null if there is none to keep
+     * @return whether a checkpoint was started
+     */
+    public boolean checkpoint(IDQN dqn, ReplayMemory replayMemory, int step, int epoch) {
+        if (step < nextStep) {
+            return false;
+        }
+        if (pending != null && !pending.isDone()) {
+            deferred++;
+            return false;
+        }
+        finishPending();
+
+        IDQN network = dqn.clone();
+        ReplayMemory replay = replayMemory == null ? null : (replaySnapshot = replayMemory.copyTo(replaySnapshot));
+        pending = writer.submit(() -> {
+            write(network, replay, step, epoch);
+            return null;
+        });
+        nextStep = (long) step + interval;
+        return true;
+    }
+
+    /**
+     * Reads the checkpoint back, if there is one, into a new network and the given replay memory.  The
+     * replay memory is left alone when the checkpoint kept none, or one of another kind or capacity.
+     * @return the checkpoint, or null when there is no checkpoint file
+     */
+    public Checkpoint restore(ReplayMemory replayMemory) {
+        if (!Files.exists(location)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(location, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            ReplayMemory.readFully(channel, header);
+            if (header.getInt(0) != MAGIC) {
+                throw new MancalaException(location + " is not a training checkpoint.");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new MancalaException(location + " has unsupported checkpoint version " + header.getInt(4));
+            }
+            int step = header.getInt(8);
+            int epoch = header.getInt(12);
+            ByteBuffer model = ByteBuffer.allocate(header.getInt(16));
+            ReplayMemory.readFully(channel, model);
+            MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(
+                    new ByteArrayInputStream(model.array()), true);
+
+            int kind = header.getInt(20);
+            boolean replayRestored = false;
+            if (kind != NO_REPLAY && replayMemory != null) {
+                if (kind == replayKind(replayMemory) && header.getInt(24) == replayMemory.getCapacity()) {
+                    replayMemory.read(channel);
+                    replayRestored = true;
+                } else {
+                    log.warn("The replay memory in {} doesn't match the one configured; starting with it empty",
+                            location);
+                }
+            }
+            nextStep = (long) step + interval;
+            log.info("Restored the checkpoint in {} at step {}, epoch {}{}", location, step, epoch,
+                    replayRestored ? ", with " + replayMemory.size() + " transitions" : "");
+            return new Checkpoint(network, step, epoch, replayRestored);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+    }
+
+    /**
+     * Waits for the checkpoint being written, if any, and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        finishPending();
+        writer.shutdown();
+    }
+
+    private void finishPending() {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (ExecutionException e) {
+            // The last whole checkpoint is still in place; training goes on and tries again later.
+            log.warn("Writing the checkpoint to {} failed", location, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending = null;
+    }
+
+    private void write(IDQN network, ReplayMemory replay, int step, int epoch) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream model = new ByteArrayOutputStream();
+        ModelSerializer.writeModel((MultiLayerNetwork) network.getNeuralNetworks()[0], model, true);
+
+        Path temp = location.resolveSibling(location.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(step).putInt(epoch).putInt(model.size())
+                    .putInt(replay == null ? NO_REPLAY : replayKind(replay))
+                    .putInt(replay == null ? 0 : replay.getCapacity());
+            header.clear();
+            ReplayMemory.writeFully(channel, header);
+            ReplayMemory.writeFully(channel, ByteBuffer.wrap(model.toByteArray()));
+            if (replay != null) {
+                replay.write(channel);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            written++;
+        }
+        log.info("Wrote the checkpoint at step {} to {} in {}ms", step, location,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static int replayKind(ReplayMemory replayMemory) {
+        return replayMemory instanceof PrioritizedReplayMemory ? PRIORITIZED_REPLAY : UNIFORM_REPLAY;
+    }
+
+    /**
+     * A restored checkpoint.
+     */
+    public static class Checkpoint {
+        private final MultiLayerNetwork network;
+        private final int step;
+        private final int epoch;
+        private final boolean replayRestored;
+
+        Checkpoint(MultiLayerNetwork network, int step, int epoch, boolean replayRestored) {
+            this.network = network;
+            this.step = step;
+            this.epoch = epoch;
+            this.replayRestored = replayRestored;
+        }
+
+        /**
+         * @return the network, with its updater state
+         */
+        public MultiLayerNetwork getNetwork() {
+            return network;
+        }
+
+        public int getStep() {
+            return step;
+        }
+
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return whether the replay memory was filled from the checkpoint
+         */
+        public boolean isReplayRestored() {
+            return replayRestored;
+        }
+    }
+}
@@ -3,17 +3,12 @@ package com.freddrake.mancala.mancalaml.engine.reinforcement;
 import com.freddrake.mancala.mancalaml.GameBoard;
 import com.freddrake.mancala.mancalaml.MancalaException;
 import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.PositionCodec;
 import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
 import lombok.Builder;
 import lombok.NonNull;
-import org.deeplearning4j.gym.StepReply;
-import org.deeplearning4j.rl4j.learning.Learning;
-import org.deeplearning4j.rl4j.mdp.MDP;
 import org.deeplearning4j.rl4j.network.dqn.DQN;
 import org.deeplearning4j.rl4j.network.dqn.IDQN;
-import org.deeplearning4j.rl4j.policy.DQNPolicy;
-import org.deeplearning4j.rl4j.space.ActionSpace;
-import org.deeplearning4j.rl4j.space.DiscreteSpace;
 import org.deeplearning4j.rl4j.space.ObservationSpace;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -23,31 +18,63 @@ import java.io.InputStream;
 
 public class DQNEngine extends AbstractGamingEngine {
 
-    private DQNPolicy<GameObservation> policy;
+    private IDQN dqn;
     private ObservationSpace<GameObservation> observationSpace;
-
+    private final ObservationEncoder encoder = new ObservationEncoder();
+    private final PositionCache positionCache;
+    private final double[] qValues = new double[ActionMask.ACTIONS];
+
+    /**
+     * @param positionCacheSize the number of positions whose Q values are kept, so repeated positions
+     *                          skip the network; 0 or null disables the cache
+     */
     @Builder
     private DQNEngine(@NonNull InputStream networkInputStream,
                       @NonNull ObservationSpace<GameObservation> observationSpace,
-                      @NonNull Player player) {
+                      @NonNull Player player,
+                      Integer positionCacheSize) {
         this.observationSpace = observationSpace;
         this.player = player;
+        positionCache = positionCacheSize != null && positionCacheSize > 0 ? new PositionCache(positionCacheSize) : null;
+        loadNetwork(networkInputStream);
+    }
 
-        IDQN dqn;
+    /**
+     * Replaces the network this engine plays with, dropping any Q values cached from the old one.
+     */
+    public void loadNetwork(@NonNull InputStream networkInputStream) {
         try {
             dqn = new DQN(ModelSerializer.restoreMultiLayerNetwork(networkInputStream));
         } catch (IOException e) {
             throw new MancalaException(e);
         }
+        if (positionCache != null) {
+            positionCache.invalidate();
+        }
+    }
 
-        policy = new DQNPolicy<>(dqn);
+    /**
+     * @return the cache of evaluated positions, or null if caching is disabled
+     */
+    public PositionCache getPositionCache() {
+        return positionCache;
     }
 
     @Override
     public int chooseMove(GameBoard gameBoard) {
-        GameObservation observation = new GameObservation(gameBoard, player);
-        INDArray input = getInput(observation);
-        return policy.nextAction(input) + 1;
+        long key = positionCache == null ? 0 : PositionCodec.observationKey(gameBoard, player);
+        if (positionCache == null || !positionCache.get(key, qValues)) {
+            INDArray output = dqn.output(getInput(gameBoard));
+            for (int action = 0; action < qValues.length; action++) {
+                qValues[action] = output.getDouble(0, action);
+            }
+            if (positionCache != null) {
+                positionCache.put(key, qValues);
+            }
+        }
+
+        // Only consider pods that have pebbles in them, so the network never forfeits with an illegal move.
+        return ActionMask.bestAction(qValues, gameBoard.validMoveMask(player)) + 1;
     }
 
     @Override
@@ -55,34 +82,10 @@ public class DQNEngine extends AbstractGamingEngine {
         return gameBoard.isGameOver(player);
     }
 
-    // The native library takes in an MDP, but only uses it for the observation space.  Building a full
-    // MDP just to get the observation space is pretty heavy, so this method abstracts it out.
-    private INDArray getInput(GameObservation observation) {
-        return Learning.getInput(new MDP<GameObservation, Integer, DiscreteSpace>(){
-            @Override
-            public ObservationSpace<GameObservation> getObservationSpace() {
-                return observationSpace;
-            }
-
-            @Override
-            public DiscreteSpace getActionSpace() {
-                return null;
-            }
-
-            @Override
-            public GameObservation reset() { return null; }
-
-            @Override
-            public void close() {}
-
-            @Override
-            public StepReply<GameObservation> step(Integer action) { return null; }
-
-            @Override
-            public boolean isDone() { return false; }
-
-            @Override
-            public MDP<GameObservation, Integer, DiscreteSpace> newInstance() { return null; }
-        }, observation);
+    // Same input as Learning.getInput, but encoded into a reused array rather than a new one per move.
+    private INDArray getInput(GameBoard gameBoard) {
+        INDArray input = encoder.encode(gameBoard, player);
+        int[] shape = observationSpace.getShape();
+        return shape.length == 1 ? input : input.reshape(shape);
     }
 }
@@ -0,0 +1,69 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.search.LeafEvaluator;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Scores Monte Carlo tree search leaves with a trained network instead of a random playout.  The
+ * network was trained on rewards multiplied by rewardFactor, so its best legal Q value divided by
+ * rewardFactor is back in points: a discounted estimate of the points the player to move will still
+ * gain, or of the lead still to gain for a network trained with leadRewards.  The leaf is worth
+ * tanh((points lead + Q / rewardFactor) / valueScale).  Networks are not thread safe, so every
+ * search thread gets its own copy through supplier().
+ */
+public class DQNLeafEvaluator implements LeafEvaluator {
+    private final MultiLayerNetwork network;
+    private final double rewardFactor;
+    private final double valueScale;
+    private final ObservationEncoder encoder = new ObservationEncoder();
+    private final double[] qValues = new double[ActionMask.ACTIONS];
+
+    /**
+     * @param rewardFactor the factor the network's rewards were scaled by in training
+     * @param valueScale the points lead worth about three quarters of a certain win
+     */
+    public DQNLeafEvaluator(MultiLayerNetwork network, double rewardFactor, double valueScale) {
+        if (rewardFactor <= 0) {
+            throw new MancalaException("The reward factor must be positive.");
+        }
+        this.network = network;
+        this.rewardFactor = rewardFactor;
+        this.valueScale = valueScale;
+    }
+
+    /**
+     * @param network the network as saved by DQN.save
+     * @return a supplier that restores a fresh copy of the network for every evaluator
+     */
+    public static Supplier<LeafEvaluator> supplier(byte[] network, double rewardFactor, double valueScale) {
+        return () -> {
+            try {
+                return new DQNLeafEvaluator(ModelSerializer.restoreMultiLayerNetwork(new ByteArrayInputStream(network)),
+                        rewardFactor, valueScale);
+            } catch (IOException e) {
+                throw new MancalaException(e);
+            }
+        };
+    }
+
+    @Override
+    public double evaluate(GameBoard board, Player sideToMove) {
+        INDArray output = network.output(encoder.encode(board, sideToMove));
+        for (int action = 0; action < qValues.length; action++) {
+            qValues[action] = output.getDouble(0, action);
+        }
+        int action = ActionMask.bestAction(qValues, board.validMoveMask(sideToMove));
+        Player opponent = sideToMove == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+        int lead = board.playerPoints(sideToMove) - board.playerPoints(opponent);
+        return Math.tanh((lead + qValues[action] / rewardFactor) / valueScale);
+    }
+}
@@ -1,58 +1,144 @@
 package com.freddrake.mancala.mancalaml.engine.reinforcement;
 
-import com.freddrake.mancala.mancalaml.GameBoard;
 import com.freddrake.mancala.mancalaml.MancalaException;
 import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.TournamentRecord;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBook;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBookEngine;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.deeplearning4j.rl4j.network.dqn.DQN;
-import org.deeplearning4j.rl4j.network.dqn.IDQN;
-import org.deeplearning4j.rl4j.policy.DQNPolicy;
-import org.deeplearning4j.util.ModelSerializer;
+import org.deeplearning4j.rl4j.space.ObservationSpace;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
 
+/**
+ * Evaluates a trained network, playing as player one, against a random opponent.  Games are spread
+ * over a thread pool.  Either every worker restores its own copy of the network, since they are not
+ * thread safe, or, when inferenceBatchSize is above 1, all workers share one BatchedInferenceService.
+ * With an opening book, the network only plays once the game has left the book.
+ */
 @Slf4j
 public class DeepQLearningPlay {
-    private GameMDP gameMDP;
-    private DQNPolicy<GameObservation> policy;
+    private final ObservationSpace<GameObservation> observationSpace;
+    private final byte[] network;
+    private final int games;
+    private final Integer threads;
+    private final Long seed;
+    private final int inferenceBatchSize;
+    private final Long inferenceMaxWaitMicros;
+    private final Integer positionCacheSize;
+    private final OpeningBook openingBook;
 
     @Builder
-    private DeepQLearningPlay(@NonNull GameMDP gameMDP, @NonNull InputStream networkInputStream) {
-        this.gameMDP = gameMDP;
+    private DeepQLearningPlay(@NonNull ObservationSpace<GameObservation> observationSpace,
+                              @NonNull InputStream networkInputStream, Integer games, Integer threads, Long seed,
+                              Integer inferenceBatchSize, Long inferenceMaxWaitMicros, Integer positionCacheSize,
+                              OpeningBook openingBook) {
+        this.observationSpace = observationSpace;
+        this.games = Optional.ofNullable(games).orElse(10);
+        this.threads = threads;
+        this.seed = seed;
+        this.inferenceBatchSize = Optional.ofNullable(inferenceBatchSize).orElse(1);
+        this.inferenceMaxWaitMicros = inferenceMaxWaitMicros;
+        this.positionCacheSize = positionCacheSize;
+        this.openingBook = openingBook;
 
-        IDQN dqn;
-        try {
-            dqn = new DQN(ModelSerializer.restoreMultiLayerNetwork(networkInputStream));
+        // Read the network once; each worker restores its own copy from these bytes.
+        try (InputStream in = networkInputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            network = out.toByteArray();
         } catch (IOException e) {
             throw new MancalaException(e);
         }
-
-        policy = new DQNPolicy<>(dqn);
     }
 
     public void play() {
-        int wins = 0, losses = 0, ties = 0;
-        for(int i=0; i<10; i++) {
-            policy.play(gameMDP);
-            GameBoard board = gameMDP.getGameBoard();
-            log.info("Winner {}, engine points {}", board.getPointsLeader(), board.playerPoints(Player.PLAYER_ONE));
-
-            switch (board.getPointsLeader()) {
-                case PLAYER_ONE:
-                    wins++;
-                    break;
-                case PLAYER_TWO:
-                    losses++;
-                    break;
-                default:
-                    ties++;
-                    break;
+        if (inferenceBatchSize <= 1) {
+            List<DQNEngine> engines = Collections.synchronizedList(new ArrayList<>());
+            play(random -> {
+                DQNEngine engine = DQNEngine.builder()
+                        .player(Player.PLAYER_ONE)
+                        .observationSpace(observationSpace)
+                        .networkInputStream(new ByteArrayInputStream(network))
+                        .positionCacheSize(positionCacheSize)
+                        .build();
+                engines.add(engine);
+                return engine;
+            });
+            logCacheHits(engines);
+            return;
+        }
+
+        try (BatchedInferenceService inferenceService = BatchedInferenceService.builder()
+                .networkInputStream(new ByteArrayInputStream(network))
+                .batchSize(inferenceBatchSize)
+                .maxWaitMicros(inferenceMaxWaitMicros)
+                .positionCacheSize(positionCacheSize)
+                .build()) {
+            play(random -> BatchedDQNEngine.builder()
+                    .player(Player.PLAYER_ONE)
+                    .inferenceService(inferenceService)
+                    .build());
+            log.info("Inference: {}", inferenceService);
+        }
+    }
+
+    private void logCacheHits(List<DQNEngine> engines) {
+        long hits = 0;
+        long misses = 0;
+        for (DQNEngine engine : engines) {
+            if (engine.getPositionCache() != null) {
+                hits += engine.getPositionCache().getHits();
+                misses += engine.getPositionCache().getMisses();
             }
         }
+        if (hits + misses > 0) {
+            log.info("Position cache: {} hits, {} misses ({}% hit rate)", hits, misses,
+                    String.format("%.1f", 100.0 * hits / (hits + misses)));
+        }
+    }
+
+    private GamingEngine withOpeningBook(GamingEngine networkEngine) {
+        if (openingBook == null) {
+            return networkEngine;
+        }
+        return OpeningBookEngine.builder()
+                .player(Player.PLAYER_ONE)
+                .book(openingBook)
+                .engine(networkEngine)
+                .build();
+    }
+
+    private void play(Function<Random, GamingEngine> networkEngine) {
+        Tournament tournament = Tournament.builder()
+                .playerOneEngine(random -> withOpeningBook(networkEngine.apply(random)))
+                .playerTwoEngine(Tournament.randomEngine(Player.PLAYER_TWO))
+                .games(games)
+                .threads(threads)
+                .seed(seed)
+                .build();
+
+        long start = System.nanoTime();
+        TournamentRecord record = tournament.play();
+        double seconds = (System.nanoTime() - start) / 1e9;
 
-        log.info("Record: {}-{}-{}", wins, ties, losses);
+        log.info("Record: {} over {} games in {}s ({} games/s)", record, record.getGames(),
+                String.format("%.1f", seconds), String.format("%.0f", record.getGames() / seconds));
     }
 }
@@ -2,6 +2,8 @@ package com.freddrake.mancala.mancalaml.engine.reinforcement;
 
 import com.freddrake.mancala.mancalaml.MancalaException;
 import com.freddrake.mancala.mancalaml.engine.Trainer;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecord;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordReader;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -23,9 +25,15 @@ import org.deeplearning4j.util.ModelSerializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
 
 @Slf4j
 public class DeepQLearningTrainer implements Trainer {
+    private static final int ACTOR_QUEUE_CAPACITY = 1 << 16;
+    private static final int ACTOR_SYNC_INTERVAL = 100;
+
     private QLearning.QLConfiguration learningConfiguration;
     private DQNFactoryStdDense.Configuration netConfiguration;
     private GameMDP gameMDP;
@@ -33,7 +41,32 @@ public class DeepQLearningTrainer implements Trainer {
     private OutputStream networkOutputStream;
     private UIServer uiServer;
     private StatsStorage statsStorage;
+    private int environments;
+    private BatchedOpponent opponent;
+    private int actors;
+    private boolean offHeapReplay;
+    private boolean prioritizedReplay;
+    private Path replayWarmStart;
+    private Path checkpoint;
+    private int checkpointInterval;
 
+    /**
+     * @param environments above 1, experience is collected from that many games played in lockstep by a
+     *                     VectorizedGameMDP; 1 by default
+     * @param opponent the batched opponent for those games; when null, the GameMDP's opposition engine
+     *                 plays each of them in turn
+     * @param actors above 0, that many actor threads play games and queue their transitions for a
+     *               separate learner; 0 by default
+     * @param offHeapReplay when true, transitions are kept in an off-heap ReplayMemory of expRepMaxSize
+     *                      instead of as Transition objects; only with maskIllegalMoves or the modes above
+     * @param prioritizedReplay when true, the off-heap memory samples by TD error, as a PrioritizedReplayMemory
+     * @param replayWarmStart a game record file; when it exists, the off-heap memory starts out holding
+     *                        the transitions of its most recent games
+     * @param checkpoint a checkpoint file; when given, training is checkpointed there in the background,
+     *                   and when it already exists training resumes from it: network, updater state, step
+     *                   and epoch counters, and the off-heap replay memory's transitions
+     * @param checkpointInterval the number of steps between checkpoints, 10000 by default
+     */
     @Builder
     public DeepQLearningTrainer(@NonNull QLearning.QLConfiguration learningConfiguration,
                                 DQNFactoryStdDense.Configuration netConfiguration,
@@ -41,7 +74,15 @@ public class DeepQLearningTrainer implements Trainer {
                                 InputStream networkInputStream,
                                 OutputStream networkOutputStream,
                                 UIServer uiServer,
-                                StatsStorage statsStorage) {
+                                StatsStorage statsStorage,
+                                Integer environments,
+                                BatchedOpponent opponent,
+                                Integer actors,
+                                Boolean offHeapReplay,
+                                Boolean prioritizedReplay,
+                                Path replayWarmStart,
+                                Path checkpoint,
+                                Integer checkpointInterval) {
         this.learningConfiguration = learningConfiguration;
         this.netConfiguration = netConfiguration;
         this.gameMDP = gameMDP;
@@ -49,6 +90,14 @@ public class DeepQLearningTrainer implements Trainer {
         this.networkOutputStream = networkOutputStream;
         this.uiServer = uiServer;
         this.statsStorage = statsStorage;
+        this.environments = Optional.ofNullable(environments).orElse(1);
+        this.opponent = opponent;
+        this.actors = Optional.ofNullable(actors).orElse(0);
+        this.offHeapReplay = Optional.ofNullable(offHeapReplay).orElse(false);
+        this.prioritizedReplay = Optional.ofNullable(prioritizedReplay).orElse(false);
+        this.replayWarmStart = replayWarmStart;
+        this.checkpoint = checkpoint;
+        this.checkpointInterval = Optional.ofNullable(checkpointInterval).orElse(10000);
     }
 
     @Override
@@ -60,8 +109,43 @@ public class DeepQLearningTrainer implements Trainer {
             throw new MancalaException(e);
         }
 
+        ReplayMemory replayMemory = null;
+        if (prioritizedReplay) {
+            replayMemory = PrioritizedReplayMemory.builder()
+                    .capacity(learningConfiguration.getExpRepMaxSize())
+                    .betaSteps((long) learningConfiguration.getMaxStep())
+                    .build();
+        } else if (offHeapReplay) {
+            replayMemory = new ReplayMemory(learningConfiguration.getExpRepMaxSize());
+        }
+        if (replayMemory != null) {
+            log.info("Off-heap replay memory: {} transitions, {}MB", replayMemory.getCapacity(),
+                    replayMemory.getMemoryBytes() >> 20);
+        }
+
+        Checkpointer checkpointer = checkpoint == null ? null
+                : Checkpointer.builder().location(checkpoint).interval(checkpointInterval).build();
+        Checkpointer.Checkpoint restored = checkpointer == null ? null : checkpointer.restore(replayMemory);
+
+        if (restored != null && restored.isReplayRestored()) {
+            log.info("Replay memory resumed from {}", checkpoint);
+        } else if (replayWarmStart != null && Files.exists(replayWarmStart)) {
+            if (replayMemory == null) {
+                log.warn("Replay can only be warm started with the off-heap replay memory");
+            } else {
+                warmStart(replayMemory);
+            }
+        }
+
         IDQN dqn;
-        if (networkInputStream == null) {
+        if (restored != null) {
+            // Carry on from the checkpoint, whatever network was asked for
+            MultiLayerNetwork model = restored.getNetwork();
+            if (statsStorage != null) {
+                model.addListeners(new StatsListener(statsStorage));
+            }
+            dqn = new DQN(model);
+        } else if (networkInputStream == null) {
             // Create a fresh new network
             DQNFactoryStdDense dqnFactory = new DQNFactoryStdDense(netConfiguration);
             dqn =
@@ -81,10 +165,47 @@ public class DeepQLearningTrainer implements Trainer {
             }
         }
 
-        Learning<GameObservation, Integer, DiscreteSpace, IDQN> dql = new QLearningDiscreteDense(
-                gameMDP, dqn, learningConfiguration, dataManager);
+        Learning<GameObservation, Integer, DiscreteSpace, IDQN> dql;
+        if (actors > 0) {
+            dql = new ActorLearnerQLearningDiscreteDense(gameMDP, dqn, learningConfiguration, dataManager, actors,
+                    ACTOR_QUEUE_CAPACITY, ACTOR_SYNC_INTERVAL, replayMemory);
+        } else if (environments > 1) {
+            VectorizedGameMDP environment = gameMDP.vectorize(environments, opponent);
+            dql = new VectorizedQLearningDiscreteDense(gameMDP, environment, dqn, learningConfiguration, dataManager,
+                    replayMemory);
+        } else if (gameMDP.isMaskingIllegalMoves()) {
+            dql = new MaskedQLearningDiscreteDense(gameMDP, dqn, learningConfiguration, dataManager, replayMemory);
+        } else {
+            dql = new QLearningDiscreteDense<GameObservation>(gameMDP, dqn, learningConfiguration, dataManager) {
+                @Override
+                public void postEpoch() {
+                    super.postEpoch();
+                    if (checkpointer != null) {
+                        checkpointer.checkpoint(getCurrentDQN(), null, getStepCounter(), getEpochCounter());
+                    }
+                }
+            };
+        }
+        if (dql instanceof MaskedQLearningDiscreteDense) {
+            ((MaskedQLearningDiscreteDense) dql).setCheckpointer(checkpointer);
+        }
+        if (restored != null) {
+            dql.setStepCounter(restored.getStep());
+            dql.setEpochCounter(restored.getEpoch());
+        }
+        long start = System.nanoTime();
         dql.train();
+        if (dql instanceof VectorizedQLearningDiscreteDense) {
+            long transitions = ((VectorizedQLearningDiscreteDense) dql).getTransitions();
+            log.info("Collected {} transitions from {} environments ({}/s)", transitions, environments,
+                    String.format("%.0f", transitions / ((System.nanoTime() - start) / 1e9)));
+        }
         log.info("Done training");
+        if (checkpointer != null) {
+            checkpointer.close();
+            log.info("Wrote {} checkpoints to {}, put off {}", checkpointer.getWritten(), checkpoint,
+                    checkpointer.getDeferred());
+        }
 
 
         if (networkOutputStream != null) {
@@ -103,4 +224,24 @@ public class DeepQLearningTrainer implements Trainer {
         }
         log.info("Done saving.");
     }
+
+    /**
+     * Fills the replay memory with the most recent recorded games that fit, scaling their rewards the
+     * way training does.
+     */
+    private void warmStart(ReplayMemory replayMemory) {
+        GameRecordReader reader = GameRecordReader.open(replayWarmStart);
+        GameRecord record = new GameRecord();
+        long first = reader.size();
+        long transitions = 0;
+        while (first > 0 && transitions < replayMemory.getCapacity()) {
+            reader.read(--first, record);
+            transitions += record.getSteps();
+        }
+        double rewardFactor = learningConfiguration.getRewardFactor();
+        reader.forEachTransition(first, reader.size() - first, (observation, action, reward, done, next) ->
+                replayMemory.store(observation, action, reward * rewardFactor, done, next));
+        log.info("Warm started replay with {} transitions from {} games in {}", transitions, reader.size() - first,
+                replayWarmStart);
+    }
 }
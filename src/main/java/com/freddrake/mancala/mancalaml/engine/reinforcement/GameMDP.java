@@ -1,8 +1,12 @@
 package com.freddrake.mancala.mancalaml.engine.reinforcement;
 
 import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
 import com.freddrake.mancala.mancalaml.Player;
 import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecord;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordWriter;
 import com.freddrake.mancala.mancalaml.spring.AppProperties;
 import lombok.Builder;
 import lombok.NonNull;
@@ -14,7 +18,14 @@ import org.deeplearning4j.rl4j.space.DiscreteSpace;
 import org.deeplearning4j.rl4j.space.ObservationSpace;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
+/**
+ * The game from one player's side, with the opposition engine's replies made inside each step.  A
+ * step's reward is the points the player gained with it.  With leadRewards it is the change in the
+ * player's points lead over it instead, replies included, so the return of a game is the final points
+ * difference, the quantity the endgame tablebase scores.
+ */
 @Slf4j
 public class GameMDP implements MDP<GameObservation, Integer, DiscreteSpace> {
     private final GameBoard gameBoard;
@@ -24,24 +35,74 @@ public class GameMDP implements MDP<GameObservation, Integer, DiscreteSpace> {
     private final GamingEngine oppositionEngine;
     private final DiscreteSpace discreteSpace;
     private final int illegalMoveReward;
+    private final boolean maskIllegalMoves;
+    private final EndgameTablebase tablebase;
+    private final boolean leadRewards;
+    private final Integer moveTraceCapacity;
+    private final Supplier<GamingEngine> oppositionEngineFactory;
+    private final GameRecordWriter recordWriter;
+    private final GameRecord record;
+    private boolean ownsOppositionEngine;
+    private boolean reachedTablebase;
 
+    /**
+     * @param illegalMoveReward the reward for playing an empty pod, which also ends the game
+     * @param moveTraceCapacity when above 0, the board keeps a trace of that many recent moves, which is
+     *                          logged at debug level when a game ends
+     * @param maskIllegalMoves when true, random exploration only picks legal moves; pair it with
+     *                         MaskedQLearningDiscreteDense so the network never picks illegal ones either
+     * @param tablebase when given, an episode ends as soon as the player is to move in a position the
+     *                  tablebase holds, and the last reward includes the points lead still to be gained
+     *                  with best play, which is exactly the rest of the undiscounted return; it turns on
+     *                  leadRewards, as that is the only reward the margin adds up with
+     * @param leadRewards when true, rewards are changes in the points lead rather than points gained;
+     *                    false by default
+     * @param oppositionEngineFactory when given, newInstance plays against a new engine from it, so that
+     *                                asynchronous workers don't share one engine between threads; the
+     *                                instance closes that engine on close() when it is AutoCloseable
+     * @param recordWriter when given, every game is appended to it as a GameRecord once it ends, and a
+     *                     game abandoned by reset() or close() is appended as truncated.  Games played
+     *                     through vectorize() aren't recorded.
+     */
     @Builder
     private GameMDP(GameBoard gameBoard, @NonNull Player player, @NonNull GamingEngine oppositionEngine,
                     @NonNull DiscreteSpace discreteSpace, @NonNull ObservationSpace<GameObservation> observationSpace,
-                    @NonNull Integer illegalMoveReward) {
+                    @NonNull Integer illegalMoveReward, Integer moveTraceCapacity, Boolean maskIllegalMoves,
+                    EndgameTablebase tablebase, Boolean leadRewards,
+                    Supplier<GamingEngine> oppositionEngineFactory, GameRecordWriter recordWriter) {
         this.gameBoard = Optional.ofNullable(gameBoard).orElse(new GameBoard());
+        if (moveTraceCapacity != null && moveTraceCapacity > 0) {
+            this.gameBoard.enableMoveTrace(moveTraceCapacity);
+        }
         this.player = player;
         this.oppositionEngine = oppositionEngine;
-        this.discreteSpace = discreteSpace;
+        this.maskIllegalMoves = Optional.ofNullable(maskIllegalMoves).orElse(false);
+        this.discreteSpace = this.maskIllegalMoves
+                ? new LegalActionSpace(discreteSpace.getSize(), this.gameBoard, player)
+                : discreteSpace;
         observation = new GameObservation(this.gameBoard, player);
         this.observationSpace = observationSpace;
         this.illegalMoveReward = illegalMoveReward;
+        this.tablebase = tablebase;
+        this.leadRewards = tablebase != null || Optional.ofNullable(leadRewards).orElse(false);
+        this.moveTraceCapacity = moveTraceCapacity;
+        this.oppositionEngineFactory = oppositionEngineFactory;
+        this.recordWriter = recordWriter;
+        record = recordWriter == null ? null : new GameRecord();
     }
 
     public GameBoard getGameBoard() {
         return gameBoard;
     }
 
+    public Player getPlayer() {
+        return player;
+    }
+
+    public boolean isMaskingIllegalMoves() {
+        return maskIllegalMoves;
+    }
+
     @Override
     public ObservationSpace<GameObservation> getObservationSpace() {
         return observationSpace;
@@ -54,61 +115,164 @@ public class GameMDP implements MDP<GameObservation, Integer, DiscreteSpace> {
 
     @Override
     public GameObservation reset() {
+        if (record != null) {
+            if (record.isInProgress()) {
+                finishRecord(GameRecord.TRUNCATED);
+            }
+            record.start(player);
+        }
         gameBoard.resetGameBoard();
+        if (gameBoard.getMoveTrace() != null) {
+            gameBoard.getMoveTrace().clear();
+        }
+        reachedTablebase = false;
         return observation;
     }
 
     @Override
     public void close() {
-
+        if (record != null) {
+            if (record.isInProgress()) {
+                finishRecord(GameRecord.TRUNCATED);
+            }
+            recordWriter.flush();
+        }
+        if (ownsOppositionEngine && oppositionEngine instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) oppositionEngine).close();
+            } catch (Exception e) {
+                throw new MancalaException(e);
+            }
+        }
     }
 
     @Override
     public StepReply<GameObservation> step(@NonNull Integer action) {
-        int playerScore = gameBoard.playerPoints(player);
-        boolean playAgain = gameBoard.executeMove(player, action + 1);
-        int nextPlayerScore = gameBoard.playerPoints(player);
+        if (record == null) {
+            return traced(play(action));
+        }
 
-        int reward;
-        if (nextPlayerScore == -1) {
-            // We lost due to an illegal move.
-            // TODO consider lowering this reward or make it parameterized
-            reward = illegalMoveReward;
-        } else {
-            reward = nextPlayerScore - playerScore;
+        if (record.getPlayer() == null) {
+            record.start(player);
+        }
+        int step = record.addStep(gameBoard, action);
+        StepReply<GameObservation> reply = play(action);
+        record.setReward(step, (int) reply.getReward());
+        if (reply.isDone()) {
+            int flags = (gameBoard.playerPoints(player) == -1 ? GameRecord.ILLEGAL_MOVE : 0)
+                    | (reachedTablebase ? GameRecord.TABLEBASE : 0);
+            finishRecord(flags);
+            record.start(player);
         }
+        return traced(reply);
+    }
+
+    private StepReply<GameObservation> traced(StepReply<GameObservation> reply) {
+        if (reply.isDone() && gameBoard.getMoveTrace() != null) {
+            log.debug("Game over, points lead {}. Last moves:\n{}", gameBoard.pointsLead(player),
+                    gameBoard.getMoveTrace());
+        }
+        return reply;
+    }
+
+    private void finishRecord(int flags) {
+        record.finish(gameBoard, flags);
+        recordWriter.append(record);
+    }
+
+    private StepReply<GameObservation> play(int action) {
+        int score = score();
+        boolean playAgain = gameBoard.executeMove(player, action + 1);
 
         // TODO: Consider adding to reward if player gets to move again
 
         if (playAgain) {
             // Skip the opponent's move and let's play again
-            return new StepReply<>(observation, reward, gameBoard.isGameOver(player), null);
+            return playerToMove(reward(score), gameBoard.isGameOver(player));
         }
 
         // Opponent's turn to move
         if (oppositionEngine.isGameOver(gameBoard)) {
             // Opponent can't move, game is over.
-            return new StepReply<>(observation, reward, true, null);
+            return new StepReply<>(observation, reward(score), true, null);
         }
 
         // Execute a move by the opponent, and let us know if they couldn't play because
         // the game was over.
         boolean gameOverForOpponent = oppositionEngine.executeMove(gameBoard);
 
-        return new StepReply<>(observation, reward, gameBoard.isGameOver(player) || gameOverForOpponent, null);
+        return playerToMove(reward(score), gameBoard.isGameOver(player) || gameOverForOpponent);
+    }
+
+    /**
+     * @return what the rewards count: the player's points lead with leadRewards, their points otherwise
+     */
+    private int score() {
+        return leadRewards ? gameBoard.pointsLead(player) : gameBoard.playerPoints(player);
+    }
+
+    /**
+     * @return the change in score() since it was the given score, opponent's replies included, or
+     * illegalMoveReward if the player lost by playing an empty pod
+     */
+    private int reward(int score) {
+        if (gameBoard.playerPoints(player) == -1) {
+            // We lost due to an illegal move.
+            // TODO consider lowering this reward or make it parameterized
+            return illegalMoveReward;
+        }
+        return score() - score;
+    }
+
+    private StepReply<GameObservation> playerToMove(int reward, boolean done) {
+        if (!done && tablebase != null && tablebase.contains(gameBoard)) {
+            reachedTablebase = true;
+            return new StepReply<>(observation, reward + tablebase.margin(gameBoard, player), true, null);
+        }
+        return new StepReply<>(observation, reward, done, null);
     }
 
     @Override
     public boolean isDone() {
-        return gameBoard.isGameOver(player);
+        return reachedTablebase || gameBoard.isGameOver(player);
+    }
+
+    /**
+     * Builds a VectorizedGameMDP that plays this MDP's game on many boards in lockstep, with the same
+     * player, rewards, masking and tablebase.
+     * @param environments the number of boards
+     * @param opponent chooses the opponent's moves in batches; when null, this MDP's opposition engine
+     *                 plays every board in turn
+     */
+    public VectorizedGameMDP vectorize(int environments, BatchedOpponent opponent) {
+        return VectorizedGameMDP.builder()
+                .player(player)
+                .opponent(Optional.ofNullable(opponent).orElse(BatchedOpponent.of(oppositionEngine)))
+                .environments(environments)
+                .illegalMoveReward(illegalMoveReward)
+                .maskIllegalMoves(maskIllegalMoves)
+                .tablebase(tablebase)
+                .leadRewards(leadRewards)
+                .build();
     }
 
     @Override
     public MDP<GameObservation, Integer, DiscreteSpace> newInstance() {
-        return GameMDP.builder()
-                .gameBoard(gameBoard)
-                .oppositionEngine(oppositionEngine)
+        // Each instance gets its own board, and its own opposition engine when there is a factory.
+        GameMDP instance = GameMDP.builder()
+                .oppositionEngine(oppositionEngineFactory == null ? oppositionEngine : oppositionEngineFactory.get())
                 .player(player)
+                .discreteSpace(new DiscreteSpace(discreteSpace.getSize()))
+                .observationSpace(observationSpace)
+                .illegalMoveReward(illegalMoveReward)
+                .moveTraceCapacity(moveTraceCapacity)
+                .maskIllegalMoves(maskIllegalMoves)
+                .tablebase(tablebase)
+                .leadRewards(leadRewards)
+                .oppositionEngineFactory(oppositionEngineFactory)
+                .recordWriter(recordWriter)
                 .build();
+        instance.ownsOppositionEngine = oppositionEngineFactory != null;
+        return instance;
     }
 }
@@ -5,16 +5,27 @@ import com.freddrake.mancala.mancalaml.Player;
 import lombok.RequiredArgsConstructor;
 import org.deeplearning4j.rl4j.space.Encodable;
 
-import java.util.stream.IntStream;
-
 @RequiredArgsConstructor
 public class GameObservation implements Encodable {
     private final GameBoard gameBoard;
     private final Player player;
+    private final int[] pods = new int[ObservationEncoder.OBSERVATION_SIZE];
 
     @Override
     public double[] toArray() {
-        int[] pebbles = gameBoard.pebbleField(player);
-        return IntStream.of(pebbles).asDoubleStream().toArray();
+        gameBoard.pebbleField(player, pods);
+        double[] observation = new double[pods.length];
+        for (int i = 0; i < pods.length; i++) {
+            observation[i] = pods[i];
+        }
+        return observation;
+    }
+
+    /**
+     * The same values as toArray, copied into a caller supplied array without allocating.
+     * @return the given array
+     */
+    public int[] pebbleField(int[] into) {
+        return gameBoard.pebbleField(player, into);
     }
 }
@@ -0,0 +1,291 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecord;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordReader;
+import lombok.Builder;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minibatches of Q value targets from a game record file, built ahead of time on worker threads.
+ * Each row is a transition drawn uniformly from every move in the file: the observation before the
+ * move, and as label the discounted return that followed it, (reward * rewardFactor) summed with
+ * gamma as in Q learning, in the column of the action taken.  A labels mask leaves the other five
+ * columns out of the loss, so only the Q value of the recorded move is trained.  Truncated games are
+ * never drawn, as the rewards after the point they were cut off at aren't known.
+ *
+ * Batches come from a fixed pool: one per worker, prefetch more and the one in use.  Workers fill free
+ * batches and queue them, and a batch goes back to the pool when the next one is taken, so nothing is
+ * allocated per batch and the network never waits for data as long as the workers keep up.  The
+ * returned DataSet is only valid until the next call to next().  An epoch is as many batches as it
+ * takes to cover the file's moves once.  Close the iterator to stop the workers.
+ */
+public class GameRecordDataSetIterator implements DataSetIterator, AutoCloseable {
+    private static final int PODS = ObservationEncoder.OBSERVATION_SIZE;
+    private static final int ACTIONS = ActionMask.ACTIONS;
+
+    private final GameRecordReader reader;
+    private final long[] movesBefore;
+    private final int batchSize;
+    private final double gamma;
+    private final double rewardFactor;
+    private final int batchesPerEpoch;
+    private final BlockingQueue<DataSet> free;
+    private final BlockingQueue<DataSet> ready;
+    private final Thread[] workers;
+    private volatile Throwable failure;
+    private DataSetPreProcessor preProcessor;
+    private DataSet current;
+    private int delivered;
+    private long batches;
+    private long waitNanos;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param batchSize rows per batch, 256 by default
+     * @param gamma the discount of later rewards, 0.9 by default
+     * @param rewardFactor the scale of every reward, 0.1 by default
+     * @param workers the threads building batches, one per core by default
+     * @param prefetch the ready batches kept queued, 2 by default
+     */
+    @Builder
+    private GameRecordDataSetIterator(@NonNull GameRecordReader reader, Integer batchSize, Double gamma,
+                                      Double rewardFactor, Integer workers, Integer prefetch, Long seed) {
+        this.reader = reader;
+        this.batchSize = Optional.ofNullable(batchSize).orElse(256);
+        this.gamma = Optional.ofNullable(gamma).orElse(0.9);
+        this.rewardFactor = Optional.ofNullable(rewardFactor).orElse(0.1);
+        int threads = Optional.ofNullable(workers).filter(w -> w > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        int queued = Math.max(1, Optional.ofNullable(prefetch).orElse(2));
+
+        if (reader.size() > Integer.MAX_VALUE) {
+            throw new MancalaException("Game record files of more than " + Integer.MAX_VALUE + " games can't be sampled.");
+        }
+        movesBefore = new long[(int) reader.size() + 1];
+        for (int game = 0; game < reader.size(); game++) {
+            // A truncated game holds no moves to draw, so game() never lands on it.
+            boolean truncated = (reader.flags(game) & GameRecord.TRUNCATED) != 0;
+            movesBefore[game + 1] = movesBefore[game] + (truncated ? 0 : reader.steps(game));
+        }
+        if (getMoves() == 0) {
+            throw new MancalaException("The game record file holds no moves of finished games.");
+        }
+        batchesPerEpoch = (int) Math.max(1, (getMoves() + this.batchSize - 1) / this.batchSize);
+
+        // Every worker can be filling a batch while prefetch batches wait and the consumer holds one.
+        free = new ArrayBlockingQueue<>(threads + queued + 1);
+        ready = new ArrayBlockingQueue<>(threads + queued + 1);
+        for (int i = 0; i < queued; i++) {
+            free.add(newBatch());
+        }
+        for (int i = 0; i < threads + 1; i++) {
+            free.add(newBatch());
+        }
+        SplittableRandom seeds = new SplittableRandom(Optional.ofNullable(seed).orElse(System.nanoTime()));
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom random = seeds.split();
+            this.workers[i] = new Thread(() -> fillBatches(random), "game-record-batches-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * @return the number of moves in the file's finished games
+     */
+    public long getMoves() {
+        return movesBefore[movesBefore.length - 1];
+    }
+
+    /**
+     * @return the share of the time since the iterator was created that next() spent waiting for a batch
+     */
+    public double getWaitRatio() {
+        return (double) waitNanos / (System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d batches of %d from %d moves, %.1f%% of the time waiting for data", batches,
+                batchSize, getMoves(), getWaitRatio() * 100);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return delivered < batchesPerEpoch;
+    }
+
+    @Override
+    public DataSet next() {
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        long start = System.nanoTime();
+        try {
+            DataSet batch;
+            while ((batch = ready.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (failure != null) {
+                    throw new MancalaException(failure);
+                }
+            }
+            current = batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MancalaException(e);
+        }
+        waitNanos += System.nanoTime() - start;
+        if (preProcessor != null) {
+            preProcessor.preProcess(current);
+        }
+        delivered++;
+        batches++;
+        return current;
+    }
+
+    /**
+     * Batches are a fixed size; the argument is ignored.
+     */
+    @Override
+    public DataSet next(int num) {
+        return next();
+    }
+
+    @Override
+    public int inputColumns() {
+        return PODS;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return ACTIONS;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    /**
+     * Batches are reused, so they can't be handed to another prefetching iterator.
+     */
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    /**
+     * Starts a new epoch.  Rows are drawn at random, so epochs differ.
+     */
+    @Override
+    public void reset() {
+        delivered = 0;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private DataSet newBatch() {
+        return new DataSet(Nd4j.create(batchSize, PODS), Nd4j.create(batchSize, ACTIONS), null,
+                Nd4j.create(batchSize, ACTIONS));
+    }
+
+    private void fillBatches(SplittableRandom random) {
+        GameRecord record = new GameRecord();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                DataSet batch = free.take();
+                fill(batch, record, random);
+                ready.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    private void fill(DataSet batch, GameRecord record, SplittableRandom random) {
+        INDArray features = batch.getFeatures();
+        INDArray labels = batch.getLabels();
+        INDArray mask = batch.getLabelsMaskArray();
+        labels.assign(0);
+        mask.assign(0);
+        for (int row = 0; row < batchSize; row++) {
+            long move = random.nextLong(getMoves());
+            int game = game(move);
+            int step = (int) (move - movesBefore[game]);
+            reader.read(game, record);
+            for (int pod = 0; pod < PODS; pod++) {
+                features.putScalar(row, pod, record.pebbles(step, pod));
+            }
+            int action = record.getAction(step);
+            labels.putScalar(row, action, discountedReturn(record, step));
+            mask.putScalar(row, action, 1);
+        }
+    }
+
+    private double discountedReturn(GameRecord record, int step) {
+        double value = 0;
+        for (int later = record.getSteps() - 1; later >= step; later--) {
+            value = record.getReward(later) * rewardFactor + gamma * value;
+        }
+        return value;
+    }
+
+    /**
+     * @return the game holding the given move, counting the moves of finished games from the start of
+     * the file
+     */
+    private int game(long move) {
+        int low = 0;
+        int high = movesBefore.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (movesBefore[middle] <= move) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
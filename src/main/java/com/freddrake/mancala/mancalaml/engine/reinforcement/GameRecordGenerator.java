@@ -0,0 +1,111 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordWriter;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Records games between two engines, for example a search engine against itself, as a corpus for
+ * pretraining.  Games are spread over a thread pool like a Tournament, and each worker plays through
+ * its own GameMDP, so the records are exactly those training would write.  The player's engine picks
+ * a random legal move instead with the exploration probability, so the corpus covers more than the
+ * engines' favourite lines.
+ */
+@Slf4j
+public class GameRecordGenerator {
+    private final Function<Random, GamingEngine> playerEngine;
+    private final Function<Random, GamingEngine> opponentEngine;
+    private final Player player;
+    private final int games;
+    private final int threads;
+    private final long seed;
+    private final double exploration;
+    private final boolean leadRewards;
+
+    /**
+     * @param playerEngine builds the recorded player's engine for a worker
+     * @param opponentEngine builds the opponent's engine for a worker
+     * @param player the recorded player, player one by default
+     * @param games the number of games to record, 10,000 by default
+     * @param threads the size of the thread pool, one per core by default
+     * @param exploration the chance of the player making a random legal move, 0.1 by default
+     * @param leadRewards whether the recorded rewards are changes in the points lead, as GameMDP's
+     *                    leadRewards; false by default
+     */
+    @Builder
+    private GameRecordGenerator(@NonNull Function<Random, GamingEngine> playerEngine,
+                                @NonNull Function<Random, GamingEngine> opponentEngine, Player player,
+                                Integer games, Integer threads, Long seed, Double exploration,
+                                Boolean leadRewards) {
+        this.playerEngine = playerEngine;
+        this.opponentEngine = opponentEngine;
+        this.player = Optional.ofNullable(player).orElse(Player.PLAYER_ONE);
+        this.games = Optional.ofNullable(games).orElse(10_000);
+        this.threads = Optional.ofNullable(threads).filter(t -> t > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        this.seed = Optional.ofNullable(seed).orElse(System.nanoTime());
+        this.exploration = Optional.ofNullable(exploration).orElse(0.1);
+        this.leadRewards = Optional.ofNullable(leadRewards).orElse(false);
+    }
+
+    /**
+     * Plays the games, appending each to the writer as it ends.  The writer is flushed but not closed.
+     * @return the number of moves recorded
+     */
+    public long write(GameRecordWriter writer) {
+        long start = System.nanoTime();
+        long steps = Tournament.runWorkers(games, threads, seed, (workerGames, random) ->
+                playGames(writer, workerGames, random)).stream().mapToLong(Long::longValue).sum();
+        writer.flush();
+        log.info("Recorded {} games of {} moves in {}ms; {}", games, steps,
+                (System.nanoTime() - start) / 1_000_000, writer);
+        return steps;
+    }
+
+    private long playGames(GameRecordWriter writer, int workerGames, Random random) {
+        GamingEngine engine = null;
+        GamingEngine opponent = null;
+        try {
+            engine = playerEngine.apply(random);
+            opponent = opponentEngine.apply(random);
+            GameMDP mdp = GameMDP.builder()
+                    .player(player)
+                    .oppositionEngine(opponent)
+                    .discreteSpace(new DiscreteSpace(ActionMask.ACTIONS))
+                    .observationSpace(new ArrayObservationSpace<>(new int[] {ObservationEncoder.OBSERVATION_SIZE}))
+                    .illegalMoveReward(0)
+                    .maskIllegalMoves(true)
+                    .leadRewards(leadRewards)
+                    .recordWriter(writer)
+                    .build();
+            GameBoard board = mdp.getGameBoard();
+            long steps = 0;
+            for (int game = 0; game < workerGames; game++) {
+                mdp.reset();
+                boolean done;
+                do {
+                    int action = random.nextDouble() < exploration
+                            ? GameBoard.randomMoveBit(board.validMoveMask(player), random)
+                            : engine.chooseMove(board) - 1;
+                    done = mdp.step(action).isDone();
+                    steps++;
+                } while (!done);
+            }
+            return steps;
+        } finally {
+            Tournament.close(engine);
+            Tournament.close(opponent);
+        }
+    }
+}
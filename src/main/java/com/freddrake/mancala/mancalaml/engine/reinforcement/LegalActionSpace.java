@@ -0,0 +1,29 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+
+/**
+ * An action space whose random actions, used for epsilon greedy exploration, are only ever legal
+ * moves on the given board.
+ */
+public class LegalActionSpace extends DiscreteSpace {
+    private final GameBoard gameBoard;
+    private final Player player;
+
+    public LegalActionSpace(int size, GameBoard gameBoard, Player player) {
+        super(size);
+        this.gameBoard = gameBoard;
+        this.player = player;
+    }
+
+    @Override
+    public Integer randomAction() {
+        int validMoves = gameBoard.validMoveMask(player);
+        if (validMoves == 0) {
+            return super.randomAction();
+        }
+        return GameBoard.randomMoveBit(validMoves, rd);
+    }
+}
@@ -0,0 +1,75 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.rl4j.learning.async.AsyncThread;
+import org.deeplearning4j.rl4j.learning.async.MiniTrans;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscreteDense;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningThreadDiscrete;
+import org.deeplearning4j.rl4j.mdp.MDP;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.policy.DQNPolicy;
+import org.deeplearning4j.rl4j.policy.EpsGreedy;
+import org.deeplearning4j.rl4j.policy.Policy;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+
+import java.util.Random;
+import java.util.Stack;
+
+/**
+ * Asynchronous n-step Q learning whose workers only play legal moves.  Each worker acts greedily
+ * through a MaskedDQNPolicy and explores through its own GameMDP's LegalActionSpace.  The n-step
+ * return is bootstrapped from the best legal action in the position the worker stopped at, as in
+ * MaskedQLearningDiscreteDense, rather than the best of all six as rl4j computes it.
+ */
+public class MaskedAsyncNStepQLearningDiscreteDense extends AsyncNStepQLearningDiscreteDense<GameObservation> {
+    private final MaskedDQNPolicy policy;
+
+    public MaskedAsyncNStepQLearningDiscreteDense(MDP<GameObservation, Integer, DiscreteSpace> mdp, IDQN dqn,
+                                                  AsyncNStepQLConfiguration conf, DataManager dataManager) {
+        super(mdp, dqn, conf, dataManager);
+        policy = new MaskedDQNPolicy(dqn);
+    }
+
+    @Override
+    public DQNPolicy<GameObservation> getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public AsyncThread newThread(int i) {
+        return new AsyncNStepQLearningThreadDiscrete<GameObservation>(getMdp().newInstance(), getAsyncGlobal(),
+                getConfiguration(), i, getDataManager()) {
+            private final Random random = new Random(conf.getSeed() + threadNumber);
+
+            @Override
+            public void run() {
+                // rl4j never closes the instance it hands each worker.
+                try {
+                    super.run();
+                } finally {
+                    mdp.close();
+                }
+            }
+
+            @Override
+            public Gradient[] calcGradient(IDQN current, Stack<MiniTrans<Integer>> rewards) {
+                // The last entry holds the bootstrap, when the episode goes on, with the Q values it came from.
+                MiniTrans<Integer> last = rewards.peek();
+                if (last.getOutput() != null) {
+                    rewards.pop();
+                    int mask = ActionMask.fromObservation(last.getObs(), 0);
+                    rewards.push(new MiniTrans<>(last.getObs(), null, last.getOutput(),
+                            ActionMask.maxValue(last.getOutput()[0], 0, mask)));
+                }
+                return super.calcGradient(current, rewards);
+            }
+
+            @Override
+            public Policy<GameObservation, Integer> getPolicy(IDQN nn) {
+                return new EpsGreedy<>(new MaskedDQNPolicy(nn), mdp, conf.getUpdateStart(), conf.getEpsilonNbStep(),
+                        random, conf.getMinEpsilon(), this);
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.policy.DQNPolicy;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Greedy policy that only picks among the legal moves of the observation it is given.
+ */
+public class MaskedDQNPolicy extends DQNPolicy<GameObservation> {
+    public MaskedDQNPolicy(IDQN dqn) {
+        super(dqn);
+    }
+
+    @Override
+    public Integer nextAction(INDArray input) {
+        return ActionMask.bestAction(getNeuralNet().output(input), 0, ActionMask.fromObservation(input, 0));
+    }
+}
@@ -0,0 +1,225 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.learning.sync.Transition;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.discrete.QLearningDiscreteDense;
+import org.deeplearning4j.rl4j.mdp.MDP;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.policy.DQNPolicy;
+import org.deeplearning4j.rl4j.policy.EpsGreedy;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.ArrayList;
+
+/**
+ * Q learning that never considers illegal moves.  The greedy policy only picks among the legal moves
+ * of the current observation, exploration relies on the MDP's LegalActionSpace, and the bootstrapped
+ * target uses the best legal action of the next observation rather than the best of all six.  The
+ * network is still trained on its unmasked output, so only the Q value of the action taken changes.
+ *
+ * When given a ReplayMemory, transitions are kept there, off-heap, instead of in rl4j's replay of
+ * Transition objects, and batches are sampled from it.  Subclasses store and fit through
+ * storeTransition and fitBatch so they work with either.  A PrioritizedReplayMemory also gets the
+ * TD error of every transition it hands out, and its importance sampling weights scale the updates.
+ *
+ * With a Checkpointer, the network and replay memory are checkpointed after every epoch once its
+ * interval has passed.
+ */
+public class MaskedQLearningDiscreteDense extends QLearningDiscreteDense<GameObservation> {
+    private final MaskedDQNPolicy policy;
+    private final EpsGreedy<GameObservation, Integer, DiscreteSpace> egPolicy;
+    private final ReplayMemory replayMemory;
+    private final int[] observation = new int[ObservationEncoder.OBSERVATION_SIZE];
+    private final int[] nextObservation = new int[ObservationEncoder.OBSERVATION_SIZE];
+    private final INDArray input = Nd4j.create(1, ObservationEncoder.OBSERVATION_SIZE);
+    private double[] errors = new double[0];
+    private Checkpointer checkpointer;
+
+    public MaskedQLearningDiscreteDense(MDP<GameObservation, Integer, DiscreteSpace> mdp, IDQN dqn,
+                                        QLConfiguration conf, DataManager dataManager) {
+        this(mdp, dqn, conf, dataManager, null);
+    }
+
+    /**
+     * @param replayMemory where transitions are kept; when null, rl4j's replay memory is used
+     */
+    public MaskedQLearningDiscreteDense(MDP<GameObservation, Integer, DiscreteSpace> mdp, IDQN dqn,
+                                        QLConfiguration conf, DataManager dataManager, ReplayMemory replayMemory) {
+        super(mdp, dqn, conf, dataManager);
+        policy = new MaskedDQNPolicy(dqn);
+        egPolicy = new EpsGreedy<>(policy, mdp, conf.getUpdateStart(), conf.getEpsilonNbStep(), getRandom(),
+                conf.getMinEpsilon(), this);
+        this.replayMemory = replayMemory;
+    }
+
+    @Override
+    public DQNPolicy<GameObservation> getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public EpsGreedy<GameObservation, Integer, DiscreteSpace> getEgPolicy() {
+        return egPolicy;
+    }
+
+    /**
+     * @return the off-heap replay memory, or null if rl4j's is used
+     */
+    public ReplayMemory getReplayMemory() {
+        return replayMemory;
+    }
+
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    @Override
+    public void postEpoch() {
+        super.postEpoch();
+        if (checkpointer != null) {
+            checkpointer.checkpoint(getCurrentDQN(), replayMemory, getStepCounter(), getEpochCounter());
+        }
+    }
+
+    @Override
+    protected QLStepReturn<GameObservation> trainStep(GameObservation obs) {
+        if (replayMemory == null || getHistoryProcessor() != null) {
+            return super.trainStep(obs);
+        }
+
+        // The same step as rl4j's, without stacked frames, storing primitives instead of Transitions.
+        obs.pebbleField(observation);
+        ObservationEncoder.encode(observation, input, 0);
+        double maxQ = ActionMask.maxValue(getCurrentDQN().output(input), 0, ActionMask.fromPebbleField(observation));
+        Integer action = getEgPolicy().nextAction(input);
+        StepReply<GameObservation> stepReply = getMdp().step(action);
+        stepReply.getObservation().pebbleField(nextObservation);
+        storeTransition(observation, action, stepReply.getReward() * getConfiguration().getRewardFactor(),
+                stepReply.isDone(), nextObservation);
+
+        if (getStepCounter() > getConfiguration().getUpdateStart()
+                && replayMemory.size() >= getConfiguration().getBatchSize()) {
+            fitBatch();
+        }
+        return new QLStepReturn<>(maxQ, getCurrentDQN().getLatestScore(), stepReply);
+    }
+
+    /**
+     * Stores a transition whose observations are pebble fields.
+     */
+    protected void storeTransition(int[] observation, int action, double reward, boolean done, int[] nextObservation) {
+        if (replayMemory != null) {
+            replayMemory.store(observation, action, reward, done, nextObservation);
+            return;
+        }
+        INDArray observationRow = Nd4j.create(1, ObservationEncoder.OBSERVATION_SIZE);
+        INDArray nextObservationRow = Nd4j.create(1, ObservationEncoder.OBSERVATION_SIZE);
+        ObservationEncoder.encode(observation, observationRow, 0);
+        ObservationEncoder.encode(nextObservation, nextObservationRow, 0);
+        getExpReplay().store(new Transition<>(new INDArray[]{observationRow}, action, reward, done, nextObservationRow));
+    }
+
+    /**
+     * Stores a transition whose observations are rows of encoded observations.  Without a ReplayMemory
+     * the rows are kept as views, so the arrays must not be changed afterwards.
+     */
+    protected void storeTransition(INDArray observations, INDArray nextObservations, int row, int action,
+                                   double reward, boolean done) {
+        if (replayMemory != null) {
+            replayMemory.store(observations, row, action, reward, done, nextObservations, row);
+            return;
+        }
+        getExpReplay().store(new Transition<>(new INDArray[]{observations.getRow(row)}, action, reward, done,
+                nextObservations.getRow(row)));
+    }
+
+    /**
+     * Samples one batch from the replay memory in use and fits the network to its targets.  With a
+     * PrioritizedReplayMemory the sampled transitions then get their new errors as priorities.
+     */
+    protected void fitBatch() {
+        Pair<INDArray, INDArray> targets;
+        if (replayMemory == null) {
+            targets = setTarget(getExpReplay().getBatch());
+        } else {
+            ReplayMemory.Batch batch = replayMemory.sample(getConfiguration().getBatchSize(), getRandom());
+            targets = setTarget(batch);
+            if (replayMemory instanceof PrioritizedReplayMemory) {
+                ((PrioritizedReplayMemory) replayMemory).updatePriorities(batch.getSlots(), errors, batch.size());
+            }
+        }
+        getCurrentDQN().fit(targets.getFirst(), targets.getSecond());
+    }
+
+    @Override
+    protected Pair<INDArray, INDArray> setTarget(ArrayList<Transition<Integer>> transitions) {
+        if (getHistoryProcessor() != null) {
+            // Stacked frames don't apply to this game; leave them to the unmasked implementation.
+            return super.setTarget(transitions);
+        }
+        if (transitions.isEmpty()) {
+            throw new IllegalArgumentException("too few transitions");
+        }
+
+        int size = transitions.size();
+        int columns = getMdp().getObservationSpace().getShape()[0];
+        INDArray observations = Nd4j.create(size, columns);
+        INDArray nextObservations = Nd4j.create(size, columns);
+        int[] actions = new int[size];
+        double[] rewards = new double[size];
+        boolean[] terminal = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Transition<Integer> transition = transitions.get(i);
+            observations.putRow(i, transition.getObservation()[0]);
+            nextObservations.putRow(i, transition.getNextObservation());
+            actions[i] = transition.getAction();
+            rewards[i] = transition.getReward();
+            terminal[i] = transition.isTerminal();
+        }
+        return setTarget(observations, nextObservations, actions, rewards, terminal, null, size);
+    }
+
+    protected Pair<INDArray, INDArray> setTarget(ReplayMemory.Batch batch) {
+        return setTarget(batch.getObservations(), batch.getNextObservations(), batch.getActions(), batch.getRewards(),
+                batch.getDone(), batch.getWeights(), batch.size());
+    }
+
+    /**
+     * Sets the target of each action taken, and keeps each absolute TD error in errors.  With importance
+     * sampling weights the step towards the target is scaled by the row's weight, which scales its
+     * squared error gradient by the same amount.
+     */
+    private Pair<INDArray, INDArray> setTarget(INDArray observations, INDArray nextObservations, int[] actions,
+                                               double[] rewards, boolean[] terminal, double[] weights, int size) {
+        if (errors.length < size) {
+            errors = new double[size];
+        }
+        INDArray qValues = dqnOutput(observations);
+        INDArray nextQValues = dqnOutput(nextObservations);
+        boolean doubleDQN = getConfiguration().isDoubleDQN();
+        INDArray targetNextQValues = doubleDQN ? targetDqnOutput(nextObservations) : null;
+
+        for (int i = 0; i < size; i++) {
+            double target = rewards[i];
+            if (!terminal[i]) {
+                int mask = ActionMask.fromObservation(nextObservations, i);
+                double next = doubleDQN
+                        ? targetNextQValues.getDouble(i, ActionMask.bestAction(nextQValues, i, mask))
+                        : ActionMask.maxValue(nextQValues, i, mask);
+                target += getConfiguration().getGamma() * next;
+            }
+
+            int action = actions[i];
+            double previous = qValues.getDouble(i, action);
+            double clamp = getConfiguration().getErrorClamp();
+            errors[i] = Math.abs(target - previous);
+            double clamped = Math.min(previous + clamp, Math.max(target, previous - clamp));
+            qValues.putScalar(i, action, weights == null ? clamped : previous + weights[i] * (clamped - previous));
+        }
+        return new Pair<>(observations, qValues);
+    }
+}
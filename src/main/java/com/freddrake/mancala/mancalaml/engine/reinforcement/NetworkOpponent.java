@@ -0,0 +1,59 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import lombok.Builder;
+import lombok.NonNull;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * A network opponent for VectorizedGameMDP.  All of the boards it is asked to move on are encoded into
+ * one preallocated batch and evaluated with a single forward pass, and each board gets the legal move
+ * with the highest Q value, the same move DQNEngine would pick.  It is not thread safe.
+ */
+public class NetworkOpponent implements BatchedOpponent {
+    private final Player player;
+    private final MultiLayerNetwork network;
+    private final ObservationEncoder encoder;
+
+    /**
+     * @param player the side the network plays
+     * @param networkInputStream the network to play, as saved by DQN.save
+     * @param batchSize the most boards moved on in one call, 64 by default; use the number of environments
+     */
+    @Builder
+    private NetworkOpponent(@NonNull Player player, @NonNull InputStream networkInputStream, Integer batchSize) {
+        this.player = player;
+        try {
+            network = ModelSerializer.restoreMultiLayerNetwork(networkInputStream);
+        } catch (IOException e) {
+            throw new MancalaException(e);
+        }
+        encoder = new ObservationEncoder(Optional.ofNullable(batchSize).orElse(64));
+    }
+
+    @Override
+    public void chooseMoves(GameBoard[] boards, int[] indices, int count, int[] moves) {
+        INDArray input = encoder.getBatch();
+        if (count > input.rows()) {
+            throw new MancalaException("Network opponent batch size is " + input.rows() + ", asked for " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            encoder.encode(boards[indices[i]], player, input, i);
+        }
+
+        INDArray rows = count == input.rows() ? input : input.get(NDArrayIndex.interval(0, count), NDArrayIndex.all());
+        INDArray output = network.output(rows);
+        for (int i = 0; i < count; i++) {
+            moves[i] = ActionMask.bestAction(output, i, boards[indices[i]].validMoveMask(player)) + 1;
+        }
+    }
+}
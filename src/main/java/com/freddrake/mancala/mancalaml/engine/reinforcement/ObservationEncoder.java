@@ -0,0 +1,58 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Writes boards, from a player's perspective, straight into rows of preallocated INDArrays.  This is
+ * the same encoding as GameObservation.toArray, but without the intermediate arrays and without a
+ * new INDArray per step.  ND4J keeps the arrays' buffers off-heap, so encoding doesn't create any
+ * garbage.  It is not thread safe; give every thread its own encoder.
+ */
+public class ObservationEncoder {
+    public static final int OBSERVATION_SIZE = 12;
+
+    private final int[] pods = new int[OBSERVATION_SIZE];
+    private final INDArray single = Nd4j.create(1, OBSERVATION_SIZE);
+    private final INDArray batch;
+
+    public ObservationEncoder() {
+        this(1);
+    }
+
+    /**
+     * @param batchSize the number of rows in the reusable batch array
+     */
+    public ObservationEncoder(int batchSize) {
+        batch = batchSize == 1 ? single : Nd4j.create(batchSize, OBSERVATION_SIZE);
+    }
+
+    /**
+     * Encodes a single observation.  The returned array is reused by the next call.
+     * @return a 1 x 12 network input
+     */
+    public INDArray encode(GameBoard gameBoard, Player player) {
+        encode(gameBoard, player, single, 0);
+        return single;
+    }
+
+    /**
+     * @return the reusable batch array; fill its rows with encode(gameBoard, player, getBatch(), row)
+     */
+    public INDArray getBatch() {
+        return batch;
+    }
+
+    public void encode(GameBoard gameBoard, Player player, INDArray into, int row) {
+        gameBoard.pebbleField(player, pods);
+        encode(pods, into, row);
+    }
+
+    public static void encode(int[] pebbleField, INDArray into, int row) {
+        for (int i = 0; i < OBSERVATION_SIZE; i++) {
+            into.putScalar(row, i, pebbleField[i]);
+        }
+    }
+}
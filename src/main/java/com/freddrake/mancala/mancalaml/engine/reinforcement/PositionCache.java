@@ -0,0 +1,181 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of the network's Q values by observation key (PositionCodec.observationKey), so
+ * that positions seen before, which is most of them in the opening, skip the forward pass.  The key
+ * covers only what the network sees, so positions that differ in their points piles, or that mirror
+ * each other with the players swapped, share an entry.  When full,
+ * entries are evicted with the CLOCK algorithm: a hand sweeps the slots, clearing each entry's
+ * reference bit and evicting the first entry that hasn't been used since the hand last passed.
+ *
+ * Everything lives in preallocated primitive arrays, with an open addressed index from key to slot,
+ * so lookups and inserts don't allocate.  Cached values belong to one network; call invalidate()
+ * when the network changes.  It is not thread safe.
+ */
+public class PositionCache {
+    private static final int EMPTY = -1;
+    private static final int ACTIONS = ActionMask.ACTIONS;
+
+    private final int capacity;
+    private final long[] keys;
+    private final double[] qValues;
+    private final boolean[] referenced;
+    private final int[] index;
+    private final int indexMask;
+    private int size;
+    private int hand;
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity the most positions held at once
+     */
+    public PositionCache(int capacity) {
+        if (capacity < 1) {
+            throw new MancalaException("Position cache capacity must be at least 1.");
+        }
+        this.capacity = capacity;
+        keys = new long[capacity];
+        qValues = new double[capacity * ACTIONS];
+        referenced = new boolean[capacity];
+
+        // Keep the index at most half full so probe sequences stay short.
+        index = new int[Integer.highestOneBit(capacity) << 2];
+        indexMask = index.length - 1;
+        Arrays.fill(index, EMPTY);
+    }
+
+    /**
+     * Copies the cached Q values for a position, if present.
+     * @param key the position key
+     * @param into an array of at least six elements
+     * @return true on a hit, false if the position isn't cached
+     */
+    public boolean get(long key, double[] into) {
+        int slot = find(key);
+        if (slot == EMPTY) {
+            misses++;
+            return false;
+        }
+        hits++;
+        referenced[slot] = true;
+        System.arraycopy(qValues, slot * ACTIONS, into, 0, ACTIONS);
+        return true;
+    }
+
+    /**
+     * Caches the Q values for a position, evicting another position if the cache is full.
+     */
+    public void put(long key, double[] values) {
+        int slot = find(key);
+        if (slot == EMPTY) {
+            slot = size < capacity ? size++ : evict();
+            keys[slot] = key;
+            addToIndex(key, slot);
+        }
+        referenced[slot] = true;
+        System.arraycopy(values, 0, qValues, slot * ACTIONS, ACTIONS);
+    }
+
+    /**
+     * Drops every entry, for when the network behind the cached values has changed.
+     */
+    public void invalidate() {
+        Arrays.fill(index, EMPTY);
+        size = 0;
+        hand = 0;
+        version++;
+    }
+
+    /**
+     * @return the number of times the cache has been invalidated
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d/%d positions",
+                hits, misses, getHitRate() * 100, evictions, size, capacity);
+    }
+
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = hand == capacity - 1 ? 0 : hand + 1;
+        }
+        int victim = hand;
+        hand = hand == capacity - 1 ? 0 : hand + 1;
+        removeFromIndex(keys[victim]);
+        evictions++;
+        return victim;
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & indexMask;
+    }
+
+    private int find(long key) {
+        for (int i = home(key); index[i] != EMPTY; i = (i + 1) & indexMask) {
+            if (keys[index[i]] == key) {
+                return index[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    private void addToIndex(long key, int slot) {
+        int i = home(key);
+        while (index[i] != EMPTY) {
+            i = (i + 1) & indexMask;
+        }
+        index[i] = slot;
+    }
+
+    private void removeFromIndex(long key) {
+        int hole = home(key);
+        while (keys[index[hole]] != key) {
+            hole = (hole + 1) & indexMask;
+        }
+
+        // Shift later entries of the probe run back into the hole, so that lookups never stop early.
+        for (int i = (hole + 1) & indexMask; index[i] != EMPTY; i = (i + 1) & indexMask) {
+            int entryHome = home(keys[index[i]]);
+            boolean canMove = hole <= i ? entryHome <= hole || entryHome > i : entryHome <= hole && entryHome > i;
+            if (canMove) {
+                index[hole] = index[i];
+                hole = i;
+            }
+        }
+        index[hole] = EMPTY;
+    }
+}
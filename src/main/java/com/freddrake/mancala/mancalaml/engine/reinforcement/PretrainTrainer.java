@@ -0,0 +1,118 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.engine.Trainer;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordReader;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.api.storage.StatsStorage;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.rl4j.network.dqn.DQN;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.ui.api.UIServer;
+import org.deeplearning4j.ui.stats.StatsListener;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Supervised pretraining of the Q network from recorded games, so that Q learning starts from a
+ * network that already values positions the way a strong player's games turned out, instead of from
+ * hundreds of thousands of steps against a random opponent.  The network regresses the discounted
+ * return of each recorded move, with the gamma and reward factor of the Q learning that follows;
+ * batches come from a GameRecordDataSetIterator that builds them on worker threads.
+ */
+@Slf4j
+public class PretrainTrainer implements Trainer {
+    private DQNFactoryStdDense.Configuration netConfiguration;
+    private GameRecordReader records;
+    private InputStream networkInputStream;
+    private OutputStream networkOutputStream;
+    private UIServer uiServer;
+    private StatsStorage statsStorage;
+    private int epochs;
+    private int batchSize;
+    private double gamma;
+    private double rewardFactor;
+    private Integer workers;
+
+    /**
+     * @param networkInputStream when given, pretraining continues from this network instead of a new one
+     * @param epochs passes over the recorded moves, 1 by default
+     * @param batchSize moves per minibatch, 256 by default
+     * @param workers threads building minibatches, one per core by default
+     */
+    @Builder
+    private PretrainTrainer(@NonNull DQNFactoryStdDense.Configuration netConfiguration,
+                            @NonNull GameRecordReader records, InputStream networkInputStream,
+                            OutputStream networkOutputStream, UIServer uiServer, StatsStorage statsStorage,
+                            Integer epochs, Integer batchSize, Double gamma, Double rewardFactor, Integer workers) {
+        this.netConfiguration = netConfiguration;
+        this.records = records;
+        this.networkInputStream = networkInputStream;
+        this.networkOutputStream = networkOutputStream;
+        this.uiServer = uiServer;
+        this.statsStorage = statsStorage;
+        this.epochs = Optional.ofNullable(epochs).orElse(1);
+        this.batchSize = Optional.ofNullable(batchSize).orElse(256);
+        this.gamma = Optional.ofNullable(gamma).orElse(0.9);
+        this.rewardFactor = Optional.ofNullable(rewardFactor).orElse(0.1);
+        this.workers = workers;
+    }
+
+    @Override
+    public void train() {
+        IDQN dqn;
+        if (networkInputStream == null) {
+            dqn = new DQNFactoryStdDense(netConfiguration)
+                    .buildDQN(new int[]{ObservationEncoder.OBSERVATION_SIZE}, ActionMask.ACTIONS);
+        } else {
+            try {
+                MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(networkInputStream);
+                if (statsStorage != null) {
+                    model.addListeners(new StatsListener(statsStorage));
+                }
+                dqn = new DQN(model);
+            } catch (IOException e) {
+                throw new MancalaException(e);
+            }
+        }
+        MultiLayerNetwork network = (MultiLayerNetwork) dqn.getNeuralNetworks()[0];
+
+        try (GameRecordDataSetIterator iterator = GameRecordDataSetIterator.builder()
+                .reader(records)
+                .batchSize(batchSize)
+                .gamma(gamma)
+                .rewardFactor(rewardFactor)
+                .workers(workers)
+                .build()) {
+            log.info("Pretraining on {} moves from {} games", iterator.getMoves(), records.size());
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                long start = System.nanoTime();
+                iterator.reset();
+                network.fit(iterator);
+                log.info("Epoch {}: score {} in {}ms; {}", epoch, network.score(),
+                        (System.nanoTime() - start) / 1_000_000, iterator);
+            }
+        }
+        log.info("Done pretraining");
+
+        if (networkOutputStream != null) {
+            try {
+                dqn.save(networkOutputStream);
+            } catch (IOException e) {
+                throw new MancalaException(e);
+            }
+        }
+
+        if (uiServer != null) {
+            uiServer.stop();
+        }
+        log.info("Done saving.");
+    }
+}
@@ -0,0 +1,209 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import lombok.Builder;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Replay memory that samples transitions in proportion to their priority, (|TD error| + epsilon) ^
+ * alpha, so the learner spends its updates on the transitions it predicts worst.  Priorities live in
+ * an array based sum-tree, with a min-tree beside it for the weight normalization, so sampling and
+ * updating are O(log n).  New transitions get the highest priority seen so far, so each one is likely
+ * to be replayed at least once.
+ *
+ * Each sampled row carries the importance sampling weight (n P(i)) ^ -beta, divided by the largest
+ * possible weight, to correct for the non-uniform sampling.  Beta rises linearly from its start to 1
+ * over betaSteps samples.  The learner reports the new errors through updatePriorities.
+ *
+ * Copies and written memories keep the priorities and the progress of beta along with the transitions.
+ */
+public class PrioritizedReplayMemory extends ReplayMemory {
+    private final double alpha;
+    private final double betaStart;
+    private final long betaSteps;
+    private final double epsilon;
+    private final int leaves;
+    private final double[] sums;
+    private final double[] minimums;
+    private double maxPriority = 1;
+    private long samples;
+
+    /**
+     * @param alpha how strongly priorities skew sampling, 0.6 by default; 0 is uniform
+     * @param betaStart the importance sampling exponent at first, 0.4 by default
+     * @param betaSteps the number of samples over which beta reaches 1, 100000 by default
+     * @param epsilon added to every error so that every transition can be sampled, 1e-3 by default
+     */
+    @Builder
+    private PrioritizedReplayMemory(@NonNull Integer capacity, Double alpha, Double betaStart, Long betaSteps,
+                                    Double epsilon) {
+        super(capacity);
+        this.alpha = Optional.ofNullable(alpha).orElse(0.6);
+        this.betaStart = Optional.ofNullable(betaStart).orElse(0.4);
+        this.betaSteps = Math.max(1, Optional.ofNullable(betaSteps).orElse(100000L));
+        this.epsilon = Optional.ofNullable(epsilon).orElse(1e-3);
+        if (this.alpha < 0 || this.betaStart < 0 || this.betaStart > 1 || this.epsilon <= 0) {
+            throw new MancalaException("Prioritized replay needs alpha >= 0, 0 <= beta <= 1 and epsilon > 0.");
+        }
+
+        int rounded = Integer.highestOneBit(capacity);
+        leaves = rounded < capacity ? rounded << 1 : rounded;
+        sums = new double[2 * leaves];
+        minimums = new double[2 * leaves];
+        Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @return the sum of every priority held
+     */
+    public double getTotalPriority() {
+        return sums[1];
+    }
+
+    public double getBeta() {
+        return Math.min(1, betaStart + (1 - betaStart) * samples / betaSteps);
+    }
+
+    /**
+     * Samples one transition from each of batchSize equal slices of the total priority.  The returned
+     * batch is reused by the next call.
+     */
+    @Override
+    public Batch sample(int batchSize, Random random) {
+        if (size() == 0) {
+            throw new MancalaException("Replay memory is empty.");
+        }
+        Batch into = batch(batchSize);
+        double total = sums[1];
+        double slice = total / batchSize;
+        double beta = getBeta();
+        int size = size();
+        // The largest weight belongs to the smallest priority; every weight is divided by it.
+        double maxWeight = Math.pow(size * minimums[1] / total, -beta);
+        for (int row = 0; row < batchSize; row++) {
+            int slot = find(Math.min((row + random.nextDouble()) * slice, Math.nextDown(total)));
+            if (slot >= size) {
+                slot = size - 1;
+            }
+            read(slot, into, row);
+            into.weights[row] = Math.pow(size * sums[leaves + slot] / total, -beta) / maxWeight;
+        }
+        samples++;
+        return into;
+    }
+
+    /**
+     * Sets new priorities from the absolute TD errors of sampled transitions.
+     * @param slots the slots the transitions were read from, as in Batch.getSlots
+     * @param errors the new absolute error of each
+     * @param count the number of transitions to update
+     */
+    public void updatePriorities(int[] slots, double[] errors, int count) {
+        for (int i = 0; i < count; i++) {
+            double priority = Math.pow(Math.abs(errors[i]) + epsilon, alpha);
+            maxPriority = Math.max(maxPriority, priority);
+            setPriority(slots[i], priority);
+        }
+    }
+
+    /**
+     * @return the priority of the transition in a slot
+     */
+    public double priority(int slot) {
+        return sums[leaves + slot];
+    }
+
+    @Override
+    public ReplayMemory copyTo(ReplayMemory into) {
+        PrioritizedReplayMemory copy = (PrioritizedReplayMemory) super.copyTo(into);
+        System.arraycopy(sums, 0, copy.sums, 0, sums.length);
+        System.arraycopy(minimums, 0, copy.minimums, 0, minimums.length);
+        copy.maxPriority = maxPriority;
+        copy.samples = samples;
+        return copy;
+    }
+
+    /**
+     * Writes the transitions, then the highest priority, the number of samples taken and the priority
+     * of every slot in use.
+     */
+    @Override
+    public void write(WritableByteChannel out) throws IOException {
+        super.write(out);
+        int size = size();
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + Long.BYTES + size * Double.BYTES);
+        buffer.putDouble(maxPriority).putLong(samples);
+        for (int slot = 0; slot < size; slot++) {
+            buffer.putDouble(sums[leaves + slot]);
+        }
+        buffer.flip();
+        writeFully(out, buffer);
+    }
+
+    @Override
+    public void read(ReadableByteChannel in) throws IOException {
+        super.read(in);
+        int size = size();
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + Long.BYTES + size * Double.BYTES);
+        readFully(in, buffer);
+        buffer.flip();
+        maxPriority = buffer.getDouble();
+        samples = buffer.getLong();
+        Arrays.fill(sums, 0);
+        Arrays.fill(minimums, Double.POSITIVE_INFINITY);
+        for (int slot = 0; slot < size; slot++) {
+            sums[leaves + slot] = buffer.getDouble();
+            minimums[leaves + slot] = sums[leaves + slot];
+        }
+        // Rebuild the inner nodes bottom up, rather than walking up from every leaf.
+        for (int node = leaves - 1; node >= 1; node--) {
+            sums[node] = sums[2 * node] + sums[2 * node + 1];
+            minimums[node] = Math.min(minimums[2 * node], minimums[2 * node + 1]);
+        }
+    }
+
+    @Override
+    protected ReplayMemory newEmpty() {
+        return new PrioritizedReplayMemory(getCapacity(), alpha, betaStart, betaSteps, epsilon);
+    }
+
+    @Override
+    protected void stored(int slot) {
+        setPriority(slot, maxPriority);
+    }
+
+    private void setPriority(int slot, double priority) {
+        int node = leaves + slot;
+        sums[node] = priority;
+        minimums[node] = priority;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            sums[node] = sums[2 * node] + sums[2 * node + 1];
+            minimums[node] = Math.min(minimums[2 * node], minimums[2 * node + 1]);
+        }
+    }
+
+    /**
+     * @return the slot where the running sum of priorities passes the given prefix
+     */
+    private int find(double prefix) {
+        int node = 1;
+        while (node < leaves) {
+            int left = 2 * node;
+            if (prefix < sums[left]) {
+                node = left;
+            } else {
+                prefix -= sums[left];
+                node = left + 1;
+            }
+        }
+        return node - leaves;
+    }
+}
@@ -0,0 +1,311 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.PositionCodec;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+/**
+ * Replay memory for Q learning, held off-heap in primitive columns.  Each transition takes 30 bytes:
+ * both observations as one byte per pod, the first 12 bytes of their PositionCodec encoding, the
+ * action, the reward as a float and the done flag.  Once
+ * full, the oldest transitions are overwritten.  Mini-batches are sampled uniformly, with replacement,
+ * straight into reusable INDArrays, so neither storing nor sampling allocates.  It is not thread safe.
+ *
+ * copyTo takes a snapshot with a few bulk copies, which write and read then turn into bytes and back,
+ * so a checkpoint can be written while training goes on.
+ */
+public class ReplayMemory {
+    static final int PODS = PositionCodec.PODS;
+    static final int BYTES_PER_TRANSITION = 2 * PODS + 1 + Float.BYTES + 1;
+
+    private final int capacity;
+    private final ByteBuffer observations;
+    private final ByteBuffer nextObservations;
+    private final ByteBuffer actions;
+    private final ByteBuffer rewards;
+    private final ByteBuffer done;
+    private long stored;
+    private Batch batch;
+
+    public ReplayMemory(int capacity) {
+        if (capacity < 1) {
+            throw new MancalaException("Replay memory capacity must be at least 1.");
+        }
+        this.capacity = capacity;
+        observations = ByteBuffer.allocateDirect(capacity * PODS);
+        nextObservations = ByteBuffer.allocateDirect(capacity * PODS);
+        actions = ByteBuffer.allocateDirect(capacity);
+        rewards = ByteBuffer.allocateDirect(capacity * Float.BYTES);
+        done = ByteBuffer.allocateDirect(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of transitions held, at most the capacity
+     */
+    public int size() {
+        return (int) Math.min(stored, capacity);
+    }
+
+    /**
+     * @return the number of transitions stored since the memory was created, including overwritten ones
+     */
+    public long getStored() {
+        return stored;
+    }
+
+    /**
+     * @return the off-heap bytes taken by the columns
+     */
+    public long getMemoryBytes() {
+        return (long) capacity * BYTES_PER_TRANSITION;
+    }
+
+    /**
+     * Stores a transition.
+     * @param observation the pebble field the action was taken in
+     * @param nextObservation the pebble field that followed
+     * @return the slot it was stored in
+     */
+    public int store(int[] observation, int action, double reward, boolean isDone, int[] nextObservation) {
+        int slot = nextSlot();
+        int offset = slot * PODS;
+        for (int i = 0; i < PODS; i++) {
+            observations.put(offset + i, (byte) observation[i]);
+            nextObservations.put(offset + i, (byte) nextObservation[i]);
+        }
+        finish(slot, action, reward, isDone);
+        stored(slot);
+        return slot;
+    }
+
+    /**
+     * Stores a transition whose observations are rows of encoded observations.
+     * @return the slot it was stored in
+     */
+    public int store(INDArray observation, int row, int action, double reward, boolean isDone,
+                     INDArray nextObservation, int nextRow) {
+        int slot = nextSlot();
+        int offset = slot * PODS;
+        for (int i = 0; i < PODS; i++) {
+            observations.put(offset + i, (byte) observation.getDouble(row, i));
+            nextObservations.put(offset + i, (byte) nextObservation.getDouble(nextRow, i));
+        }
+        finish(slot, action, reward, isDone);
+        stored(slot);
+        return slot;
+    }
+
+    /**
+     * Copies every transition into another memory of the same kind and capacity.
+     * @param into the memory to copy into; when null, a new one is made
+     * @return the copy
+     */
+    public ReplayMemory copyTo(ReplayMemory into) {
+        if (into == null) {
+            into = newEmpty();
+        } else if (into.getClass() != getClass() || into.capacity != capacity) {
+            throw new MancalaException("Replay memory can only be copied to one of the same kind and capacity.");
+        }
+        copy(observations, into.observations);
+        copy(nextObservations, into.nextObservations);
+        copy(actions, into.actions);
+        copy(rewards, into.rewards);
+        copy(done, into.done);
+        into.stored = stored;
+        return into;
+    }
+
+    /**
+     * Writes the number of transitions stored and the columns of the slots in use.
+     */
+    public void write(WritableByteChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+        header.putLong(0, stored);
+        writeFully(out, header);
+        int size = size();
+        writeFully(out, slice(observations, size * PODS));
+        writeFully(out, slice(nextObservations, size * PODS));
+        writeFully(out, slice(actions, size));
+        writeFully(out, slice(rewards, size * Float.BYTES));
+        writeFully(out, slice(done, size));
+    }
+
+    /**
+     * Replaces the transitions held with ones written by write, from a memory of the same kind and capacity.
+     */
+    public void read(ReadableByteChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+        readFully(in, header);
+        stored = header.getLong(0);
+        int size = size();
+        readFully(in, slice(observations, size * PODS));
+        readFully(in, slice(nextObservations, size * PODS));
+        readFully(in, slice(actions, size));
+        readFully(in, slice(rewards, size * Float.BYTES));
+        readFully(in, slice(done, size));
+    }
+
+    /**
+     * @return an empty memory like this one, for copyTo
+     */
+    protected ReplayMemory newEmpty() {
+        return new ReplayMemory(capacity);
+    }
+
+    protected static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    protected static void readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new EOFException("Replay memory ended early.");
+            }
+        }
+    }
+
+    private static void copy(ByteBuffer from, ByteBuffer to) {
+        to.clear();
+        to.put(from.duplicate());
+    }
+
+    private static ByteBuffer slice(ByteBuffer column, int bytes) {
+        ByteBuffer slice = column.duplicate();
+        slice.clear().limit(bytes);
+        return slice;
+    }
+
+    /**
+     * Samples transitions uniformly, with replacement.  The returned batch is reused by the next call.
+     */
+    public Batch sample(int batchSize, Random random) {
+        if (stored == 0) {
+            throw new MancalaException("Replay memory is empty.");
+        }
+        Batch into = batch(batchSize);
+        int size = size();
+        for (int i = 0; i < batchSize; i++) {
+            read(random.nextInt(size), into, i);
+        }
+        return into;
+    }
+
+    /**
+     * @return a reusable batch of the given size, for subclasses that choose their own slots
+     */
+    protected Batch batch(int batchSize) {
+        if (batch == null || batch.size != batchSize) {
+            batch = new Batch(batchSize);
+        }
+        return batch;
+    }
+
+    /**
+     * Copies the transition in a slot into a row of the batch.
+     */
+    protected void read(int slot, Batch into, int row) {
+        int offset = slot * PODS;
+        for (int i = 0; i < PODS; i++) {
+            into.observations.putScalar(row, i, observations.get(offset + i));
+            into.nextObservations.putScalar(row, i, nextObservations.get(offset + i));
+        }
+        into.slots[row] = slot;
+        into.actions[row] = actions.get(slot);
+        into.rewards[row] = rewards.getFloat(slot * Float.BYTES);
+        into.done[row] = done.get(slot) != 0;
+        into.weights[row] = 1;
+    }
+
+    /**
+     * Called once a transition has been written to a slot.
+     */
+    protected void stored(int slot) {
+    }
+
+    private int nextSlot() {
+        return (int) (stored++ % capacity);
+    }
+
+    private void finish(int slot, int action, double reward, boolean isDone) {
+        actions.put(slot, (byte) action);
+        rewards.putFloat(slot * Float.BYTES, (float) reward);
+        done.put(slot, (byte) (isDone ? 1 : 0));
+    }
+
+    /**
+     * A sampled mini-batch, one transition per row.
+     */
+    public static class Batch {
+        final int size;
+        final INDArray observations;
+        final INDArray nextObservations;
+        final int[] slots;
+        final int[] actions;
+        final double[] rewards;
+        final boolean[] done;
+        final double[] weights;
+
+        Batch(int size) {
+            this.size = size;
+            observations = Nd4j.create(size, PODS);
+            nextObservations = Nd4j.create(size, PODS);
+            slots = new int[size];
+            actions = new int[size];
+            rewards = new double[size];
+            done = new boolean[size];
+            weights = new double[size];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public INDArray getObservations() {
+            return observations;
+        }
+
+        public INDArray getNextObservations() {
+            return nextObservations;
+        }
+
+        /**
+         * @return the slot each row was read from
+         */
+        public int[] getSlots() {
+            return slots;
+        }
+
+        public int[] getActions() {
+            return actions;
+        }
+
+        public double[] getRewards() {
+            return rewards;
+        }
+
+        public boolean[] getDone() {
+            return done;
+        }
+
+        /**
+         * @return the importance sampling weight of each row, all 1 for uniform sampling
+         */
+        public double[] getWeights() {
+            return weights;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lock-free queue of transitions from many actor threads to one learner thread.  Slots are
+ * preallocated primitive columns, with the pods of both observations held as bytes, so offering and
+ * draining a transition doesn't allocate.  Producers claim slots with a CAS on the tail and publish
+ * them through a per-slot sequence number, so they never wait for each other or for the consumer; when
+ * the queue is full the transition is dropped and counted instead.  Only one thread may drain.
+ */
+public class TransitionQueue {
+    private static final int PODS = ObservationEncoder.OBSERVATION_SIZE;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final byte[] observations;
+    private final byte[] actions;
+    private final double[] rewards;
+    private final boolean[] done;
+    private final byte[] nextObservations;
+    private final int[] observation = new int[PODS];
+    private final int[] nextObservation = new int[PODS];
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong drained = new AtomicLong();
+
+    /**
+     * Receives drained transitions.  The observation arrays are reused for the next transition.
+     */
+    public interface Handler {
+        void accept(int[] observation, int action, double reward, boolean done, int[] nextObservation);
+    }
+
+    /**
+     * @param capacity the most transitions held, rounded up to a power of two
+     */
+    public TransitionQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new MancalaException("Transition queue capacity must be between 1 and 2^30.");
+        }
+        int rounded = Integer.highestOneBit(capacity);
+        this.capacity = rounded < capacity ? rounded << 1 : rounded;
+        mask = this.capacity - 1;
+        sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        observations = new byte[this.capacity * PODS];
+        actions = new byte[this.capacity];
+        rewards = new double[this.capacity];
+        done = new boolean[this.capacity];
+        nextObservations = new byte[this.capacity * PODS];
+    }
+
+    /**
+     * Adds a transition, from any thread.
+     * @param observation the pebble field the action was taken in
+     * @param nextObservation the pebble field that followed
+     * @return false if the queue was full and the transition was dropped
+     */
+    public boolean offer(int[] observation, int action, double reward, boolean done, int[] nextObservation) {
+        offered.increment();
+        long position = tail.get();
+        int slot;
+        while (true) {
+            slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The consumer hasn't freed this slot yet, so the queue is full.
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        int offset = slot * PODS;
+        for (int i = 0; i < PODS; i++) {
+            observations[offset + i] = (byte) observation[i];
+            nextObservations[offset + i] = (byte) nextObservation[i];
+        }
+        actions[slot] = (byte) action;
+        rewards[slot] = reward;
+        this.done[slot] = done;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to max transitions to the handler, oldest first, from the single consumer thread.
+     * @return the number of transitions drained
+     */
+    public int drain(Handler handler, int max) {
+        int count = 0;
+        while (count < max) {
+            int slot = (int) (head & mask);
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            int offset = slot * PODS;
+            for (int i = 0; i < PODS; i++) {
+                observation[i] = observations[offset + i];
+                nextObservation[i] = nextObservations[offset + i];
+            }
+            int action = actions[slot];
+            double reward = rewards[slot];
+            boolean isDone = done[slot];
+            // Free the slot before handing the transition over; everything has been copied out.
+            sequences.lazySet(slot, head + capacity);
+            head++;
+            count++;
+            handler.accept(observation, action, reward, isDone, nextObservation);
+        }
+        drained.addAndGet(count);
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of transitions waiting to be drained; approximate while actors are offering
+     */
+    public int getDepth() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - drained.get()));
+    }
+
+    public long getOffered() {
+        return offered.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getDrained() {
+        return drained.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d/%d, %d offered, %d drained, %d dropped",
+                getDepth(), capacity, getOffered(), getDrained(), getDropped());
+    }
+}
@@ -0,0 +1,224 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import lombok.Builder;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Optional;
+
+/**
+ * Plays the same game as GameMDP on many boards in lockstep.  Every step takes one action per board,
+ * makes all of the opponent's replies through one BatchedOpponent call per round of moves, and returns
+ * the observations, rewards and done flags of every board as batches.  A board whose episode ends is
+ * reset straight away, so its row of the next observations is the start of a new game; the done flag
+ * tells the two apart.
+ *
+ * Rewards, illegal moves and tablebase endings follow GameMDP.  The arrays returned are reused by the
+ * next step, and it is not thread safe.
+ */
+public class VectorizedGameMDP {
+    private static final int ILLEGAL = Integer.MIN_VALUE;
+
+    private final Player player;
+    private final Player opponentPlayer;
+    private final BatchedOpponent opponent;
+    private final int illegalMoveReward;
+    private final boolean maskIllegalMoves;
+    private final EndgameTablebase tablebase;
+    private final boolean leadRewards;
+    private final GameBoard[] boards;
+    private final ObservationEncoder encoder;
+    private final StepReply reply;
+    private final int[] waiting;
+    private final int[] moves;
+    private final int[] scores;
+    private long steps;
+    private long episodes;
+
+    /**
+     * @param environments the number of boards played in lockstep, 16 by default
+     * @param opponent chooses the opponent's moves on every board
+     */
+    @Builder
+    private VectorizedGameMDP(@NonNull Player player, @NonNull BatchedOpponent opponent, Integer environments,
+                              @NonNull Integer illegalMoveReward, Boolean maskIllegalMoves,
+                              EndgameTablebase tablebase, Boolean leadRewards) {
+        if (player == Player.NOBODY) {
+            throw new MancalaException("Player cannot be nobody.");
+        }
+        this.player = player;
+        this.opponentPlayer = player == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+        this.opponent = opponent;
+        this.illegalMoveReward = illegalMoveReward;
+        this.maskIllegalMoves = Optional.ofNullable(maskIllegalMoves).orElse(false);
+        this.tablebase = tablebase;
+        this.leadRewards = tablebase != null || Optional.ofNullable(leadRewards).orElse(false);
+
+        int size = Optional.ofNullable(environments).orElse(16);
+        if (size < 1) {
+            throw new MancalaException("There must be at least one environment.");
+        }
+        boards = new GameBoard[size];
+        for (int i = 0; i < size; i++) {
+            boards[i] = new GameBoard();
+        }
+        encoder = new ObservationEncoder(size);
+        reply = new StepReply(encoder.getBatch(), size);
+        waiting = new int[size];
+        moves = new int[size];
+        scores = new int[size];
+    }
+
+    public int getEnvironments() {
+        return boards.length;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public boolean isMaskingIllegalMoves() {
+        return maskIllegalMoves;
+    }
+
+    public GameBoard getGameBoard(int environment) {
+        return boards[environment];
+    }
+
+    /**
+     * @return the legal actions on a board, as an ActionMask
+     */
+    public int legalActions(int environment) {
+        return boards[environment].validMoveMask(player);
+    }
+
+    /**
+     * @return the number of steps taken; each one is a transition on every board
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Starts a new game on every board.
+     * @return the observations, one row per board, reused by the next step
+     */
+    public INDArray reset() {
+        for (int i = 0; i < boards.length; i++) {
+            boards[i].resetGameBoard();
+            encoder.encode(boards[i], player, reply.observations, i);
+        }
+        return reply.observations;
+    }
+
+    /**
+     * @param actions one zero based action per board
+     * @return the result on every board, reused by the next step
+     */
+    public StepReply step(int[] actions) {
+        if (actions.length != boards.length) {
+            throw new MancalaException("Expected " + boards.length + " actions, got " + actions.length);
+        }
+
+        int count = 0;
+        for (int i = 0; i < boards.length; i++) {
+            GameBoard board = boards[i];
+            scores[i] = score(board);
+            boolean playAgain = board.executeMove(player, actions[i] + 1);
+            reply.done[i] = false;
+            if (board.playerPoints(player) == -1) {
+                scores[i] = ILLEGAL;
+                reply.done[i] = true;
+                continue;
+            }
+            if (playAgain) {
+                continue;
+            }
+            if (board.isGameOver(opponentPlayer)) {
+                reply.done[i] = true;
+                continue;
+            }
+            waiting[count++] = i;
+        }
+
+        // The opponent moves on all of its boards at once, and again on the boards where it earned an
+        // extra turn, until every board is back to the player.
+        while (count > 0) {
+            opponent.chooseMoves(boards, waiting, count, moves);
+            int stillMoving = 0;
+            for (int j = 0; j < count; j++) {
+                int i = waiting[j];
+                if (boards[i].executeMove(opponentPlayer, moves[j])) {
+                    if (boards[i].isGameOver(opponentPlayer)) {
+                        reply.done[i] = true;
+                    } else {
+                        waiting[stillMoving++] = i;
+                    }
+                }
+            }
+            count = stillMoving;
+        }
+
+        for (int i = 0; i < boards.length; i++) {
+            GameBoard board = boards[i];
+            reply.rewards[i] = scores[i] == ILLEGAL ? illegalMoveReward : score(board) - scores[i];
+            if (!reply.done[i]) {
+                reply.done[i] = board.isGameOver(player);
+                if (!reply.done[i] && tablebase != null && tablebase.contains(board)) {
+                    reply.rewards[i] += tablebase.margin(board, player);
+                    reply.done[i] = true;
+                }
+            }
+            if (reply.done[i]) {
+                board.resetGameBoard();
+                episodes++;
+            }
+            encoder.encode(board, player, reply.observations, i);
+        }
+        steps++;
+        return reply;
+    }
+
+    private int score(GameBoard board) {
+        return leadRewards ? board.pointsLead(player) : board.playerPoints(player);
+    }
+
+    /**
+     * The result of one step on every board.
+     */
+    public static class StepReply {
+        private final INDArray observations;
+        private final double[] rewards;
+        private final boolean[] done;
+
+        private StepReply(INDArray observations, int environments) {
+            this.observations = observations;
+            this.rewards = new double[environments];
+            this.done = new boolean[environments];
+        }
+
+        /**
+         * @return the next observation of every board, one row each; a board that is done has already
+         * been reset, so its row is the start of its next game
+         */
+        public INDArray getObservations() {
+            return observations;
+        }
+
+        public double[] getRewards() {
+            return rewards;
+        }
+
+        public boolean[] getDone() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import lombok.NonNull;
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.mdp.MDP;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Random;
+
+/**
+ * Q learning that collects experience from a VectorizedGameMDP.  Every training step picks the actions
+ * for all of the boards with one forward pass, steps them together and stores one transition per board,
+ * then fits one batch, so experience is collected K times faster per step and per forward pass than
+ * with a single GameMDP.
+ *
+ * The rl4j loop still drives training: the MDP it is given only supplies the shapes, and is never
+ * stepped, so every epoch runs for maxEpochStep steps and maxStep counts lockstep steps.  Exploration
+ * follows the usual epsilon schedule, over the legal moves when the environment masks illegal ones.
+ */
+public class VectorizedQLearningDiscreteDense extends MaskedQLearningDiscreteDense {
+    private final VectorizedGameMDP environment;
+    private final int[] actions;
+    private INDArray observations;
+    private long transitions;
+
+    public VectorizedQLearningDiscreteDense(MDP<GameObservation, Integer, DiscreteSpace> mdp,
+                                            @NonNull VectorizedGameMDP environment, IDQN dqn,
+                                            QLConfiguration conf, DataManager dataManager) {
+        this(mdp, environment, dqn, conf, dataManager, null);
+    }
+
+    /**
+     * @param replayMemory where transitions are kept; when null, rl4j's replay memory is used
+     */
+    public VectorizedQLearningDiscreteDense(MDP<GameObservation, Integer, DiscreteSpace> mdp,
+                                            @NonNull VectorizedGameMDP environment, IDQN dqn,
+                                            QLConfiguration conf, DataManager dataManager, ReplayMemory replayMemory) {
+        super(mdp, dqn, conf, dataManager, replayMemory);
+        this.environment = environment;
+        actions = new int[environment.getEnvironments()];
+    }
+
+    /**
+     * @return the number of transitions stored so far
+     */
+    public long getTransitions() {
+        return transitions;
+    }
+
+    @Override
+    protected QLStepReturn<GameObservation> trainStep(GameObservation obs) {
+        if (observations == null) {
+            observations = environment.reset().dup();
+        }
+
+        int size = actions.length;
+        INDArray qValues = getCurrentDQN().output(observations);
+        float epsilon = getEgPolicy().getEpsilon();
+        Random random = getRandom();
+        double maxQ = 0;
+        for (int i = 0; i < size; i++) {
+            int mask = environment.isMaskingIllegalMoves() ? environment.legalActions(i) : ActionMask.ALL;
+            maxQ += ActionMask.maxValue(qValues, i, mask);
+            actions[i] = random.nextFloat() < epsilon
+                    ? GameBoard.randomMoveBit(mask, random)
+                    : ActionMask.bestAction(qValues, i, mask);
+        }
+
+        VectorizedGameMDP.StepReply reply = environment.step(actions);
+        // Without a ReplayMemory both arrays are kept by the transitions, one row each, so they are
+        // copied once per step.
+        INDArray nextObservations = getReplayMemory() == null ? reply.getObservations().dup() : reply.getObservations();
+        double rewardFactor = getConfiguration().getRewardFactor();
+        double reward = 0;
+        for (int i = 0; i < size; i++) {
+            double rowReward = reply.getRewards()[i] * rewardFactor;
+            reward += reply.getRewards()[i];
+            storeTransition(observations, nextObservations, i, actions[i], rowReward, reply.getDone()[i]);
+        }
+        if (getReplayMemory() == null) {
+            observations = nextObservations;
+        } else {
+            observations.assign(nextObservations);
+        }
+        transitions += size;
+
+        if (getStepCounter() > getConfiguration().getUpdateStart()
+                && transitions >= getConfiguration().getBatchSize()) {
+            fitBatch();
+        }
+
+        return new QLStepReturn<>(maxQ / size, getCurrentDQN().getLatestScore(),
+                new StepReply<>(obs, reward / size, false, null));
+    }
+}
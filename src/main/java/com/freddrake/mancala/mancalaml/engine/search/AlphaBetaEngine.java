@@ -0,0 +1,100 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Iterative deepening alpha-beta search on the calling thread; see SearchWorker for the search
+ * itself.  The search stops once a move's time budget runs out and plays the best move of the last
+ * completed iteration.  It is not thread safe.
+ */
+@Slf4j
+public class AlphaBetaEngine extends AbstractGamingEngine {
+    private final long moveTimeNanos;
+    private final SearchWorker worker;
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    private int lastDepth;
+    private int lastScore;
+    private long lastNodes;
+    private long lastNanos;
+
+    /**
+     * @param maxDepth the deepest iteration to search, in moves, 20 by default
+     * @param moveTimeMillis the time budget per move, 100ms by default; 0 searches to maxDepth
+     * @param transpositionTableSize entries in a transposition table kept between moves; 0 or null for none
+     * @param tablebase exact values for endgame positions, which then end the search there; optional
+     */
+    @Builder
+    private AlphaBetaEngine(@NonNull Player player, Integer maxDepth, Long moveTimeMillis,
+                            Integer transpositionTableSize, EndgameTablebase tablebase) {
+        if (player == Player.NOBODY) {
+            throw new MancalaException("Player cannot be nobody.");
+        }
+        int depth = Optional.ofNullable(maxDepth).orElse(20);
+        if (depth < 1) {
+            throw new MancalaException("Search depth must be at least 1.");
+        }
+        this.player = player;
+        this.moveTimeNanos = TimeUnit.MILLISECONDS.toNanos(Optional.ofNullable(moveTimeMillis).orElse(100L));
+        TranspositionTable table = transpositionTableSize != null && transpositionTableSize > 0
+                ? new TranspositionTable(transpositionTableSize) : null;
+        worker = new SearchWorker(depth, table, tablebase);
+    }
+
+    @Override
+    public int chooseMove(GameBoard gameBoard) {
+        if (gameBoard.validMoveMask(player) == 0) {
+            throw new MancalaException("Cannot play a move");
+        }
+
+        long start = System.nanoTime();
+        stop.set(false);
+        worker.search(gameBoard, player, 1, moveTimeNanos > 0 ? start + moveTimeNanos : 0, stop, 0);
+
+        lastDepth = worker.completedDepth;
+        lastScore = worker.score;
+        lastNodes = worker.nodes;
+        lastNanos = System.nanoTime() - start;
+        log.debug("{} plays {}: depth {}, score {}, {} nodes in {}us", player, worker.bestMove + 1, lastDepth,
+                lastScore, lastNodes, lastNanos / 1000);
+        return worker.bestMove + 1;
+    }
+
+    @Override
+    public boolean isGameOver(GameBoard gameBoard) {
+        return gameBoard.isGameOver(player);
+    }
+
+    /**
+     * @return the depth of the last completed iteration of the last search
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * @return the score of the last search's chosen move, from this engine's point of view
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    public double getLastNodesPerSecond() {
+        return lastNanos == 0 ? 0 : lastNodes * 1e9 / lastNanos;
+    }
+}
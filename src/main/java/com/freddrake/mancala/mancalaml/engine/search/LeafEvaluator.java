@@ -0,0 +1,17 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+
+/**
+ * Estimates how good a position is for the player to move, for Monte Carlo tree search leaves.
+ * Each search thread gets its own evaluator, so implementations don't need to be thread safe.
+ */
+public interface LeafEvaluator {
+    /**
+     * @param board the position, which the evaluator may play on and leave changed
+     * @param sideToMove the player whose turn it is
+     * @return a value between -1 (a certain loss for sideToMove) and 1 (a certain win)
+     */
+    double evaluate(GameBoard board, Player sideToMove);
+}
@@ -0,0 +1,347 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.BoardSnapshot;
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Monte Carlo tree search.  Every simulation walks down the tree picking children by UCT, expands the
+ * leaf it reaches, scores it with a LeafEvaluator (a random playout by default) and backs the result
+ * up the path.  Several threads run simulations on one shared tree; each child they pass through is
+ * given a virtual loss until its result is backed up, so concurrent simulations spread over different
+ * lines instead of piling into the same one.  The move played is the root's most visited child.
+ *
+ * The tree is a preallocated node pool of parallel primitive arrays, indexed by node.  A node's
+ * children are allocated together, so a node only needs the index of its first child and how many
+ * there are.  Expansion is claimed with a compare-and-set, and visits and values are updated
+ * atomically, so the threads never lock.  When the pool is full the tree stops growing and
+ * simulations carry on from its leaves.
+ *
+ * A move that ends in the mover's points pile gives them another turn, so the side to move is
+ * tracked while walking down and each node's value is kept from the point of view of the player who
+ * made the move leading to it.  The calling thread runs simulations as well, so threads - 1 helpers
+ * are kept in a pool for the engine's lifetime; close() shuts them down.  The engine itself is not
+ * thread safe.
+ */
+@Slf4j
+public class MctsEngine extends AbstractGamingEngine implements AutoCloseable {
+    /** Values are kept in fixed point, so they can be summed with an AtomicLongArray. */
+    private static final double SCALE = 1 << 20;
+    private static final int PODS = 6;
+    private static final int MAX_PATH = 256;
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private final long simulations;
+    private final long moveTimeNanos;
+    private final double explorationConstant;
+    private final int capacity;
+    private final Simulator[] simulators;
+    private final Future<?>[] helpers;
+    private final ExecutorService executor;
+
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray valueSums;
+    private final AtomicIntegerArray states;
+    private final int[] firstChild;
+    private final byte[] childCount;
+    private final byte[] moves;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+
+    private final BoardSnapshot root = new BoardSnapshot();
+    private long deadline;
+
+    private long lastSimulations;
+    private int lastNodes;
+    private double lastScore;
+    private long lastNanos;
+
+    /**
+     * @param threads the number of threads running simulations, one per core by default
+     * @param simulations the simulation budget per move, 10,000 by default; 0 only stops on time
+     * @param moveTimeMillis the time budget per move; 0 or null only stops on the simulation budget
+     * @param nodePoolSize the most nodes in the tree, 2^20 by default
+     * @param explorationConstant the UCT exploration weight, for values between -1 and 1; 1.4 by default
+     * @param leafEvaluator creates each thread's evaluator; random playouts by default
+     * @param seed seeds the default random playouts, so single threaded searches are repeatable
+     */
+    @Builder
+    private MctsEngine(@NonNull Player player, Integer threads, Long simulations, Long moveTimeMillis,
+                       Integer nodePoolSize, Double explorationConstant, Supplier<LeafEvaluator> leafEvaluator,
+                       Long seed) {
+        if (player == Player.NOBODY) {
+            throw new MancalaException("Player cannot be nobody.");
+        }
+        this.player = player;
+        long budget = Optional.ofNullable(simulations).orElse(10_000L);
+        this.moveTimeNanos = TimeUnit.MILLISECONDS.toNanos(Optional.ofNullable(moveTimeMillis).orElse(0L));
+        if (budget <= 0 && moveTimeNanos <= 0) {
+            throw new MancalaException("Either a simulation or a time budget is required.");
+        }
+        this.simulations = budget > 0 ? budget : Long.MAX_VALUE;
+        this.explorationConstant = Optional.ofNullable(explorationConstant).orElse(1.4);
+        capacity = Optional.ofNullable(nodePoolSize).orElse(1 << 20);
+        if (capacity < 1 + PODS) {
+            throw new MancalaException("The node pool must hold at least " + (1 + PODS) + " nodes.");
+        }
+
+        visits = new AtomicIntegerArray(capacity);
+        valueSums = new AtomicLongArray(capacity);
+        states = new AtomicIntegerArray(capacity);
+        firstChild = new int[capacity];
+        childCount = new byte[capacity];
+        moves = new byte[capacity];
+
+        SplittableRandom seeds = seed == null ? new SplittableRandom() : new SplittableRandom(seed);
+        Supplier<LeafEvaluator> evaluators = Optional.ofNullable(leafEvaluator)
+                .orElse(() -> new RandomPlayoutEvaluator(seeds.split()));
+        int threadCount = Optional.ofNullable(threads).filter(t -> t > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        simulators = new Simulator[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            simulators[i] = new Simulator(evaluators.get());
+        }
+        helpers = new Future<?>[threadCount - 1];
+        executor = threadCount == 1 ? null : Executors.newFixedThreadPool(threadCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "mcts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int chooseMove(GameBoard gameBoard) {
+        int validMoves = gameBoard.validMoveMask(player);
+        if (validMoves == 0) {
+            throw new MancalaException("Cannot play a move");
+        }
+        if (Integer.bitCount(validMoves) == 1) {
+            lastSimulations = 0;
+            lastNodes = 0;
+            return Integer.numberOfTrailingZeros(validMoves) + 1;
+        }
+
+        long start = System.nanoTime();
+        deadline = moveTimeNanos > 0 ? start + moveTimeNanos : Long.MAX_VALUE;
+        gameBoard.snapshot(root);
+        initNode(0, 0);
+        nodeCount.set(1);
+        started.set(0);
+
+        for (int i = 1; i < simulators.length; i++) {
+            helpers[i - 1] = executor.submit(simulators[i]::run);
+        }
+        simulators[0].run();
+        awaitHelpers();
+
+        int best = -1;
+        for (int child = firstChild[0], end = child + childCount[0]; child < end; child++) {
+            if (best == -1 || visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+        lastSimulations = Math.min(started.get(), simulations);
+        lastNodes = Math.min(nodeCount.get(), capacity);
+        lastScore = visits.get(best) == 0 ? 0 : valueSums.get(best) / SCALE / visits.get(best);
+        lastNanos = System.nanoTime() - start;
+        log.debug("{} plays {}: value {}, {} simulations, {} nodes in {}us on {} threads", player, moves[best] + 1,
+                String.format("%.3f", lastScore), lastSimulations, lastNodes, lastNanos / 1000, simulators.length);
+        return moves[best] + 1;
+    }
+
+    @Override
+    public boolean isGameOver(GameBoard gameBoard) {
+        return gameBoard.isGameOver(player);
+    }
+
+    public int getThreads() {
+        return simulators.length;
+    }
+
+    /**
+     * @return the simulations run by all threads together for the last move
+     */
+    public long getLastSimulations() {
+        return lastSimulations;
+    }
+
+    public double getLastSimulationsPerSecond() {
+        return lastNanos == 0 ? 0 : lastSimulations * 1e9 / lastNanos;
+    }
+
+    /**
+     * @return the nodes in the tree after the last search
+     */
+    public int getLastNodes() {
+        return lastNodes;
+    }
+
+    /**
+     * @return the mean value of the chosen move, from -1 (always lost) to 1 (always won)
+     */
+    public double getLastScore() {
+        return lastScore;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void initNode(int node, int move) {
+        visits.set(node, 0);
+        valueSums.set(node, 0);
+        moves[node] = (byte) move;
+        childCount[node] = 0;
+        states.set(node, UNEXPANDED);
+    }
+
+    /**
+     * Gives the node one child per valid move.  Only the thread that wins the compare-and-set expands
+     * it; the children are written before the node is published as expanded, so threads that see
+     * EXPANDED also see them.
+     * @return false if another thread is expanding the node, or the pool is full
+     */
+    private boolean expand(int node, int validMoves) {
+        if (!states.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        int count = Integer.bitCount(validMoves);
+        if (nodeCount.get() + count > capacity) {
+            states.set(node, UNEXPANDED);
+            return false;
+        }
+        int first = nodeCount.getAndAdd(count);
+        if (first + count > capacity) {
+            states.set(node, UNEXPANDED);
+            return false;
+        }
+        for (int child = first; validMoves != 0; child++, validMoves &= validMoves - 1) {
+            initNode(child, Integer.numberOfTrailingZeros(validMoves));
+        }
+        firstChild[node] = first;
+        childCount[node] = (byte) count;
+        states.set(node, EXPANDED);
+        return true;
+    }
+
+    /**
+     * @return the child with the best upper confidence bound; unvisited children come first
+     */
+    private int select(int node) {
+        double logVisits = Math.log(Math.max(1, visits.get(node)));
+        int best = -1;
+        double bestBound = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild[node], end = child + childCount[node]; child < end; child++) {
+            int childVisits = visits.get(child);
+            if (childVisits == 0) {
+                return child;
+            }
+            double bound = valueSums.get(child) / SCALE / childVisits
+                    + explorationConstant * Math.sqrt(logVisits / childVisits);
+            if (bound > bestBound) {
+                bestBound = bound;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private void awaitHelpers() {
+        try {
+            for (Future<?> helper : helpers) {
+                helper.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MancalaException(e);
+        } catch (ExecutionException e) {
+            throw new MancalaException(e.getCause());
+        }
+    }
+
+    /**
+     * One thread's simulations, with its own board, path and evaluator, so running them doesn't
+     * allocate.
+     */
+    private class Simulator {
+        private final LeafEvaluator evaluator;
+        private final GameBoard board = new GameBoard();
+        private final int[] path = new int[MAX_PATH];
+        private final Player[] movers = new Player[MAX_PATH];
+
+        Simulator(LeafEvaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        void run() {
+            while (started.getAndIncrement() < simulations && System.nanoTime() < deadline) {
+                simulate();
+            }
+        }
+
+        private void simulate() {
+            board.restore(root);
+            Player side = player;
+            int node = 0;
+            int length = 0;
+            visits.incrementAndGet(0);
+
+            int validMoves = board.validMoveMask(side);
+            while (validMoves != 0 && length < MAX_PATH) {
+                int state = states.get(node);
+                if (state != EXPANDED) {
+                    // Leaves are expanded on their second visit, so single playouts don't grow the tree.
+                    if (state == EXPANDING || (node != 0 && visits.get(node) < 2) || !expand(node, validMoves)) {
+                        break;
+                    }
+                }
+                node = select(node);
+                visits.incrementAndGet(node);
+                valueSums.addAndGet(node, (long) -SCALE);
+                path[length] = node;
+                movers[length++] = side;
+                if (!board.executeMove(side, moves[node] + 1)) {
+                    side = SearchWorker.opponent(side);
+                }
+                validMoves = board.validMoveMask(side);
+            }
+
+            double value;
+            if (validMoves == 0) {
+                Player leader = board.getPointsLeader();
+                value = leader == Player.NOBODY ? 0 : leader == side ? 1 : -1;
+            } else {
+                value = evaluator.evaluate(board, side);
+            }
+
+            // Replace each virtual loss with the real result, from the point of view of that node's mover.
+            for (int i = 0; i < length; i++) {
+                double moverValue = movers[i] == side ? value : -value;
+                valueSums.addAndGet(path[i], (long) (SCALE + moverValue * SCALE));
+            }
+        }
+    }
+}
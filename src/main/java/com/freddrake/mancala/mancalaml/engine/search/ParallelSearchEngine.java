@@ -0,0 +1,175 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Alpha-beta search over many threads, using Lazy SMP: every thread runs its own iterative deepening
+ * search of the same position, and they only cooperate through a shared lock-free transposition
+ * table.  Helper threads start one iteration deeper on alternate threads and rotate their root moves,
+ * so they spread over different parts of the tree and fill the table with results the others can cut
+ * off with.  The first thread to finish stops the rest, and the move comes from whichever thread
+ * completed the deepest iteration.
+ *
+ * The calling thread searches as well, so threads - 1 helpers are kept in a pool for the engine's
+ * lifetime; close() shuts them down.  The engine itself is not thread safe.
+ */
+@Slf4j
+public class ParallelSearchEngine extends AbstractGamingEngine implements AutoCloseable {
+    private final long moveTimeNanos;
+    private final TranspositionTable table;
+    private final SearchWorker[] workers;
+    private final Future<?>[] helpers;
+    private final ExecutorService executor;
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    private int lastDepth;
+    private int lastScore;
+    private long lastNodes;
+    private long lastNanos;
+
+    /**
+     * @param threads the number of search threads, one per core by default
+     * @param maxDepth the deepest iteration to search, in moves, 24 by default
+     * @param moveTimeMillis the time budget per move, 100ms by default; 0 searches to maxDepth
+     * @param transpositionTableSize entries in the shared transposition table, 2^20 (16MB) by default
+     * @param tablebase exact values for endgame positions, shared by every thread; optional
+     */
+    @Builder
+    private ParallelSearchEngine(@NonNull Player player, Integer threads, Integer maxDepth, Long moveTimeMillis,
+                                 Integer transpositionTableSize, EndgameTablebase tablebase) {
+        if (player == Player.NOBODY) {
+            throw new MancalaException("Player cannot be nobody.");
+        }
+        int depth = Optional.ofNullable(maxDepth).orElse(24);
+        if (depth < 1) {
+            throw new MancalaException("Search depth must be at least 1.");
+        }
+        int threadCount = Optional.ofNullable(threads).filter(t -> t > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        this.player = player;
+        this.moveTimeNanos = TimeUnit.MILLISECONDS.toNanos(Optional.ofNullable(moveTimeMillis).orElse(100L));
+        table = new TranspositionTable(Optional.ofNullable(transpositionTableSize).orElse(1 << 20));
+
+        workers = new SearchWorker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new SearchWorker(depth, table, tablebase);
+        }
+        helpers = new Future<?>[threadCount - 1];
+        executor = threadCount == 1 ? null : Executors.newFixedThreadPool(threadCount - 1, runnable -> {
+            Thread thread = new Thread(runnable, "parallel-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int chooseMove(GameBoard gameBoard) {
+        if (gameBoard.validMoveMask(player) == 0) {
+            throw new MancalaException("Cannot play a move");
+        }
+
+        long start = System.nanoTime();
+        long deadline = moveTimeNanos > 0 ? start + moveTimeNanos : 0;
+        stop.set(false);
+        for (int i = 1; i < workers.length; i++) {
+            SearchWorker worker = workers[i];
+            int startDepth = 1 + (i & 1);
+            int rotation = i;
+            helpers[i - 1] = executor.submit(() -> worker.search(gameBoard, player, startDepth, deadline, stop, rotation));
+        }
+        workers[0].search(gameBoard, player, 1, deadline, stop, 0);
+        stop.set(true);
+        awaitHelpers();
+
+        SearchWorker best = workers[0];
+        lastNodes = 0;
+        for (SearchWorker worker : workers) {
+            lastNodes += worker.nodes;
+            if (worker.completedDepth > best.completedDepth) {
+                best = worker;
+            }
+        }
+        lastDepth = best.completedDepth;
+        lastScore = best.score;
+        lastNanos = System.nanoTime() - start;
+        log.debug("{} plays {}: depth {}, score {}, {} nodes in {}us on {} threads", player, best.bestMove + 1,
+                lastDepth, lastScore, lastNodes, lastNanos / 1000, workers.length);
+        return best.bestMove + 1;
+    }
+
+    @Override
+    public boolean isGameOver(GameBoard gameBoard) {
+        return gameBoard.isGameOver(player);
+    }
+
+    public int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * @return the deepest iteration completed by any thread in the last search
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * @return the score of the last search's chosen move, from this engine's point of view
+     */
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * @return the nodes searched by all threads together in the last search
+     */
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    public double getLastNodesPerSecond() {
+        return lastNanos == 0 ? 0 : lastNodes * 1e9 / lastNanos;
+    }
+
+    /**
+     * Forgets every position searched so far, for example between unrelated games.
+     */
+    public void clearTranspositionTable() {
+        table.clear();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void awaitHelpers() {
+        try {
+            for (Future<?> helper : helpers) {
+                helper.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MancalaException(e);
+        } catch (ExecutionException e) {
+            throw new MancalaException(e.getCause());
+        }
+    }
+}
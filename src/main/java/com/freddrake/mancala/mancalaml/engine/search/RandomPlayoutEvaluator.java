@@ -0,0 +1,31 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays random legal moves until the game is over, and scores the result: 1 for a win, 0 for a tie
+ * and -1 for a loss.  Moves are drawn from the valid move mask, so a playout doesn't allocate.
+ */
+public class RandomPlayoutEvaluator implements LeafEvaluator {
+    private final SplittableRandom random;
+
+    public RandomPlayoutEvaluator(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public double evaluate(GameBoard board, Player sideToMove) {
+        Player side = sideToMove;
+        for (int validMoves = board.validMoveMask(side); validMoves != 0; validMoves = board.validMoveMask(side)) {
+            if (!board.executeMove(side, GameBoard.randomMoveBit(validMoves, random) + 1)) {
+                side = SearchWorker.opponent(side);
+            }
+        }
+
+        Player leader = board.getPointsLeader();
+        return leader == Player.NOBODY ? 0 : leader == sideToMove ? 1 : -1;
+    }
+}
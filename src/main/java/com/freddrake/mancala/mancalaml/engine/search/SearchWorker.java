@@ -0,0 +1,289 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.EXACT;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.LOWER_BOUND;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.MISS;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.NO_MOVE;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.UPPER_BOUND;
+
+/**
+ * One thread's iterative deepening alpha-beta search, in negamax form.  A move that ends in the
+ * mover's points pile gives them another turn, so that child is searched from the same side's point
+ * of view and its score is not negated.  Depth counts moves, not turns.
+ *
+ * Positions at the search horizon are scored by the points difference; finished games score
+ * WIN_SCORE plus the difference, so any forced win beats any unfinished line.  Moves are ordered with
+ * the transposition table's move first (or the previous iteration's best at the root, or the ply's
+ * killer move), then moves that earn another turn, then pods closest to the points pile.
+ *
+ * With an endgame tablebase, positions with few enough pebbles left are scored exactly from the
+ * table, like finished games, instead of being searched.
+ *
+ * Moves are made and unmade on a single board, whose undo stack is only grown by the first search,
+ * so searching doesn't allocate.  The transposition table
+ * is optional and may be shared with other workers; everything else belongs to the one thread
+ * running the search.
+ */
+final class SearchWorker {
+    static final int WIN_SCORE = 100_000;
+    private static final int INFINITY = 1_000_000;
+    private static final int PODS = 6;
+    private static final int CLOCK_CHECK_NODES = 1024;
+
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final EndgameTablebase tablebase;
+    private final GameBoard board = new GameBoard();
+    private final int[] pods = new int[PODS * 2];
+    private final int[][] moveOrder;
+    private final int[] killers;
+
+    private AtomicBoolean stop;
+    private long deadline;
+    private boolean stopped;
+    private int rootRotation;
+    private int rootScore;
+
+    long nodes;
+    int completedDepth;
+    int bestMove;
+    int score;
+
+    SearchWorker(int maxDepth, TranspositionTable table, EndgameTablebase tablebase) {
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.tablebase = tablebase;
+        moveOrder = new int[maxDepth + 1][PODS];
+        killers = new int[maxDepth + 1];
+    }
+
+    /**
+     * Searches deeper and deeper until maxDepth is done, the outcome is decided, the deadline passes
+     * or another worker raises the stop flag.  The result of the last completed iteration is left in
+     * completedDepth, bestMove and score.  Finishing, or running out of time, raises the stop flag.
+     * @param root the position to search; it is only read
+     * @param startDepth the first depth to search, so that parallel workers can be staggered
+     * @param deadline the System.nanoTime() to stop at, or 0 for no time limit
+     * @param rootRotation how far to rotate the root move order, so parallel workers diverge
+     */
+    void search(GameBoard root, Player side, int startDepth, long deadline, AtomicBoolean stop, int rootRotation) {
+        this.stop = stop;
+        this.deadline = deadline;
+        this.rootRotation = rootRotation;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        score = 0;
+        Arrays.fill(killers, NO_MOVE);
+
+        root.copyInto(board);
+        int validMoves = board.validMoveMask(side);
+        bestMove = Integer.numberOfTrailingZeros(validMoves);
+        if (Integer.bitCount(validMoves) > 1) {
+            for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+                int move = searchRoot(board, side, depth);
+                if (stopped) {
+                    return;
+                }
+                bestMove = move;
+                completedDepth = depth;
+                score = rootScore;
+                if (Math.abs(rootScore) >= WIN_SCORE) {
+                    // The game's outcome is already decided; searching deeper won't change the move.
+                    break;
+                }
+            }
+        }
+        stop.set(true);
+    }
+
+    private int searchRoot(GameBoard board, Player side, int depth) {
+        int count = orderMoves(board, side, 0, bestMove);
+        if (rootRotation > 0 && count > 2) {
+            // Keep the previous best first and rotate the rest.
+            rotate(moveOrder[0], 1, count, rootRotation % (count - 1));
+        }
+
+        int alpha = -INFINITY;
+        int best = moveOrder[0][0];
+        for (int i = 0; i < count; i++) {
+            int move = moveOrder[0][i];
+            int moveScore = searchMove(board, side, move, depth, alpha, INFINITY, 0);
+            if (stopped) {
+                return best;
+            }
+            if (moveScore > alpha) {
+                alpha = moveScore;
+                best = move;
+            }
+        }
+        rootScore = alpha;
+        return best;
+    }
+
+    /**
+     * Makes a move, searches the result and unmakes it again.
+     * @return the score of the move from the mover's point of view
+     */
+    private int searchMove(GameBoard board, Player side, int move, int depth, int alpha, int beta, int ply) {
+        int moveScore = board.makeMove(side, move + 1)
+                ? negamax(board, side, depth - 1, alpha, beta, ply + 1)
+                : -negamax(board, opponent(side), depth - 1, -beta, -alpha, ply + 1);
+        board.unmakeMove();
+        return moveScore;
+    }
+
+    private int negamax(GameBoard board, Player side, int depth, int alpha, int beta, int ply) {
+        if (++nodes % CLOCK_CHECK_NODES == 0 && shouldStop()) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        int validMoves = board.validMoveMask(side);
+        if (validMoves == 0) {
+            return finalScore(board, side);
+        }
+        if (tablebase != null && inTablebase(board, side)) {
+            return outcomeScore(board.playerPoints(side) - board.playerPoints(opponent(side)) + tablebase.margin(pods));
+        }
+        if (depth == 0) {
+            return board.playerPoints(side) - board.playerPoints(opponent(side));
+        }
+
+        int preferred = killers[ply];
+        long key = 0;
+        if (table != null) {
+            key = board.positionHash(side);
+            long entry = table.probe(key);
+            if (entry != MISS) {
+                if (TranspositionTable.move(entry) != NO_MOVE) {
+                    preferred = TranspositionTable.move(entry);
+                }
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int stored = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == EXACT || (bound == LOWER_BOUND && stored >= beta)
+                            || (bound == UPPER_BOUND && stored <= alpha)) {
+                        return stored;
+                    }
+                }
+            }
+        }
+
+        int alphaOriginal = alpha;
+        int count = orderMoves(board, side, ply, preferred);
+        int best = -INFINITY;
+        int bestMoveHere = NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int move = moveOrder[ply][i];
+            int moveScore = searchMove(board, side, move, depth, alpha, beta, ply);
+            if (stopped) {
+                return 0;
+            }
+            if (moveScore > best) {
+                best = moveScore;
+                bestMoveHere = move;
+            }
+            if (moveScore > alpha) {
+                alpha = moveScore;
+            }
+            if (alpha >= beta) {
+                killers[ply] = move;
+                break;
+            }
+        }
+
+        if (table != null) {
+            int bound = best <= alphaOriginal ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+            table.store(key, depth, bound, bestMoveHere, best);
+        }
+        return best;
+    }
+
+    private boolean shouldStop() {
+        if (stop.get()) {
+            return true;
+        }
+        if (deadline != 0 && System.nanoTime() > deadline) {
+            stop.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    static int finalScore(GameBoard board, Player side) {
+        return outcomeScore(board.playerPoints(side) - board.playerPoints(opponent(side)));
+    }
+
+    private static int outcomeScore(int difference) {
+        return difference > 0 ? WIN_SCORE + difference : difference < 0 ? -WIN_SCORE + difference : 0;
+    }
+
+    /**
+     * Fills pods with the side's pebble field, and checks whether it has few enough pebbles.
+     */
+    private boolean inTablebase(GameBoard board, Player side) {
+        board.pebbleField(side, pods);
+        int pebbles = 0;
+        for (int pod : pods) {
+            pebbles += pod;
+        }
+        return pebbles <= tablebase.getMaxPebbles();
+    }
+
+    static Player opponent(Player side) {
+        return side == Player.PLAYER_ONE ? Player.PLAYER_TWO : Player.PLAYER_ONE;
+    }
+
+    /**
+     * Fills the ply's move order with the side's legal moves, most promising first.
+     * @return the number of legal moves
+     */
+    private int orderMoves(GameBoard board, Player side, int ply, int preferred) {
+        board.pebbleField(side, pods);
+        int[] order = moveOrder[ply];
+        int count = 0;
+        for (int move = PODS - 1; move >= 0; move--) {
+            if (pods[move] > 0) {
+                order[count++] = move;
+            }
+        }
+
+        // Stable partition: the preferred move, then moves that land in the points pile, then the rest.
+        int placed = 0;
+        for (int i = 0; i < count; i++) {
+            if (order[i] == preferred) {
+                moveToFront(order, i, placed++);
+                break;
+            }
+        }
+        for (int i = placed; i < count; i++) {
+            int move = order[i];
+            if (pods[move] % 13 == PODS - move) {
+                moveToFront(order, i, placed++);
+            }
+        }
+        return count;
+    }
+
+    private static void moveToFront(int[] order, int from, int to) {
+        int move = order[from];
+        System.arraycopy(order, to, order, to + 1, from - to);
+        order[to] = move;
+    }
+
+    private static void rotate(int[] order, int from, int to, int distance) {
+        for (int i = 0; i < distance; i++) {
+            moveToFront(order, to - 1, from);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.MancalaException;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size transposition table that any number of search threads can probe and store into
+ * without locks.  Each entry is two longs: the packed data, and the position key xored with that
+ * data.  Two threads writing the same entry at once can leave one thread's key next to the other's
+ * data, but then the xor no longer gives back the key being probed, so a torn entry reads as a miss
+ * instead of as another position's result.
+ *
+ * Data is packed into one long: the best move in bits 0-2, the bound type in bits 3-4, the depth in
+ * bits 5-12, a valid bit at 13 and the score in the upper 32 bits.  An entry is replaced by a
+ * different position, or by the same position searched at least as deep.
+ */
+public class TranspositionTable {
+    public static final long MISS = 0;
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+    public static final int NO_MOVE = 7;
+
+    private static final long VALID = 1L << 13;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * @param entries the number of entries, rounded up to a power of two; each takes 16 bytes
+     */
+    public TranspositionTable(int entries) {
+        if (entries < 1 || entries > 1 << 29) {
+            throw new MancalaException("Transposition table size must be between 1 and 2^29 entries.");
+        }
+        int size = Integer.highestOneBit(entries - 1) << 1;
+        size = Math.max(size, 1);
+        slots = new AtomicLongArray(size * 2);
+        mask = size - 1;
+    }
+
+    /**
+     * @return the packed data stored for the key, or MISS
+     */
+    public long probe(long key) {
+        int slot = ((int) key & mask) << 1;
+        long data = slots.get(slot + 1);
+        if (data != MISS && (slots.get(slot) ^ data) == key) {
+            return data;
+        }
+        return MISS;
+    }
+
+    public void store(long key, int depth, int bound, int move, int score) {
+        int slot = ((int) key & mask) << 1;
+        long existing = slots.get(slot + 1);
+        if (existing != MISS && (slots.get(slot) ^ existing) == key && depth(existing) > depth) {
+            return;
+        }
+
+        long data = (long) score << 32 | VALID | (long) depth << 5 | (long) bound << 3 | move;
+        slots.lazySet(slot, key ^ data);
+        slots.lazySet(slot + 1, data);
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.lazySet(i, 0);
+        }
+    }
+
+    public int size() {
+        return slots.length() / 2;
+    }
+
+    public static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 5) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 3) & 0x3;
+    }
+
+    public static int move(long data) {
+        return (int) data & 0x7;
+    }
+}
@@ -3,11 +3,16 @@ package com.freddrake.mancala.mancalaml.spring;
 import com.freddrake.mancala.mancalaml.LazyInitializedFileOutputStream;
 import com.freddrake.mancala.mancalaml.Player;
 import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordWriter;
 import com.freddrake.mancala.mancalaml.engine.reinforcement.DQNEngine;
 import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
 import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.NetworkOpponent;
+import com.freddrake.mancala.mancalaml.engine.search.ParallelSearchEngine;
 import org.deeplearning4j.api.storage.StatsStorage;
 import org.deeplearning4j.optimize.api.TrainingListener;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscrete;
 import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
 import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
 import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
@@ -17,21 +22,28 @@ import org.deeplearning4j.ui.api.UIServer;
 import org.deeplearning4j.ui.stats.StatsListener;
 import org.deeplearning4j.ui.storage.InMemoryStatsStorage;
 import org.nd4j.linalg.learning.config.Adam;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
 
+import javax.annotation.PreDestroy;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import static org.nd4j.linalg.learning.config.Adam.*;
 
 @Configuration
 public class AppConfiguration {
     private AppProperties appProperties;
+    private EndgameTablebase tablebase;
+    private GameRecordWriter gameRecordWriter;
 
     public AppConfiguration(AppProperties appProperties) {
         this.appProperties = appProperties;
@@ -56,6 +68,31 @@ public class AppConfiguration {
                 .build();
     }
 
+    /**
+     * The configuration of train.async.  There is no replay memory; each of asyncWorkers workers (every
+     * core when 0) plays its own games and sends gradients after asyncNStep moves.
+     */
+    @Bean
+    public AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration asyncLearningConfiguration() {
+        int workers = appProperties.getAsyncWorkers() > 0
+                ? appProperties.getAsyncWorkers()
+                : Runtime.getRuntime().availableProcessors();
+        return AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration.builder()
+                .seed(123)
+                .maxEpochStep(200)
+                .maxStep(500000)
+                .numThread(workers)
+                .nstep(appProperties.getAsyncNStep())
+                .targetDqnUpdateFreq(1000)
+                .updateStart(10)
+                .rewardFactor(0.1)
+                .gamma(0.90)
+                .errorClamp(1.0)
+                .minEpsilon(0.1f)
+                .epsilonNbStep(10)
+                .build();
+    }
+
     @Bean
     public DQNFactoryStdDense.Configuration netConfiguration(StatsStorage statsStorage) {
         return DQNFactoryStdDense.Configuration.builder()
@@ -90,23 +127,77 @@ public class AppConfiguration {
                                  DiscreteSpace discreteSpace) {
         return GameMDP.builder()
                 .oppositionEngine(randomEngine)
+                .oppositionEngineFactory(() -> RandomEngine.builder().player(Player.PLAYER_TWO).build())
                 .player(Player.PLAYER_ONE)
                 .discreteSpace(discreteSpace)
                 .observationSpace(observationSpace)
                 .illegalMoveReward(appProperties.getIllegalMoveReward())
+                .maskIllegalMoves(appProperties.isMaskIllegalMoves())
+                .moveTraceCapacity(appProperties.getMoveTraceCapacity())
+                .tablebase(trainingTablebase())
+                .leadRewards(appProperties.isLeadRewards())
+                .recordWriter(gameRecordWriter())
                 .build();
     }
 
     @Bean
     @Lazy
     public GameMDP dqlGameMDP(DQNEngine dqnEngine, ObservationSpace<GameObservation> observationSpace,
-                              DiscreteSpace discreteSpace) {
+                              DiscreteSpace discreteSpace, ObjectProvider<InputStream> networkInputStream) {
         return GameMDP.builder()
                 .oppositionEngine(dqnEngine)
+                .oppositionEngineFactory(() -> DQNEngine.builder()
+                        .player(Player.PLAYER_TWO)
+                        .observationSpace(observationSpace)
+                        .networkInputStream(networkInputStream.getObject())
+                        .positionCacheSize(appProperties.getPositionCacheSize())
+                        .build())
                 .player(Player.PLAYER_ONE)
                 .discreteSpace(discreteSpace)
                 .observationSpace(observationSpace)
                 .illegalMoveReward(appProperties.getIllegalMoveReward())
+                .maskIllegalMoves(appProperties.isMaskIllegalMoves())
+                .moveTraceCapacity(appProperties.getMoveTraceCapacity())
+                .tablebase(trainingTablebase())
+                .leadRewards(appProperties.isLeadRewards())
+                .recordWriter(gameRecordWriter())
+                .build();
+    }
+
+    @Bean
+    @Lazy
+    public GameMDP searchGameMDP(ParallelSearchEngine searchEngine, ObservationSpace<GameObservation> observationSpace,
+                                 DiscreteSpace discreteSpace) {
+        return GameMDP.builder()
+                .oppositionEngine(searchEngine)
+                // One search thread per instance; the actors or workers already use every core.
+                .oppositionEngineFactory(() -> newSearchEngine(1))
+                .player(Player.PLAYER_ONE)
+                .discreteSpace(discreteSpace)
+                .observationSpace(observationSpace)
+                .illegalMoveReward(appProperties.getIllegalMoveReward())
+                .maskIllegalMoves(appProperties.isMaskIllegalMoves())
+                .moveTraceCapacity(appProperties.getMoveTraceCapacity())
+                .tablebase(trainingTablebase())
+                .leadRewards(appProperties.isLeadRewards())
+                .recordWriter(gameRecordWriter())
+                .build();
+    }
+
+    @Bean
+    @Lazy
+    public ParallelSearchEngine searchEngine() {
+        return newSearchEngine(appProperties.getSearchThreads());
+    }
+
+    private ParallelSearchEngine newSearchEngine(int threads) {
+        return ParallelSearchEngine.builder()
+                .player(Player.PLAYER_TWO)
+                .threads(threads)
+                .maxDepth(appProperties.getSearchMaxDepth())
+                .moveTimeMillis(appProperties.getSearchMoveTimeMillis())
+                .transpositionTableSize(appProperties.getSearchTableSize())
+                .tablebase(tablebase())
                 .build();
     }
 
@@ -114,9 +205,24 @@ public class AppConfiguration {
     @Lazy
     public DQNEngine dqnEngine(ObservationSpace<GameObservation> observationSpace, InputStream networkInputStream) {
         return DQNEngine.builder()
-                .player(Player.PLAYER_ONE)
+                .player(Player.PLAYER_TWO)
                 .observationSpace(observationSpace)
                 .networkInputStream(networkInputStream)
+                .positionCacheSize(appProperties.getPositionCacheSize())
+                .build();
+    }
+
+    /**
+     * The network opponent of train.network when vectorEnvironments is above 1, moving on every
+     * environment with one forward pass.
+     */
+    @Bean
+    @Lazy
+    public NetworkOpponent networkOpponent(InputStream networkInputStream) {
+        return NetworkOpponent.builder()
+                .player(Player.PLAYER_TWO)
+                .networkInputStream(networkInputStream)
+                .batchSize(appProperties.getVectorEnvironments())
                 .build();
     }
 
@@ -135,6 +241,37 @@ public class AppConfiguration {
         return new ArrayObservationSpace<>(new int[]{12});
     }
 
+    /**
+     * @return the tablebase written by generate.tablebase, or null if it hasn't been generated
+     */
+    private synchronized EndgameTablebase tablebase() {
+        if (tablebase == null && Files.exists(Paths.get(appProperties.getTablebaseLocation()))) {
+            tablebase = EndgameTablebase.open(Paths.get(appProperties.getTablebaseLocation()));
+        }
+        return tablebase;
+    }
+
+    private EndgameTablebase trainingTablebase() {
+        return appProperties.isTablebaseTrainingTargets() ? tablebase() : null;
+    }
+
+    /**
+     * @return the writer that training games are appended to, or null unless recordGames is set
+     */
+    private synchronized GameRecordWriter gameRecordWriter() {
+        if (gameRecordWriter == null && appProperties.isRecordGames()) {
+            gameRecordWriter = GameRecordWriter.open(Paths.get(appProperties.getGameRecordLocation()));
+        }
+        return gameRecordWriter;
+    }
+
+    @PreDestroy
+    public synchronized void closeGameRecordWriter() {
+        if (gameRecordWriter != null) {
+            gameRecordWriter.close();
+        }
+    }
+
     @Bean
     @Scope("prototype")
     public InputStream networkInputStream() throws Exception {
@@ -11,9 +11,42 @@ public class AppProperties {
     @Getter @Setter private String networkLocation;
     @Getter @Setter private double trainingEpsilon;
     @Getter @Setter private int illegalMoveReward;
+    @Getter @Setter private boolean maskIllegalMoves;
+    @Getter @Setter private boolean leadRewards;
     @Getter @Setter private float winReward;
     @Getter @Setter private float loseReward;
     @Getter @Setter private float tieReward;
     @Getter @Setter private int trainingGamesPerPass;
     @Getter @Setter private long evolvingTrainingPasses;
+    @Getter @Setter private int moveTraceCapacity;
+    @Getter @Setter private int evaluationGames;
+    @Getter @Setter private int evaluationThreads;
+    @Getter @Setter private int inferenceBatchSize;
+    @Getter @Setter private long inferenceMaxWaitMicros;
+    @Getter @Setter private int positionCacheSize;
+    @Getter @Setter private int searchThreads;
+    @Getter @Setter private int searchMaxDepth;
+    @Getter @Setter private long searchMoveTimeMillis;
+    @Getter @Setter private int searchTableSize;
+    @Getter @Setter private String tablebaseLocation;
+    @Getter @Setter private int tablebasePebbles;
+    @Getter @Setter private boolean tablebaseTrainingTargets;
+    @Getter @Setter private String openingBookLocation;
+    @Getter @Setter private int openingBookGames;
+    @Getter @Setter private int openingBookPlies;
+    @Getter @Setter private int vectorEnvironments;
+    @Getter @Setter private int actors;
+    @Getter @Setter private boolean offHeapReplay;
+    @Getter @Setter private boolean prioritizedReplay;
+    @Getter @Setter private String gameRecordLocation;
+    @Getter @Setter private boolean recordGames;
+    @Getter @Setter private boolean replayWarmStart;
+    @Getter @Setter private String checkpointLocation;
+    @Getter @Setter private int checkpointInterval;
+    @Getter @Setter private int pretrainGames;
+    @Getter @Setter private int pretrainEpochs;
+    @Getter @Setter private int pretrainBatchSize;
+    @Getter @Setter private int pretrainWorkers;
+    @Getter @Setter private int asyncWorkers;
+    @Getter @Setter private int asyncNStep;
 }
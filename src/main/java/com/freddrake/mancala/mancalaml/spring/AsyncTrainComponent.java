@@ -0,0 +1,38 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.engine.reinforcement.AsyncDeepQLearningTrainer;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import lombok.AllArgsConstructor;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscrete;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.ui.api.UIServer;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+
+@Component
+@Profile("train.async")
+@AllArgsConstructor
+public class AsyncTrainComponent implements CommandLineRunner {
+    private GameMDP randomGameMDP;
+    private AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration asyncLearningConfiguration;
+    private DQNFactoryStdDense.Configuration netConfiguration;
+    private OutputStream networkOutputStream;
+    private UIServer uiServer;
+
+    @Override
+    public void run(String... args) {
+        AsyncDeepQLearningTrainer trainer = AsyncDeepQLearningTrainer.builder()
+                .gameMDP(randomGameMDP)
+                .learningConfiguration(asyncLearningConfiguration)
+                .netConfiguration(netConfiguration)
+                .networkOutputStream(networkOutputStream)
+                .uiServer(uiServer)
+                .build();
+
+        trainer.train();
+    }
+}
@@ -0,0 +1,50 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBookBuilder;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.DQNEngine;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
+import lombok.AllArgsConstructor;
+import org.deeplearning4j.rl4j.space.ObservationSpace;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.function.Function;
+
+@Component
+@Profile("build.opening-book")
+@AllArgsConstructor
+public class BuildOpeningBookComponent implements CommandLineRunner {
+    private ObservationSpace<GameObservation> observationSpace;
+    private ObjectProvider<InputStream> networkInputStream;
+    private AppProperties appProperties;
+
+    @Override
+    public void run(String... args) {
+        OpeningBookBuilder builder = OpeningBookBuilder.builder()
+                .playerOneEngine(networkEngine(Player.PLAYER_ONE))
+                .playerTwoEngine(networkEngine(Player.PLAYER_TWO))
+                .games(appProperties.getOpeningBookGames())
+                .threads(appProperties.getEvaluationThreads())
+                .plies(appProperties.getOpeningBookPlies())
+                .build();
+
+        builder.write(Paths.get(appProperties.getOpeningBookLocation()));
+    }
+
+    private Function<Random, GamingEngine> networkEngine(Player player) {
+        return random -> DQNEngine.builder()
+                .player(player)
+                .observationSpace(observationSpace)
+                .networkInputStream(networkInputStream.getObject())
+                .positionCacheSize(appProperties.getPositionCacheSize())
+                .build();
+    }
+}
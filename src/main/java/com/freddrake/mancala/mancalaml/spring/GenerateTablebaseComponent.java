@@ -0,0 +1,26 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebaseGenerator;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+@Component
+@Profile("generate.tablebase")
+@AllArgsConstructor
+public class GenerateTablebaseComponent implements CommandLineRunner {
+    private AppProperties appProperties;
+
+    @Override
+    public void run(String... args) {
+        EndgameTablebaseGenerator generator = EndgameTablebaseGenerator.builder()
+                .maxPebbles(appProperties.getTablebasePebbles())
+                .build();
+
+        generator.write(Paths.get(appProperties.getTablebaseLocation()));
+    }
+}
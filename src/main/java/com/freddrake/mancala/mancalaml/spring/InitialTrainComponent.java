@@ -12,6 +12,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.io.OutputStream;
+import java.nio.file.Paths;
 
 @Component
 @Profile("train.initial")
@@ -22,6 +23,7 @@ public class InitialTrainComponent implements CommandLineRunner {
     private DQNFactoryStdDense.Configuration netConfiguration;
     private OutputStream networkOutputStream;
     private UIServer uiServer;
+    private AppProperties appProperties;
 
     @Override
     public void run(String... args) {
@@ -31,6 +33,15 @@ public class InitialTrainComponent implements CommandLineRunner {
                 .netConfiguration(netConfiguration)
                 .networkOutputStream(networkOutputStream)
                 .uiServer(uiServer)
+                .environments(appProperties.getVectorEnvironments())
+                .actors(appProperties.getActors())
+                .offHeapReplay(appProperties.isOffHeapReplay())
+                .prioritizedReplay(appProperties.isPrioritizedReplay())
+                .replayWarmStart(appProperties.isReplayWarmStart()
+                        ? Paths.get(appProperties.getGameRecordLocation()) : null)
+                .checkpoint(appProperties.getCheckpointInterval() > 0
+                        ? Paths.get(appProperties.getCheckpointLocation()) : null)
+                .checkpointInterval(appProperties.getCheckpointInterval())
                 .build();
 
         trainer.train();
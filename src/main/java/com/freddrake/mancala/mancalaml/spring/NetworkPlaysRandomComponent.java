@@ -2,26 +2,39 @@ package com.freddrake.mancala.mancalaml.spring;
 
 
 import com.freddrake.mancala.mancalaml.engine.reinforcement.DeepQLearningPlay;
-import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import com.freddrake.mancala.mancalaml.engine.opening.OpeningBook;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
 import lombok.AllArgsConstructor;
+import org.deeplearning4j.rl4j.space.ObservationSpace;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 @Component
 @Profile("play.engine-vs-random")
 @AllArgsConstructor
 public class NetworkPlaysRandomComponent implements CommandLineRunner {
-    private GameMDP randomGameMDP;
+    private ObservationSpace<GameObservation> observationSpace;
     private InputStream networkInputStream;
+    private AppProperties appProperties;
 
     @Override
     public void run(String... args) {
+        Path openingBook = Paths.get(appProperties.getOpeningBookLocation());
         DeepQLearningPlay player = DeepQLearningPlay.builder()
-                .gameMDP(randomGameMDP)
+                .observationSpace(observationSpace)
                 .networkInputStream(networkInputStream)
+                .games(appProperties.getEvaluationGames())
+                .threads(appProperties.getEvaluationThreads())
+                .inferenceBatchSize(appProperties.getInferenceBatchSize())
+                .inferenceMaxWaitMicros(appProperties.getInferenceMaxWaitMicros())
+                .positionCacheSize(appProperties.getPositionCacheSize())
+                .openingBook(Files.exists(openingBook) ? OpeningBook.open(openingBook) : null)
                 .build();
 
         player.play();
@@ -3,17 +3,20 @@ package com.freddrake.mancala.mancalaml.spring;
 
 import com.freddrake.mancala.mancalaml.engine.reinforcement.DeepQLearningTrainer;
 import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.NetworkOpponent;
 import lombok.AllArgsConstructor;
 import org.deeplearning4j.api.storage.StatsStorage;
 import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
 import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
 import org.deeplearning4j.ui.api.UIServer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Paths;
 
 @Component
 @Profile("train.network")
@@ -24,6 +27,8 @@ public class NetworkTrainComponent implements CommandLineRunner {
     private InputStream networkInputStream;
     private OutputStream networkOutputStream;
     private UIServer uiServer;
+    private AppProperties appProperties;
+    private ObjectProvider<NetworkOpponent> networkOpponent;
     private StatsStorage statsStorage;
 
     @Override
@@ -34,6 +39,16 @@ public class NetworkTrainComponent implements CommandLineRunner {
                 .learningConfiguration(learningConfiguration)
                 .networkOutputStream(networkOutputStream)
                 .uiServer(uiServer)
+                .environments(appProperties.getVectorEnvironments())
+                .actors(appProperties.getActors())
+                .offHeapReplay(appProperties.isOffHeapReplay())
+                .prioritizedReplay(appProperties.isPrioritizedReplay())
+                .replayWarmStart(appProperties.isReplayWarmStart()
+                        ? Paths.get(appProperties.getGameRecordLocation()) : null)
+                .checkpoint(appProperties.getCheckpointInterval() > 0
+                        ? Paths.get(appProperties.getCheckpointLocation()) : null)
+                .checkpointInterval(appProperties.getCheckpointInterval())
+                .opponent(appProperties.getVectorEnvironments() > 1 ? networkOpponent.getObject() : null)
                 .statsStorage(statsStorage)
                 .build();
 
@@ -0,0 +1,43 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordReader;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.PretrainTrainer;
+import lombok.AllArgsConstructor;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.ui.api.UIServer;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Paths;
+
+@Component
+@Profile("train.pretrain")
+@AllArgsConstructor
+public class PretrainComponent implements CommandLineRunner {
+    private QLearning.QLConfiguration learningConfiguration;
+    private DQNFactoryStdDense.Configuration netConfiguration;
+    private OutputStream networkOutputStream;
+    private UIServer uiServer;
+    private AppProperties appProperties;
+
+    @Override
+    public void run(String... args) {
+        PretrainTrainer trainer = PretrainTrainer.builder()
+                .netConfiguration(netConfiguration)
+                .records(GameRecordReader.open(Paths.get(appProperties.getGameRecordLocation())))
+                .networkOutputStream(networkOutputStream)
+                .uiServer(uiServer)
+                .epochs(appProperties.getPretrainEpochs())
+                .batchSize(appProperties.getPretrainBatchSize())
+                .workers(appProperties.getPretrainWorkers())
+                .gamma(learningConfiguration.getGamma())
+                .rewardFactor(learningConfiguration.getRewardFactor())
+                .build();
+
+        trainer.train();
+    }
+}
@@ -0,0 +1,47 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordWriter;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameRecordGenerator;
+import com.freddrake.mancala.mancalaml.engine.search.AlphaBetaEngine;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.function.Function;
+
+@Component
+@Profile("record.search-games")
+@AllArgsConstructor
+public class RecordSearchGamesComponent implements CommandLineRunner {
+    private AppProperties appProperties;
+
+    @Override
+    public void run(String... args) {
+        try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(appProperties.getGameRecordLocation()))) {
+            GameRecordGenerator.builder()
+                    .playerEngine(searchEngine(Player.PLAYER_ONE))
+                    .opponentEngine(searchEngine(Player.PLAYER_TWO))
+                    .games(appProperties.getPretrainGames())
+                    .threads(appProperties.getEvaluationThreads())
+                    .leadRewards(appProperties.isLeadRewards() || appProperties.isTablebaseTrainingTargets())
+                    .build()
+                    .write(writer);
+        }
+    }
+
+    // One single threaded search per worker; the workers already use every core.
+    private Function<Random, GamingEngine> searchEngine(Player player) {
+        return random -> AlphaBetaEngine.builder()
+                .player(player)
+                .maxDepth(appProperties.getSearchMaxDepth())
+                .moveTimeMillis(appProperties.getSearchMoveTimeMillis())
+                .transpositionTableSize(appProperties.getSearchTableSize())
+                .build();
+    }
+}
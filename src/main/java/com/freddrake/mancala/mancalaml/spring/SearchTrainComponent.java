@@ -0,0 +1,49 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+
+import com.freddrake.mancala.mancalaml.engine.reinforcement.DeepQLearningTrainer;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import lombok.AllArgsConstructor;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.ui.api.UIServer;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Paths;
+
+@Component
+@Profile("train.search")
+@AllArgsConstructor
+public class SearchTrainComponent implements CommandLineRunner {
+    private GameMDP searchGameMDP;
+    private QLearning.QLConfiguration learningConfiguration;
+    private DQNFactoryStdDense.Configuration netConfiguration;
+    private OutputStream networkOutputStream;
+    private UIServer uiServer;
+    private AppProperties appProperties;
+
+    @Override
+    public void run(String... args) {
+        DeepQLearningTrainer trainer = DeepQLearningTrainer.builder()
+                .gameMDP(searchGameMDP)
+                .learningConfiguration(learningConfiguration)
+                .netConfiguration(netConfiguration)
+                .networkOutputStream(networkOutputStream)
+                .uiServer(uiServer)
+                .environments(appProperties.getVectorEnvironments())
+                .actors(appProperties.getActors())
+                .offHeapReplay(appProperties.isOffHeapReplay())
+                .prioritizedReplay(appProperties.isPrioritizedReplay())
+                .replayWarmStart(appProperties.isReplayWarmStart()
+                        ? Paths.get(appProperties.getGameRecordLocation()) : null)
+                .checkpoint(appProperties.getCheckpointInterval() > 0
+                        ? Paths.get(appProperties.getCheckpointLocation()) : null)
+                .checkpointInterval(appProperties.getCheckpointInterval())
+                .build();
+
+        trainer.train();
+    }
+}
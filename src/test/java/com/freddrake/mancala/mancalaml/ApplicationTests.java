@@ -8,6 +8,8 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
 
 import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
 import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
@@ -91,6 +93,132 @@ public class ApplicationTests {
 		assertEquals(1, board.playerPoints(PLAYER_TWO));		
 	}
 	
+	@Test
+	public void relayMoveFromNonEmptyPod() {
+		int[] pebbles = {
+				0, 0,
+				0, 0, 0, 0, 0, 2,
+				1, 0, 0, 0, 0, 0
+		};
+		GameBoard board = buildBoard(pebbles);
+		boolean retVal = board.executeMove(PLAYER_ONE, 6);
+
+		assertFalse(retVal);
+		assertArrayEquals(new int[] {0, 0, 0, 0, 0, 0}, board.playerPebbles(PLAYER_ONE));
+		assertArrayEquals(new int[] {0, 1, 1, 0, 0, 0}, board.playerPebbles(PLAYER_TWO));
+		assertEquals(1, board.playerPoints(PLAYER_ONE));
+		assertEquals(2, board.lastMoveHops());
+	}
+
+	@Test(timeout = 10000)
+	public void relayChainsAlwaysEnd() {
+		// Every 13 pebbles sown pass the mover's points pile, so no relay chain can repeat a position.
+		Random random = new Random(11);
+		for (int i = 0; i < 100_000; i++) {
+			int[] pebbles = new int[12];
+			int most = 1 + random.nextInt(40);
+			for (int pod = 0; pod < 12; pod++) {
+				pebbles[pod] = random.nextInt(most);
+			}
+			pebbles[random.nextInt(6)]++;
+			GameBoard board = new GameBoard(0, 0, pebbles);
+			int location = Integer.numberOfTrailingZeros(board.validMoveMask(PLAYER_ONE)) + 1;
+			board.executeMove(PLAYER_ONE, location);
+			assertTrue(board.lastMoveHops() <= 13 * board.playerPoints(PLAYER_ONE) + 12);
+		}
+	}
+
+	@Test
+	public void playerQueriesNeedADefinedPlayer() {
+		GameBoard board = new GameBoard(3, 5, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+		for (Player player : new Player[] {null, Player.NOBODY}) {
+			for (Runnable query : new Runnable[] {
+					() -> board.validMoves(player),
+					() -> board.validMoveMask(player),
+					() -> board.isGameOver(player),
+					() -> board.pointsLead(player),
+					() -> board.playerPoints(player),
+					() -> board.playerPebbles(player),
+					() -> board.positionHash(player)}) {
+				try {
+					query.run();
+					fail("Answered for an undefined player " + player);
+				} catch (MancalaException e) {
+					assertEquals("Player must be defined", e.getMessage());
+				}
+			}
+			// The pebble field has always fallen back to player one's perspective.
+			assertArrayEquals(board.pebbleField(PLAYER_ONE), board.pebbleField(player));
+		}
+	}
+
+	@Test
+	public void validMoveMaskMatchesValidMoves() {
+		int[] pebbles = {
+				0, 0,
+				2, 0, 3, 0, 0, 1,
+				0, 0, 0, 0, 0, 0
+		};
+		GameBoard board = buildBoard(pebbles);
+
+		assertEquals(0b100101, board.validMoveMask(PLAYER_ONE));
+		assertEquals(Arrays.asList(1, 3, 6), board.validMoves(PLAYER_ONE));
+		assertEquals(0, board.validMoveMask(PLAYER_TWO));
+		assertTrue(board.validMoves(PLAYER_TWO).isEmpty());
+	}
+
+	@Test
+	public void randomMovesAreDrawnFromTheWholeMask() {
+		int mask = 0b100101;
+		Random random = new Random(7);
+		SplittableRandom splittable = new SplittableRandom(7);
+		int seen = 0;
+		int seenSplittable = 0;
+		for (int i = 0; i < 200; i++) {
+			seen |= 1 << GameBoard.randomMoveBit(mask, random);
+			seenSplittable |= 1 << GameBoard.randomMoveBit(mask, splittable);
+		}
+
+		assertEquals(mask, seen);
+		assertEquals(mask, seenSplittable);
+	}
+
+	@Test
+	public void pebbleFieldFromPlayerTwoPerspective() {
+		int[] pebbles = {
+				0, 0,
+				1, 2, 3, 4, 5, 6,
+				7, 8, 9, 10, 11, 12
+		};
+		GameBoard board = buildBoard(pebbles);
+
+		assertArrayEquals(new int[] {7, 8, 9, 10, 11, 12, 1, 2, 3, 4, 5, 6},
+				board.pebbleField(PLAYER_TWO));
+		assertArrayEquals(Arrays.copyOfRange(pebbles, 2, 14), board.pebbleField(PLAYER_ONE, new int[12]));
+	}
+
+	
+	@Test
+	public void moveTraceRecordsRecentMoves() {
+		int[] pebbles = {
+				0, 0,
+				0, 0, 0, 0, 0, 2,
+				1, 0, 0, 0, 0, 1
+		};
+		GameBoard board = buildBoard(pebbles);
+		assertNull(board.getMoveTrace());
+
+		MoveTrace trace = board.enableMoveTrace(2);
+		board.executeMove(PLAYER_ONE, 6);
+		board.executeMove(PLAYER_TWO, 6);
+		board.executeMove(PLAYER_ONE, 1);
+
+		assertEquals(3, trace.totalRecorded());
+		assertEquals(2, trace.size());
+		assertEquals("#2 PLAYER_TWO location 6: 1 hop, 1 point, extra turn\n" +
+				"#3 PLAYER_ONE location 1: illegal", trace.render());
+	}
+
 	@Test
 	public void gameNotOverYet() {
 		int[] pebbles = { 
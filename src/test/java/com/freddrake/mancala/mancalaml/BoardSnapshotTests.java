@@ -0,0 +1,83 @@
+package com.freddrake.mancala.mancalaml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BoardSnapshotTests {
+	private static void assertSamePosition(GameBoard expected, GameBoard actual) {
+		assertArrayEquals(expected.pebbleField(PLAYER_ONE), actual.pebbleField(PLAYER_ONE));
+		assertEquals(expected.playerPoints(PLAYER_ONE), actual.playerPoints(PLAYER_ONE));
+		assertEquals(expected.playerPoints(PLAYER_TWO), actual.playerPoints(PLAYER_TWO));
+		assertEquals(expected.positionHash(PLAYER_ONE), actual.positionHash(PLAYER_ONE));
+		assertEquals(expected.isGameOver(PLAYER_ONE), actual.isGameOver(PLAYER_ONE));
+	}
+
+	@Test
+	public void unmakeRestoresEveryPosition() {
+		Random random = new Random(5);
+		GameBoard board = new GameBoard();
+		GameBoard[] line = new GameBoard[60];
+		for (int game = 0; game < 200; game++) {
+			board.resetGameBoard();
+			Player player = PLAYER_ONE;
+			int depth = 0;
+			while (depth < line.length && !board.isGameOver(player)) {
+				line[depth] = new GameBoard();
+				board.copyInto(line[depth++]);
+				int mask = board.validMoveMask(player);
+				int location;
+				do {
+					location = random.nextInt(6);
+				} while ((mask & (1 << location)) == 0);
+				if (!board.makeMove(player, location + 1)) {
+					player = player == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+				}
+			}
+			while (depth > 0) {
+				board.unmakeMove();
+				assertSamePosition(line[--depth], board);
+			}
+		}
+	}
+
+	@Test
+	public void unmakeTakesBackAnIllegalMove() {
+		GameBoard board = new GameBoard(3, 4, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2);
+		GameBoard before = new GameBoard();
+		board.copyInto(before);
+
+		board.makeMove(PLAYER_ONE, 1);
+		assertEquals(-1, board.playerPoints(PLAYER_ONE));
+		board.unmakeMove();
+		assertSamePosition(before, board);
+	}
+
+	@Test
+	public void snapshotsAreIndependentOfTheBoard() {
+		int[] pebbles = {4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4};
+		GameBoard board = new GameBoard(0, 0, pebbles);
+		pebbles[0] = 9;
+		assertEquals(4, board.pebbleField(PLAYER_ONE)[0]);
+
+		BoardSnapshot start = board.snapshot();
+		GameBoard other = new GameBoard();
+		board.executeMove(PLAYER_ONE, 3);
+		assertEquals(1, board.playerPoints(PLAYER_ONE));
+
+		other.restore(start);
+		board.restore(start);
+		assertSamePosition(new GameBoard(), board);
+		assertSamePosition(new GameBoard(), other);
+	}
+
+	@Test(expected = MancalaException.class)
+	public void unmakeWithoutAMoveFails() {
+		new GameBoard().unmakeMove();
+	}
+}
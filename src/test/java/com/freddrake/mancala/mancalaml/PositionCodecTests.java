@@ -0,0 +1,82 @@
+package com.freddrake.mancala.mancalaml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PositionCodecTests {
+	@Test
+	public void encodesFromTheSideToMove() {
+		GameBoard board = new GameBoard(7, 3, 1, 2, 3, 4, 5, 6, 0, 0, 0, 0, 0, 14);
+		byte[] position = new byte[PositionCodec.BYTES + 2];
+		PositionCodec.encode(board, PLAYER_TWO, position, 2);
+		assertEquals("0 0 0 0 0 14 | 1 2 3 4 5 6 | 3-7", PositionCodec.render(position, 2));
+
+		// The mirror image, with the players swapped, encodes the same way.
+		GameBoard mirror = new GameBoard(3, 7, 0, 0, 0, 0, 0, 14, 1, 2, 3, 4, 5, 6);
+		byte[] mirrored = new byte[PositionCodec.BYTES + 2];
+		PositionCodec.encode(mirror, PLAYER_ONE, mirrored, 2);
+		assertArrayEquals(position, mirrored);
+
+		GameBoard decoded = new GameBoard();
+		PositionCodec.decode(position, 2, decoded, PLAYER_TWO);
+		assertEquals(board.positionHash(PLAYER_ONE), decoded.positionHash(PLAYER_ONE));
+		PositionCodec.decode(position, 2, decoded, PLAYER_ONE);
+		assertEquals(mirror.positionHash(PLAYER_ONE), decoded.positionHash(PLAYER_ONE));
+	}
+
+	@Test
+	public void observationKeysAreExact() {
+		Random random = new Random(7);
+		Map<Long, int[]> fields = new HashMap<>();
+		int[] field = new int[12];
+		int[] decoded = new int[12];
+		GameBoard board = new GameBoard();
+		for (int game = 0; game < 2000; game++) {
+			board.resetGameBoard();
+			Player player = PLAYER_ONE;
+			while (!board.isGameOver(player)) {
+				board.pebbleField(player, field);
+				long key = PositionCodec.observationKey(board, player);
+				assertEquals(key, PositionCodec.observationKey(field));
+				assertTrue(key >= 0);
+				int[] previous = fields.putIfAbsent(key, field.clone());
+				if (previous != null) {
+					assertArrayEquals(previous, field);
+				}
+				PositionCodec.pebbleField(key, decoded);
+				assertArrayEquals(field, decoded);
+
+				int mask = board.validMoveMask(player);
+				int location;
+				do {
+					location = random.nextInt(6);
+				} while ((mask & (1 << location)) == 0);
+				if (!board.executeMove(player, location + 1)) {
+					player = player == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+				}
+			}
+		}
+		assertTrue(fields.size() > 10000);
+	}
+
+	@Test
+	public void largeFieldsGetHashedKeys() {
+		int[] field = new int[12];
+		Arrays.fill(field, 5);
+		long key = PositionCodec.observationKey(field);
+		assertTrue(key < 0);
+		assertEquals(key, PositionCodec.observationKey(new GameBoard(0, 0, field), PLAYER_ONE));
+		field[0] = 6;
+		assertTrue(key != PositionCodec.observationKey(field));
+	}
+}
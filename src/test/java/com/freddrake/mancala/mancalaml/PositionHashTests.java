@@ -0,0 +1,91 @@
+package com.freddrake.mancala.mancalaml;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PositionHashTests {
+	private static final int POSITIONS = 2_000_000;
+
+	// Every pod and points pile in 9 bits, plus the side to move: an exact key to check hashes against.
+	private static long[] exactKey(GameBoard board, Player sideToMove) {
+		int[] pods = board.pebbleField(PLAYER_ONE);
+		long high = board.playerPoints(PLAYER_ONE);
+		long low = board.playerPoints(PLAYER_TWO) << 1 | (sideToMove == PLAYER_ONE ? 0 : 1);
+		for (int i = 0; i < 6; i++) {
+			high = high << 9 | pods[i];
+			low = low << 9 | pods[i + 6];
+		}
+		return new long[] {high, low};
+	}
+
+	// Plays a random legal move and returns the player to move next.
+	private static Player playRandomMove(GameBoard board, Player player, Random random) {
+		int mask = board.validMoveMask(player);
+		int location;
+		do {
+			location = random.nextInt(6);
+		} while ((mask & (1 << location)) == 0);
+		if (board.executeMove(player, location + 1)) {
+			return player;
+		}
+		return player == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+	}
+
+	@Test
+	public void incrementalHashMatchesFreshBoard() {
+		GameBoard board = new GameBoard();
+		Random random = new Random(11);
+		Player player = PLAYER_ONE;
+		for (int move = 0; move < 100000; move++) {
+			if (board.isGameOver(player)) {
+				board.resetGameBoard();
+				player = PLAYER_ONE;
+			}
+			player = playRandomMove(board, player, random);
+
+			GameBoard fresh = new GameBoard(board.playerPoints(PLAYER_ONE), board.playerPoints(PLAYER_TWO),
+					board.pebbleField(PLAYER_ONE));
+			assertEquals(fresh.positionHash(player), board.positionHash(player));
+		}
+	}
+
+	@Test
+	public void sideToMoveChangesHash() {
+		GameBoard board = new GameBoard();
+
+		assertNotEquals(board.positionHash(PLAYER_ONE), board.positionHash(PLAYER_TWO));
+	}
+
+	@Test
+	public void noCollisionsOverRandomSelfPlay() {
+		Map<Long, long[]> seen = new HashMap<>();
+		GameBoard board = new GameBoard();
+		Random random = new Random(3);
+		Player player = PLAYER_ONE;
+		for (int position = 0; position < POSITIONS; position++) {
+			if (board.isGameOver(player)) {
+				board.resetGameBoard();
+				player = PLAYER_ONE;
+			}
+			long[] exact = exactKey(board, player);
+			long[] previous = seen.putIfAbsent(board.positionHash(player), exact);
+			if (previous != null) {
+				assertArrayEquals("Hash collision", previous, exact);
+			}
+
+			player = playRandomMove(board, player, random);
+		}
+		// Random play rarely repeats a position outside the opening, so most of these are distinct.
+		assertTrue(seen.size() > POSITIONS / 2);
+	}
+}
@@ -0,0 +1,104 @@
+package com.freddrake.mancala.mancalaml.engine;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+
+public class TournamentTests {
+	private Tournament randomTournament(int games, int threads, long seed) {
+		return Tournament.builder()
+				.playerOneEngine(Tournament.randomEngine(PLAYER_ONE))
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(games)
+				.threads(threads)
+				.seed(seed)
+				.build();
+	}
+
+	@Test
+	public void playsEveryGame() {
+		TournamentRecord record = randomTournament(1001, 4, 123).play();
+
+		assertEquals(1001, record.getGames());
+	}
+
+	@Test
+	public void sameSeedSameRecord() {
+		TournamentRecord first = randomTournament(2000, 3, 42).play();
+		TournamentRecord second = randomTournament(2000, 3, 42).play();
+
+		assertEquals(first.getWins(), second.getWins());
+		assertEquals(first.getTies(), second.getTies());
+		assertEquals(first.getLosses(), second.getLosses());
+	}
+
+	@Test
+	public void runWorkersSplitsTheGamesRepeatably() {
+		List<Long> first = Tournament.runWorkers(10, 4, 9L, (games, random) -> games * 1000L + random.nextInt(1000));
+		List<Long> second = Tournament.runWorkers(10, 4, 9L, (games, random) -> games * 1000L + random.nextInt(1000));
+
+		assertEquals(first, second);
+		assertEquals(4, first.size());
+		assertEquals(10, first.stream().mapToLong(result -> result / 1000).sum());
+		assertEquals(3, first.get(0) / 1000);
+		assertEquals(2, first.get(3) / 1000);
+	}
+
+	@Test
+	public void closesEveryEngineItBuilds() {
+		AtomicInteger built = new AtomicInteger();
+		AtomicInteger closed = new AtomicInteger();
+		TournamentRecord record = Tournament.builder()
+				.playerOneEngine(random -> {
+					built.incrementAndGet();
+					GamingEngine engine = RandomEngine.builder().player(PLAYER_ONE).random(random).build();
+					return new ClosingEngine(engine, closed);
+				})
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(10)
+				.threads(3)
+				.seed(7L)
+				.build()
+				.play();
+
+		assertEquals(10, record.getGames());
+		assertEquals(3, built.get());
+		assertEquals(3, closed.get());
+	}
+
+	private static class ClosingEngine implements GamingEngine, AutoCloseable {
+		private final GamingEngine engine;
+		private final AtomicInteger closed;
+
+		ClosingEngine(GamingEngine engine, AtomicInteger closed) {
+			this.engine = engine;
+			this.closed = closed;
+		}
+
+		@Override
+		public int chooseMove(GameBoard gameBoard) {
+			return engine.chooseMove(gameBoard);
+		}
+
+		@Override
+		public boolean isGameOver(GameBoard gameBoard) {
+			return engine.isGameOver(gameBoard);
+		}
+
+		@Override
+		public boolean executeMove(GameBoard gameBoard) {
+			return engine.executeMove(gameBoard);
+		}
+
+		@Override
+		public void close() {
+			closed.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.freddrake.mancala.mancalaml.engine.endgame;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndgameTablebaseTests {
+	private static final int PEBBLES = 8;
+	private static byte[] values;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void generate() {
+		values = EndgameTablebaseGenerator.builder().maxPebbles(PEBBLES).build().generate();
+	}
+
+	// Plain minimax to the end of the game, to check the table against.
+	private static int margin(GameBoard board, Player side) {
+		Player opponent = side == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
+		int best = Integer.MIN_VALUE;
+		for (int location = 1; location <= 6; location++) {
+			if ((board.validMoveMask(side) & (1 << (location - 1))) == 0) {
+				continue;
+			}
+			GameBoard child = new GameBoard();
+			board.copyInto(child);
+			boolean playAgain = child.executeMove(side, location);
+			int gained = child.playerPoints(side) - board.playerPoints(side);
+			best = Math.max(best, gained + (playAgain ? margin(child, side) : -margin(child, opponent)));
+		}
+		return best == Integer.MIN_VALUE ? 0 : best;
+	}
+
+	private static GameBoard randomEndgame(Random random, int maxPebbles) {
+		int[] pods = new int[12];
+		int pebbles = 1 + random.nextInt(maxPebbles);
+		for (int i = 0; i < pebbles; i++) {
+			pods[random.nextInt(12)]++;
+		}
+		return new GameBoard(random.nextInt(20), random.nextInt(20), pods);
+	}
+
+	@Test
+	public void indexIsPerfect() {
+		int[] field = new int[12];
+		for (int index = 0; index < EndgameIndex.size(PEBBLES); index++) {
+			int pebbles = EndgameIndex.field(index, field);
+			int sum = 0;
+			for (int pod : field) {
+				sum += pod;
+			}
+			assertEquals(pebbles, sum);
+			assertEquals(index, EndgameIndex.index(field, pebbles));
+		}
+		assertEquals(125_970, EndgameIndex.size(PEBBLES));
+	}
+
+	@Test
+	public void valuesMatchExhaustiveSearch() {
+		EndgameTablebase tablebase = EndgameTablebase.of(values, PEBBLES);
+		Random random = new Random(4);
+		// Minimax without memory is exponential, so keep the positions small.
+		for (int i = 0; i < 500; i++) {
+			GameBoard board = randomEndgame(random, 5);
+			Player side = random.nextBoolean() ? PLAYER_ONE : PLAYER_TWO;
+			assertTrue(tablebase.contains(board));
+			assertEquals(margin(board, side), tablebase.margin(board, side));
+		}
+		assertFalse(tablebase.contains(new GameBoard()));
+	}
+
+	@Test
+	public void bestMoveKeepsTheValue() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("endgame.tb");
+		EndgameTablebaseGenerator.builder().maxPebbles(PEBBLES).build().write(path);
+		EndgameTablebase tablebase = EndgameTablebase.open(path);
+		assertEquals(PEBBLES, tablebase.getMaxPebbles());
+
+		Random random = new Random(6);
+		for (int i = 0; i < 500; i++) {
+			GameBoard board = randomEndgame(random, PEBBLES);
+			if (board.validMoveMask(PLAYER_ONE) == 0) {
+				continue;
+			}
+			int value = tablebase.margin(board, PLAYER_ONE);
+			int points = board.playerPoints(PLAYER_ONE);
+			boolean playAgain = board.executeMove(PLAYER_ONE, tablebase.bestMove(board, PLAYER_ONE));
+			int gained = board.playerPoints(PLAYER_ONE) - points;
+			assertEquals(value, gained + (playAgain
+					? tablebase.margin(board, PLAYER_ONE) : -tablebase.margin(board, PLAYER_TWO)));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.freddrake.mancala.mancalaml.engine.opening;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.search.AlphaBetaEngine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpeningBookTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static OpeningBookBuilder.OpeningBookBuilderBuilder selfPlay() {
+		return OpeningBookBuilder.builder()
+				.playerOneEngine(random -> AlphaBetaEngine.builder().player(PLAYER_ONE).maxDepth(3).moveTimeMillis(0L).build())
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(400)
+				.threads(2)
+				.seed(9L)
+				.plies(6)
+				.exploration(0.2);
+	}
+
+	@Test
+	public void recordsEveryGameFromTheStart() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("openings.book");
+		selfPlay().build().write(path);
+		OpeningBook book = OpeningBook.open(path);
+
+		GameBoard start = new GameBoard();
+		int games = 0;
+		for (int move = 0; move < 6; move++) {
+			games += book.games(start, PLAYER_ONE, move);
+		}
+		assertEquals(400, games);
+		assertEquals(6, book.getPlies());
+		assertTrue(book.size() > 1);
+		int bookMove = book.bestMove(start, PLAYER_ONE, 10);
+		assertTrue(bookMove >= 1 && bookMove <= 6);
+		// The start position with player two to move never comes up.
+		assertEquals(0, book.bestMove(start, PLAYER_TWO, 0));
+	}
+
+	@Test
+	public void engineLeavesTheBookForItsFallback() {
+		OpeningBook book = selfPlay().build().generate();
+		OpeningBookEngine engine = OpeningBookEngine.builder()
+				.player(PLAYER_ONE)
+				.book(book)
+				.engine(AlphaBetaEngine.builder().player(PLAYER_ONE).maxDepth(3).moveTimeMillis(0L).build())
+				.build();
+
+		assertEquals(book.bestMove(new GameBoard(), PLAYER_ONE, 10), engine.chooseMove(new GameBoard()));
+		GameBoard late = new GameBoard(20, 18, 0, 1, 0, 2, 0, 0, 3, 0, 0, 1, 0, 3);
+		engine.chooseMove(late);
+		assertEquals(1, engine.getBookMoves());
+		assertEquals(1, engine.getEngineMoves());
+	}
+}
@@ -0,0 +1,155 @@
+package com.freddrake.mancala.mancalaml.engine.record;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.ReplayMemory;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameRecordTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static GameMDP gameMDP(GameRecordWriter writer) {
+		return GameMDP.builder()
+				.player(Player.PLAYER_TWO)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_ONE).random(new Random(2)).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.recordWriter(writer)
+				.build();
+	}
+
+	// Plays random legal moves to the end of every game, keeping the pebble fields and margins seen.
+	private static void play(GameMDP mdp, int games, Random random, List<int[]> fields, List<Integer> margins) {
+		GameBoard board = mdp.getGameBoard();
+		for (int game = 0; game < games; game++) {
+			mdp.reset();
+			boolean done;
+			do {
+				fields.add(board.pebbleField(Player.PLAYER_TWO));
+				done = mdp.step(GameBoard.randomMoveBit(board.validMoveMask(Player.PLAYER_TWO), random)).isDone();
+			} while (!done);
+			fields.add(board.pebbleField(Player.PLAYER_TWO));
+			margins.add(board.playerPoints(Player.PLAYER_TWO) - board.playerPoints(Player.PLAYER_ONE));
+		}
+	}
+
+	@Test
+	public void readsBackWhatGameMDPPlayed() {
+		Path path = folder.getRoot().toPath().resolve("games.rec");
+		List<int[]> fields = new ArrayList<>();
+		List<Integer> margins = new ArrayList<>();
+		Random random = new Random(1);
+		try (GameRecordWriter writer = GameRecordWriter.open(path, 4096)) {
+			play(gameMDP(writer), 150, random, fields, margins);
+		}
+		// Appending to the same file, with a game abandoned halfway.
+		try (GameRecordWriter writer = GameRecordWriter.open(path, 4096)) {
+			GameMDP mdp = gameMDP(writer);
+			play(mdp, 50, random, fields, margins);
+			mdp.reset();
+			mdp.step(GameBoard.randomMoveBit(mdp.getGameBoard().validMoveMask(Player.PLAYER_TWO), random));
+			mdp.close();
+		}
+
+		GameRecordReader reader = GameRecordReader.open(path);
+		assertEquals(201, reader.size());
+		assertTrue(reader.getChunks() > 2);
+		GameRecord record = new GameRecord();
+		int[] field = new int[12];
+		// Reading the games in reverse order exercises the random access.
+		int[] firstPositions = new int[200];
+		for (int game = 0, offset = 0; game < 200; game++) {
+			firstPositions[game] = offset;
+			reader.read(game, record);
+			offset += record.getSteps() + 1;
+		}
+		for (int game = 199; game >= 0; game--) {
+			reader.read(game, record);
+			assertEquals(Player.PLAYER_TWO, record.getPlayer());
+			assertEquals(0, record.getFlags());
+			assertEquals((int) margins.get(game), record.getMargin());
+			for (int step = 0; step <= record.getSteps(); step++) {
+				assertArrayEquals(fields.get(firstPositions[game] + step), record.pebbleField(step, field));
+			}
+		}
+
+		reader.read(200, record);
+		assertEquals(GameRecord.TRUNCATED, record.getFlags());
+		assertEquals(1, record.getSteps());
+		GameBoard board = new GameBoard();
+		record.decode(0, board);
+		assertEquals(new GameBoard().positionHash(Player.PLAYER_TWO), board.positionHash(Player.PLAYER_TWO));
+	}
+
+	@Test
+	public void ignoresAndRepairsAnIncompleteChunk() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("games.rec");
+		try (GameRecordWriter writer = GameRecordWriter.open(path, 1)) {
+			play(gameMDP(writer), 3, new Random(3), new ArrayList<>(), new ArrayList<>());
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 5);
+		}
+		assertEquals(2, GameRecordReader.open(path).size());
+
+		try (GameRecordWriter writer = GameRecordWriter.open(path, 1)) {
+			play(gameMDP(writer), 2, new Random(4), new ArrayList<>(), new ArrayList<>());
+		}
+		GameRecordReader reader = GameRecordReader.open(path);
+		assertEquals(4, reader.size());
+		assertEquals(4, reader.getChunks());
+	}
+
+	@Test
+	public void warmStartsAReplayMemory() {
+		Path path = folder.getRoot().toPath().resolve("games.rec");
+		List<int[]> fields = new ArrayList<>();
+		try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+			play(gameMDP(writer), 20, new Random(5), fields, new ArrayList<>());
+		}
+
+		GameRecordReader reader = GameRecordReader.open(path);
+		ReplayMemory memory = new ReplayMemory(10000);
+		long transitions = reader.forEachTransition(0, reader.size(), memory::store);
+		assertEquals(fields.size() - 20, transitions);
+		assertEquals(transitions, memory.getStored());
+
+		// Exactly one terminal transition per game, and its next observation is the game's last.
+		ReplayMemory.Batch batch = memory.sample(2000, new Random(6));
+		int terminal = 0;
+		for (int row = 0; row < batch.size(); row++) {
+			if (batch.getDone()[row]) {
+				terminal++;
+			}
+		}
+		assertTrue(terminal > 0 && terminal < batch.size() / 2);
+		int[] nextField = new int[12];
+		for (int row = 0; row < batch.size(); row++) {
+			for (int pod = 0; pod < 12; pod++) {
+				nextField[pod] = (int) batch.getNextObservations().getDouble(row, pod);
+			}
+			assertTrue(Arrays.stream(nextField).sum() <= 48);
+		}
+	}
+}
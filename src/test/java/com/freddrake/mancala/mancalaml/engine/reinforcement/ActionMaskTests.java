@@ -0,0 +1,48 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActionMaskTests {
+	@Test
+	public void bestActionSkipsIllegalMoves() {
+		GameBoard board = new GameBoard(0, 0, 0, 3, 0, 1, 0, 2, 4, 4, 4, 4, 4, 4);
+		INDArray qValues = Nd4j.create(new double[] {9, 1, 8, 2, 7, 0});
+		int mask = board.validMoveMask(PLAYER_ONE);
+
+		assertEquals(3, ActionMask.bestAction(qValues, 0, mask));
+		assertEquals(2.0, ActionMask.maxValue(qValues, 0, mask), 0);
+		assertEquals(0, ActionMask.bestAction(qValues, 0, 0));
+	}
+
+	@Test
+	public void observationMaskMatchesBoard() {
+		GameBoard board = new GameBoard(0, 0, 4, 4, 4, 4, 4, 4, 0, 5, 0, 0, 6, 1);
+		ObservationEncoder encoder = new ObservationEncoder();
+
+		assertEquals(board.validMoveMask(PLAYER_TWO), ActionMask.fromObservation(encoder.encode(board, PLAYER_TWO), 0));
+		assertEquals(board.validMoveMask(PLAYER_TWO), ActionMask.fromPebbleField(board.pebbleField(PLAYER_TWO)));
+	}
+
+	@Test
+	public void randomActionsAreLegal() {
+		GameBoard board = new GameBoard(0, 0, 0, 3, 0, 0, 0, 2, 4, 4, 4, 4, 4, 4);
+		LegalActionSpace actionSpace = new LegalActionSpace(6, board, PLAYER_ONE);
+		actionSpace.setSeed(7);
+
+		boolean[] seen = new boolean[6];
+		for (int i = 0; i < 1000; i++) {
+			seen[actionSpace.randomAction()] = true;
+		}
+		assertTrue(seen[1] && seen[5]);
+		assertFalse(seen[0] || seen[2] || seen[3] || seen[4]);
+	}
+}
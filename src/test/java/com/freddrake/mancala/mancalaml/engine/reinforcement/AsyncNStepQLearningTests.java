@@ -0,0 +1,133 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.rl4j.learning.async.MiniTrans;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningDiscrete;
+import org.deeplearning4j.rl4j.learning.async.nstep.discrete.AsyncNStepQLearningThreadDiscrete;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncNStepQLearningTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger engines = new AtomicInteger();
+
+	private GameMDP gameMDP() {
+		return GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).build())
+				.oppositionEngineFactory(() -> {
+					engines.incrementAndGet();
+					return RandomEngine.builder().player(Player.PLAYER_TWO).build();
+				})
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.build();
+	}
+
+	@Test
+	public void newInstanceKeepsTheSettingsButNotTheBoard() {
+		GameMDP gameMDP = gameMDP();
+		GameMDP copy = (GameMDP) gameMDP.newInstance();
+
+		assertNotSame(gameMDP.getGameBoard(), copy.getGameBoard());
+		assertTrue(copy.isMaskingIllegalMoves());
+		assertTrue(copy.getActionSpace() instanceof LegalActionSpace);
+		assertSame(gameMDP.getObservationSpace(), copy.getObservationSpace());
+		assertEquals(1, engines.get());
+
+		// Moves on the copy don't touch the original.
+		copy.reset();
+		copy.step(2);
+		assertEquals(0, gameMDP.getGameBoard().playerPoints(Player.PLAYER_ONE));
+		assertEquals(1, copy.getGameBoard().playerPoints(Player.PLAYER_ONE));
+	}
+
+	private static AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration conf() {
+		return AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(50)
+				.maxStep(400)
+				.numThread(2)
+				.nstep(5)
+				.targetDqnUpdateFreq(100)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(100)
+				.build();
+	}
+
+	private static IDQN network() {
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		return new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6);
+	}
+
+	@Test
+	public void workersTrainTheSharedNetwork() throws Exception {
+		AsyncNStepQLearningDiscrete.AsyncNStepQLConfiguration conf = conf();
+		IDQN dqn = network();
+		INDArray initial = dqn.getNeuralNetworks()[0].params().dup();
+
+		MaskedAsyncNStepQLearningDiscreteDense learning = new MaskedAsyncNStepQLearningDiscreteDense(gameMDP(), dqn,
+				conf, new DataManager(folder.getRoot().getAbsolutePath(), false));
+		learning.train();
+
+		assertEquals(2, engines.get());
+		assertTrue(learning.getAsyncGlobal().getT().get() >= 400);
+		assertNotEquals(initial, learning.getNeuralNet().getNeuralNetworks()[0].params());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void returnsBootstrapFromTheBestLegalAction() throws Exception {
+		IDQN dqn = network();
+		MaskedAsyncNStepQLearningDiscreteDense learning = new MaskedAsyncNStepQLearningDiscreteDense(gameMDP(), dqn,
+				conf(), new DataManager(folder.getRoot().getAbsolutePath(), false));
+		AsyncNStepQLearningThreadDiscrete<GameObservation> worker =
+				(AsyncNStepQLearningThreadDiscrete<GameObservation>) learning.newThread(0);
+
+		INDArray observation = Nd4j.create(new double[] {4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4}, new int[] {1, 12});
+		// Only pods 3 and 6 are playable in the position the worker stopped at, and pod 1, empty, looks best.
+		INDArray next = Nd4j.create(new double[] {0, 0, 5, 0, 0, 2, 4, 4, 4, 4, 4, 4}, new int[] {1, 12});
+		INDArray nextQValues = Nd4j.create(new double[] {9, 8, 0.5, 7, 6, 0.25}, new int[] {1, 6});
+		INDArray qValues = dqn.output(observation);
+
+		Stack<MiniTrans<Integer>> rewards = new Stack<>();
+		rewards.add(new MiniTrans<>(observation, 2, new INDArray[] {qValues.dup()}, 1.0));
+		rewards.add(new MiniTrans<>(next, null, new INDArray[] {nextQValues}, 9.0));
+		// The network hands back views over one gradient buffer, so keep a copy before computing the next.
+		INDArray gradient = worker.calcGradient(dqn, rewards)[0].gradient().dup();
+
+		INDArray targets = qValues.dup().putScalar(2, 1.0 + 0.9 * 0.5);
+		assertEquals(dqn.gradient(observation, targets)[0].gradient(), gradient);
+	}
+}
@@ -0,0 +1,117 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.MancalaException;
+import com.freddrake.mancala.mancalaml.Player;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchedInferenceServiceTests {
+	private static final IDQN NETWORK = new DQNFactoryStdDense(DQNFactoryStdDense.Configuration.builder()
+			.numLayer(1)
+			.numHiddenNodes(16)
+			.updater(new Adam())
+			.build()).buildDQN(new int[] {12}, 6);
+
+	private static BatchedInferenceService.BatchedInferenceServiceBuilder service() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		NETWORK.save(bytes);
+		return BatchedInferenceService.builder().networkInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	private static GameBoard board(int seed) {
+		int[] pebbles = new int[12];
+		for (int pod = 0; pod < 12; pod++) {
+			pebbles[pod] = (pod * 7 + seed * 3) % 5;
+		}
+		pebbles[seed % 6] = 1;
+		return new GameBoard(0, 0, pebbles);
+	}
+
+	// The legal action with the highest Q value, straight from the network.
+	private static int expectedAction(GameBoard board) {
+		INDArray output = NETWORK.output(new ObservationEncoder().encode(board, Player.PLAYER_ONE));
+		return ActionMask.bestAction(output, 0, board.validMoveMask(Player.PLAYER_ONE));
+	}
+
+	@Test
+	public void concurrentRequestsShareForwardPasses() throws Exception {
+		int threads = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try (BatchedInferenceService service = service().batchSize(threads).maxWaitMicros(100_000L).build()) {
+			CountDownLatch start = new CountDownLatch(1);
+			Future<?>[] futures = new Future<?>[threads];
+			for (int i = 0; i < threads; i++) {
+				int seed = i;
+				futures[i] = pool.submit(() -> {
+					start.await();
+					for (int move = 0; move < 20; move++) {
+						GameBoard board = board(seed + move);
+						assertEquals(expectedAction(board), service.chooseAction(board, Player.PLAYER_ONE));
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+			assertEquals(threads * 20, service.getRequests());
+			assertTrue(service.getAverageBatchSize() > 1);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void cachedPositionsSkipTheNetwork() throws Exception {
+		try (BatchedInferenceService service = service().maxWaitMicros(0L).positionCacheSize(1024).build()) {
+			GameBoard board = board(1);
+			int action = service.chooseAction(board, Player.PLAYER_ONE);
+			assertEquals(action, service.chooseAction(board, Player.PLAYER_ONE));
+			assertEquals(expectedAction(board), action);
+			assertEquals(1, service.getBatches());
+			assertEquals(1, service.getPositionCache().getHits());
+		}
+	}
+
+	@Test
+	public void closeAnswersRequestsWaitingForABatch() throws Exception {
+		// The batch never fills and the wait is long, so the request sits in the batch being collected.
+		BatchedInferenceService service = service().batchSize(32).maxWaitMicros(60_000_000L).build();
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			GameBoard board = board(2);
+			Future<Integer> waiting = pool.submit(() -> service.chooseAction(board, Player.PLAYER_ONE));
+			Thread.sleep(200);
+			service.close();
+			assertEquals(expectedAction(board), (int) waiting.get(10, TimeUnit.SECONDS));
+		} finally {
+			service.close();
+			pool.shutdownNow();
+		}
+
+		try {
+			service.chooseAction(board(3), Player.PLAYER_ONE);
+			fail("A closed service answered a request");
+		} catch (MancalaException e) {
+			// expected
+		}
+	}
+}
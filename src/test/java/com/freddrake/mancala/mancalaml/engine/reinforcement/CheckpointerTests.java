@@ -0,0 +1,163 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQN;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointerTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static IDQN network() {
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		return new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6);
+	}
+
+	private static MultiLayerNetwork model(IDQN dqn) {
+		return (MultiLayerNetwork) dqn.getNeuralNetworks()[0];
+	}
+
+	private static PrioritizedReplayMemory memory(int capacity) {
+		return PrioritizedReplayMemory.builder().capacity(capacity).alpha(1.0).build();
+	}
+
+	private static void assertSameSamples(ReplayMemory expected, ReplayMemory actual) {
+		ReplayMemory.Batch expectedBatch = expected.sample(32, new Random(5));
+		INDArray observations = expectedBatch.getObservations().dup();
+		int[] actions = expectedBatch.getActions().clone();
+		double[] rewards = expectedBatch.getRewards().clone();
+		double[] weights = expectedBatch.getWeights().clone();
+		ReplayMemory.Batch actualBatch = actual.sample(32, new Random(5));
+		assertEquals(observations, actualBatch.getObservations());
+		assertArrayEquals(actions, actualBatch.getActions());
+		assertArrayEquals(rewards, actualBatch.getRewards(), 0);
+		assertArrayEquals(weights, actualBatch.getWeights(), 1e-12);
+	}
+
+	@Test
+	public void restoresTheSnapshotTakenAtTheCheckpoint() {
+		Path location = folder.getRoot().toPath().resolve("checkpoint.bin");
+		IDQN dqn = network();
+		INDArray input = Nd4j.rand(8, 12);
+		dqn.fit(input, Nd4j.rand(8, 6));
+		int[] field = new int[12];
+		PrioritizedReplayMemory memory = memory(16);
+		for (int i = 0; i < 30; i++) {
+			field[i % 12] = i;
+			memory.store(field, i % 6, i, i % 7 == 0, field);
+		}
+		memory.updatePriorities(new int[] {1, 2, 3}, new double[] {5, 0.5, 2}, 3);
+
+		ReplayMemory expected;
+		INDArray params;
+		INDArray updaterState;
+		try (Checkpointer checkpointer = Checkpointer.builder().location(location).interval(5).build()) {
+			assertFalse(checkpointer.checkpoint(dqn, memory, 4, 0));
+			assertTrue(checkpointer.checkpoint(dqn, memory, 5, 1));
+			expected = memory.copyTo(null);
+			params = model(dqn).params().dup();
+			updaterState = model(dqn).getUpdater().getStateViewArray().dup();
+
+			// Training goes on while the snapshot is written.
+			memory.store(field, 0, -1, true, field);
+			dqn.fit(input, Nd4j.rand(8, 6));
+		}
+		assertFalse(Files.exists(location.resolveSibling("checkpoint.bin.tmp")));
+
+		PrioritizedReplayMemory restoredMemory = memory(16);
+		Checkpointer.Checkpoint checkpoint = Checkpointer.builder().location(location).build().restore(restoredMemory);
+		assertEquals(5, checkpoint.getStep());
+		assertEquals(1, checkpoint.getEpoch());
+		assertTrue(checkpoint.isReplayRestored());
+		assertEquals(params, checkpoint.getNetwork().params());
+		assertEquals(updaterState, checkpoint.getNetwork().getUpdater().getStateViewArray());
+		assertEquals(30, restoredMemory.getStored());
+		assertEquals(((PrioritizedReplayMemory) expected).getTotalPriority(), restoredMemory.getTotalPriority(), 1e-9);
+		assertSameSamples(expected, restoredMemory);
+
+		// A memory of another capacity is left empty.
+		ReplayMemory other = new ReplayMemory(16);
+		assertFalse(Checkpointer.builder().location(location).build().restore(other).isReplayRestored());
+		assertEquals(0, other.size());
+		assertNull(Checkpointer.builder().location(location.resolveSibling("missing.bin")).build().restore(other));
+	}
+
+	@Test
+	public void trainingResumesFromTheLatestCheckpoint() throws Exception {
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(2)).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.build();
+		QLearning.QLConfiguration conf = QLearning.QLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(200)
+				.maxStep(300)
+				.expRepMaxSize(1000)
+				.batchSize(16)
+				.targetDqnUpdateFreq(50)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(100)
+				.doubleDQN(true)
+				.build();
+		Path location = folder.getRoot().toPath().resolve("checkpoint.bin");
+
+		ReplayMemory memory = new ReplayMemory(1000);
+		MaskedQLearningDiscreteDense learning = new MaskedQLearningDiscreteDense(gameMDP, network(), conf,
+				new DataManager(folder.getRoot().getAbsolutePath(), false), memory);
+		try (Checkpointer checkpointer = Checkpointer.builder().location(location).interval(100).build()) {
+			learning.setCheckpointer(checkpointer);
+			learning.train();
+			assertTrue(checkpointer.getWritten() + checkpointer.getDeferred() >= 2);
+		}
+
+		// The replay memory holds exactly the transitions of the steps the checkpoint was taken at.
+		ReplayMemory resumedMemory = new ReplayMemory(1000);
+		Checkpointer.Checkpoint checkpoint = Checkpointer.builder().location(location).build().restore(resumedMemory);
+		assertTrue(checkpoint.getStep() >= 100 && checkpoint.getStep() <= learning.getStepCounter());
+		assertEquals(checkpoint.getStep(), resumedMemory.getStored());
+
+		MaskedQLearningDiscreteDense resumed = new MaskedQLearningDiscreteDense(gameMDP,
+				new DQN(checkpoint.getNetwork()), conf, new DataManager(folder.getRoot().getAbsolutePath(), false),
+				resumedMemory);
+		resumed.setStepCounter(checkpoint.getStep());
+		resumed.setEpochCounter(checkpoint.getEpoch());
+		resumed.train();
+		assertTrue(resumed.getStepCounter() >= 300);
+		assertEquals(resumed.getStepCounter(), resumedMemory.getStored());
+	}
+}
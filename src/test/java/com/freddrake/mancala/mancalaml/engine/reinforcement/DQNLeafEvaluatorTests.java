@@ -0,0 +1,64 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.search.MctsEngine;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.network.dqn.IDQN;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DQNLeafEvaluatorTests {
+	// A network whose Q values are its output biases, whatever the position: 0.1 for pod 1 up to 0.6 for pod 6.
+	private static MultiLayerNetwork constantNetwork() {
+		IDQN dqn = new DQNFactoryStdDense(DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(8)
+				.updater(new Adam())
+				.build()).buildDQN(new int[] {12}, 6);
+		MultiLayerNetwork network = (MultiLayerNetwork) dqn.getNeuralNetworks()[0];
+		network.params().assign(0);
+		network.getLayer(1).setParam(DefaultParamInitializer.BIAS_KEY,
+				Nd4j.create(new double[] {0.1, 0.2, 0.3, 0.4, 0.5, 0.6}));
+		return network;
+	}
+
+	@Test
+	public void qValuesAreScaledBackToPoints() {
+		DQNLeafEvaluator evaluator = new DQNLeafEvaluator(constantNetwork(), 0.1, 10);
+
+		// Pod 6 is legal, worth 0.6 scaled, so 6 points, on top of a lead of 2.
+		GameBoard board = new GameBoard(12, 10, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4);
+		assertEquals(Math.tanh(8 / 10.0), evaluator.evaluate(board, Player.PLAYER_ONE), 1e-6);
+
+		// With pods 5 and 6 empty the best legal move is pod 4, worth 4 points, against a lead of -2.
+		board = new GameBoard(12, 14, 4, 4, 4, 4, 0, 0, 4, 4, 4, 4, 4, 4);
+		assertEquals(Math.tanh(2 / 10.0), evaluator.evaluate(board, Player.PLAYER_ONE), 1e-6);
+	}
+
+	@Test
+	public void guidesTheTreeSearch() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ModelSerializer.writeModel(constantNetwork(), bytes, false);
+		try (MctsEngine engine = MctsEngine.builder()
+				.player(Player.PLAYER_ONE)
+				.threads(1)
+				.simulations(500L)
+				.leafEvaluator(DQNLeafEvaluator.supplier(bytes.toByteArray(), 0.1, 10))
+				.build()) {
+			GameBoard board = new GameBoard();
+			int move = engine.chooseMove(board);
+			assertTrue((board.validMoveMask(Player.PLAYER_ONE) & 1 << move - 1) != 0);
+			assertEquals(500, engine.getLastSimulations());
+		}
+	}
+}
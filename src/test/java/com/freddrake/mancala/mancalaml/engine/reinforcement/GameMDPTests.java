@@ -0,0 +1,192 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.AbstractGamingEngine;
+import com.freddrake.mancala.mancalaml.engine.GamingEngine;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebase;
+import com.freddrake.mancala.mancalaml.engine.endgame.EndgameTablebaseGenerator;
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.mdp.MDP;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameMDPTests {
+	// A random opponent that counts how often it is closed.
+	private static class CloseableEngine implements GamingEngine, AutoCloseable {
+		private final GamingEngine engine = RandomEngine.builder().player(Player.PLAYER_TWO).build();
+		int closed;
+
+		@Override
+		public int chooseMove(GameBoard gameBoard) {
+			return engine.chooseMove(gameBoard);
+		}
+
+		@Override
+		public boolean isGameOver(GameBoard gameBoard) {
+			return engine.isGameOver(gameBoard);
+		}
+
+		@Override
+		public boolean executeMove(GameBoard gameBoard) {
+			return engine.executeMove(gameBoard);
+		}
+
+		@Override
+		public void close() {
+			closed++;
+		}
+	}
+
+	@Test
+	public void instancesCloseTheEnginesMadeForThem() {
+		CloseableEngine shared = new CloseableEngine();
+		List<CloseableEngine> made = new ArrayList<>();
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(shared)
+				.oppositionEngineFactory(() -> {
+					CloseableEngine engine = new CloseableEngine();
+					made.add(engine);
+					return engine;
+				})
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.build();
+
+		MDP<GameObservation, Integer, DiscreteSpace> instance = gameMDP.newInstance();
+		assertEquals(1, made.size());
+		instance.close();
+		assertEquals(1, made.get(0).closed);
+
+		// The engine the MDP was built with belongs to its caller.
+		gameMDP.close();
+		assertEquals(0, shared.closed);
+	}
+
+	// Plays the moves the tablebase says keep the position's value.
+	private static class TablebaseEngine extends AbstractGamingEngine {
+		private final EndgameTablebase tablebase;
+
+		TablebaseEngine(EndgameTablebase tablebase, Player player) {
+			this.tablebase = tablebase;
+			this.player = player;
+		}
+
+		@Override
+		public int chooseMove(GameBoard gameBoard) {
+			return tablebase.bestMove(gameBoard, player);
+		}
+
+		@Override
+		public boolean isGameOver(GameBoard gameBoard) {
+			return gameBoard.isGameOver(player);
+		}
+	}
+
+	private static GameMDP endgameMDP(GameBoard board, EndgameTablebase opponentTable, EndgameTablebase tablebase) {
+		return GameMDP.builder()
+				.gameBoard(board)
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(new TablebaseEngine(opponentTable, Player.PLAYER_TWO))
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.tablebase(tablebase)
+				.leadRewards(true)
+				.build();
+	}
+
+	@Test
+	public void tablebaseEndingsKeepTheReturnOfPlayingOn() {
+		EndgameTablebase tablebase = EndgameTablebase.of(EndgameTablebaseGenerator.builder().maxPebbles(8).build()
+				.generate(), 8);
+		Random random = new Random(9);
+		for (int game = 0; game < 50; game++) {
+			int[] pebbles = new int[12];
+			for (int pebble = 0; pebble < 7; pebble++) {
+				pebbles[random.nextInt(12)]++;
+			}
+			pebbles[random.nextInt(6)]++;
+			GameBoard start = new GameBoard(random.nextInt(20), random.nextInt(20), pebbles);
+			int margin = tablebase.margin(start, Player.PLAYER_ONE);
+
+			// Played out with best play on both sides, the rewards add up to the tablebase's margin...
+			GameBoard board = new GameBoard();
+			start.copyInto(board);
+			GameMDP playedOut = endgameMDP(board, tablebase, null);
+			double played = 0;
+			StepReply<GameObservation> reply;
+			do {
+				reply = playedOut.step(tablebase.bestMove(board, Player.PLAYER_ONE) - 1);
+				played += reply.getReward();
+			} while (!reply.isDone());
+			assertEquals(margin, played, 0);
+
+			// ...and so do the rewards of an episode that ends at the tablebase after the first move.
+			board = new GameBoard();
+			start.copyInto(board);
+			GameMDP ended = endgameMDP(board, tablebase, tablebase);
+			reply = ended.step(tablebase.bestMove(board, Player.PLAYER_ONE) - 1);
+			assertTrue(reply.isDone());
+			assertEquals(margin, reply.getReward(), 0);
+		}
+	}
+
+	@Test
+	public void rewardsArePointsGainedUnlessTheLeadIsAskedFor() {
+		for (boolean leadRewards : new boolean[] {false, true}) {
+			GameMDP gameMDP = GameMDP.builder()
+					.player(Player.PLAYER_ONE)
+					.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(6)).build())
+					.discreteSpace(new DiscreteSpace(6))
+					.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+					.illegalMoveReward(-100)
+					.leadRewards(leadRewards)
+					.build();
+			GameBoard board = gameMDP.getGameBoard();
+			gameMDP.reset();
+			double rewards = 0;
+			while (!gameMDP.isDone()) {
+				rewards += gameMDP.step(Integer.numberOfTrailingZeros(board.validMoveMask(Player.PLAYER_ONE)))
+						.getReward();
+			}
+			assertEquals(leadRewards ? board.pointsLead(Player.PLAYER_ONE) : board.playerPoints(Player.PLAYER_ONE),
+					rewards, 0);
+		}
+	}
+
+	@Test
+	public void moveTraceStartsAfreshWithEachGame() {
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(4)).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.moveTraceCapacity(500)
+				.build();
+		GameBoard board = gameMDP.getGameBoard();
+		for (int game = 0; game < 2; game++) {
+			gameMDP.reset();
+			assertEquals(0, board.getMoveTrace().totalRecorded());
+			int steps = 0;
+			while (!gameMDP.isDone()) {
+				gameMDP.step(Integer.numberOfTrailingZeros(board.validMoveMask(Player.PLAYER_ONE)));
+				steps++;
+			}
+			// Every step is one move of ours plus the opponent's replies.
+			assertTrue(board.getMoveTrace().totalRecorded() >= steps);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionCacheTests {
+	private static double[] values(long key) {
+		double[] values = new double[ActionMask.ACTIONS];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = key * 10 + i;
+		}
+		return values;
+	}
+
+	@Test
+	public void evictsEntriesThatWereNotUsed() {
+		PositionCache cache = new PositionCache(3);
+		double[] into = new double[ActionMask.ACTIONS];
+		cache.put(1, values(1));
+		cache.put(2, values(2));
+		cache.put(3, values(3));
+
+		// The first insert sweeps every reference bit, so 1 goes; 2 then stays because it was used.
+		cache.put(4, values(4));
+		assertTrue(cache.get(2, into));
+		cache.put(5, values(5));
+
+		assertFalse(cache.get(1, into));
+		assertTrue(cache.get(2, into));
+		assertArrayEquals(values(2), into, 0);
+		assertFalse(cache.get(3, into));
+		assertTrue(cache.get(4, into));
+		assertTrue(cache.get(5, into));
+		assertEquals(2, cache.getEvictions());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void neverReturnsStaleValues() {
+		PositionCache cache = new PositionCache(100);
+		Map<Long, double[]> live = new HashMap<>();
+		Random random = new Random(5);
+		double[] into = new double[ActionMask.ACTIONS];
+		for (int i = 0; i < 200000; i++) {
+			long key = random.nextInt(300);
+			if (cache.get(key, into)) {
+				assertArrayEquals(values(key), into, 0);
+				assertTrue(live.containsKey(key));
+			} else {
+				cache.put(key, values(key));
+				live.put(key, values(key));
+			}
+		}
+		assertEquals(100, cache.size());
+		assertEquals(200000, cache.getHits() + cache.getMisses());
+	}
+
+	@Test
+	public void invalidateDropsEverything() {
+		PositionCache cache = new PositionCache(10);
+		cache.put(7, values(7));
+		cache.invalidate();
+
+		assertFalse(cache.get(7, new double[ActionMask.ACTIONS]));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getVersion());
+	}
+}
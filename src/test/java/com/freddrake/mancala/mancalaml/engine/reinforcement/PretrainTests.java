@@ -0,0 +1,169 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecord;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordReader;
+import com.freddrake.mancala.mancalaml.engine.record.GameRecordWriter;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PretrainTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path record(int games, long seed) {
+		Path path = folder.getRoot().toPath().resolve("games-" + seed + ".rec");
+		try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+			GameRecordGenerator.builder()
+					.playerEngine(Tournament.randomEngine(Player.PLAYER_ONE))
+					.opponentEngine(Tournament.randomEngine(Player.PLAYER_TWO))
+					.games(games)
+					.threads(2)
+					.seed(seed)
+					.build()
+					.write(writer);
+		}
+		return path;
+	}
+
+	// The masked squared error of the network on a batch.
+	private static double error(MultiLayerNetwork network, DataSet batch) {
+		INDArray output = network.output(batch.getFeatures());
+		return output.sub(batch.getLabels()).muli(batch.getLabelsMaskArray()).norm2Number().doubleValue();
+	}
+
+	@Test
+	public void labelsAreTheDiscountedReturnOfTheMoveTaken() {
+		GameRecordReader reader = GameRecordReader.open(record(1, 1));
+		GameRecord game = new GameRecord();
+		reader.read(0, game);
+
+		try (GameRecordDataSetIterator iterator = GameRecordDataSetIterator.builder()
+				.reader(reader)
+				.batchSize(4)
+				.gamma(0.5)
+				.rewardFactor(1.0)
+				.workers(2)
+				.seed(2L)
+				.build()) {
+			assertEquals(game.getSteps(), iterator.getMoves());
+			int batches = 0;
+			while (iterator.hasNext()) {
+				DataSet batch = iterator.next();
+				batches++;
+				for (int row = 0; row < 4; row++) {
+					assertEquals(1, batch.getLabelsMaskArray().getRow(row).sumNumber().intValue());
+					boolean matched = false;
+					for (int step = 0; step < game.getSteps() && !matched; step++) {
+						int action = game.getAction(step);
+						boolean samePosition = batch.getLabelsMaskArray().getDouble(row, action) == 1;
+						for (int pod = 0; pod < 12 && samePosition; pod++) {
+							samePosition = batch.getFeatures().getDouble(row, pod) == game.pebbles(step, pod);
+						}
+						if (samePosition) {
+							double expected = 0;
+							for (int later = game.getSteps() - 1; later >= step; later--) {
+								expected = game.getReward(later) + 0.5 * expected;
+							}
+							matched = Math.abs(batch.getLabels().getDouble(row, action) - expected) < 1e-6;
+						}
+					}
+					assertTrue(matched);
+				}
+			}
+			assertEquals((game.getSteps() + 3) / 4, batches);
+		}
+	}
+
+	@Test
+	public void truncatedGamesAreNeverDrawn() {
+		Path path = folder.getRoot().toPath().resolve("truncated.rec");
+		try (GameRecordWriter writer = GameRecordWriter.open(path)) {
+			GameMDP mdp = GameMDP.builder()
+					.player(Player.PLAYER_ONE)
+					.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(3)).build())
+					.discreteSpace(new DiscreteSpace(6))
+					.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+					.illegalMoveReward(0)
+					.recordWriter(writer)
+					.build();
+			GameBoard board = mdp.getGameBoard();
+			for (int game = 0; game < 3; game++) {
+				mdp.reset();
+				// The middle game is cut off after two moves.
+				for (int step = 0; !mdp.isDone() && (game != 1 || step < 2); step++) {
+					mdp.step(Integer.numberOfTrailingZeros(board.validMoveMask(Player.PLAYER_ONE)));
+				}
+			}
+			mdp.close();
+		}
+
+		GameRecordReader reader = GameRecordReader.open(path);
+		assertEquals(3, reader.size());
+		assertEquals(GameRecord.TRUNCATED, reader.flags(1));
+		try (GameRecordDataSetIterator iterator = GameRecordDataSetIterator.builder()
+				.reader(reader)
+				.workers(1)
+				.build()) {
+			assertEquals(reader.steps(0) + reader.steps(2), iterator.getMoves());
+		}
+	}
+
+	@Test
+	public void pretrainingFitsTheRecordedReturns() throws Exception {
+		GameRecordReader reader = GameRecordReader.open(record(300, 3));
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(32)
+				.updater(new Adam(0.01))
+				.build();
+		ByteArrayOutputStream initial = new ByteArrayOutputStream();
+		new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6).save(initial);
+
+		ByteArrayOutputStream trained = new ByteArrayOutputStream();
+		PretrainTrainer.builder()
+				.netConfiguration(netConfiguration)
+				.records(reader)
+				.networkInputStream(new ByteArrayInputStream(initial.toByteArray()))
+				.networkOutputStream(trained)
+				.epochs(3)
+				.batchSize(64)
+				.workers(2)
+				.build()
+				.train();
+
+		try (GameRecordDataSetIterator iterator = GameRecordDataSetIterator.builder()
+				.reader(reader)
+				.batchSize(1024)
+				.workers(1)
+				.seed(4L)
+				.build()) {
+			DataSet batch = iterator.next();
+			double before = error(ModelSerializer.restoreMultiLayerNetwork(
+					new ByteArrayInputStream(initial.toByteArray())), batch);
+			double after = error(ModelSerializer.restoreMultiLayerNetwork(
+					new ByteArrayInputStream(trained.toByteArray())), batch);
+			assertTrue(before + " -> " + after, after < before * 0.8);
+		}
+	}
+}
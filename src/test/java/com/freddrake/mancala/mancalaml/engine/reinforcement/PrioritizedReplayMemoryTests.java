@@ -0,0 +1,143 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrioritizedReplayMemoryTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final int[] FIELD = new int[12];
+
+	private static PrioritizedReplayMemory filled(int capacity, int transitions) {
+		PrioritizedReplayMemory memory = PrioritizedReplayMemory.builder()
+				.capacity(capacity)
+				.alpha(1.0)
+				.betaStart(0.5)
+				.betaSteps(10L)
+				.build();
+		for (int i = 0; i < transitions; i++) {
+			memory.store(FIELD, i % 6, i, false, FIELD);
+		}
+		return memory;
+	}
+
+	@Test
+	public void newTransitionsGetTheHighestPriority() {
+		PrioritizedReplayMemory memory = filled(10, 4);
+		memory.updatePriorities(new int[] {0, 1}, new double[] {5, -2}, 2);
+		memory.store(FIELD, 0, 0, false, FIELD);
+
+		assertEquals(5.001, memory.priority(0), 1e-9);
+		assertEquals(2.001, memory.priority(1), 1e-9);
+		assertEquals(5.001, memory.priority(4), 1e-9);
+		assertEquals(5.001 + 2.001 + 1 + 1 + 5.001, memory.getTotalPriority(), 1e-9);
+	}
+
+	@Test
+	public void samplesInProportionToPriority() {
+		// A capacity that is not a power of two leaves empty leaves in the tree.
+		PrioritizedReplayMemory memory = filled(5, 5);
+		memory.updatePriorities(new int[] {0, 1, 2, 3, 4}, new double[] {1, 2, 3, 4, 0}, 5);
+
+		Random random = new Random(1);
+		int[] counts = new int[5];
+		int samples = 0;
+		for (int i = 0; i < 2000; i++) {
+			ReplayMemory.Batch batch = memory.sample(10, random);
+			for (int row = 0; row < batch.size(); row++) {
+				counts[batch.getSlots()[row]]++;
+				samples++;
+			}
+		}
+		double total = memory.getTotalPriority();
+		for (int slot = 0; slot < 5; slot++) {
+			assertEquals(memory.priority(slot) / total, counts[slot] / (double) samples, 0.01);
+		}
+	}
+
+	@Test
+	public void weightsFavourRareTransitions() {
+		PrioritizedReplayMemory memory = filled(4, 4);
+		memory.updatePriorities(new int[] {0, 1, 2, 3}, new double[] {1, 3, 3, 3}, 4);
+
+		ReplayMemory.Batch batch = memory.sample(64, new Random(2));
+		assertEquals(0.55, memory.getBeta(), 1e-9);
+		for (int row = 0; row < batch.size(); row++) {
+			int slot = batch.getSlots()[row];
+			double weight = batch.getWeights()[row];
+			assertTrue(weight > 0 && weight <= 1);
+			// The smallest priority has the largest weight, 1.
+			assertEquals(slot == 0 ? 1 : Math.pow(memory.priority(0) / memory.priority(slot), 0.5), weight,
+					1e-9);
+			assertEquals(slot, batch.getRewards()[row], 0);
+		}
+
+		for (int i = 0; i < 20; i++) {
+			memory.sample(1, new Random(i));
+		}
+		assertEquals(1, memory.getBeta(), 0);
+	}
+
+	@Test
+	public void trainingUpdatesPriorities() throws Exception {
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(2)).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.build();
+		QLearning.QLConfiguration conf = QLearning.QLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(200)
+				.maxStep(300)
+				.expRepMaxSize(1000)
+				.batchSize(16)
+				.targetDqnUpdateFreq(50)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(100)
+				.doubleDQN(true)
+				.build();
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		PrioritizedReplayMemory memory = PrioritizedReplayMemory.builder().capacity(1000).build();
+		MaskedQLearningDiscreteDense learning = new MaskedQLearningDiscreteDense(gameMDP,
+				new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6), conf,
+				new DataManager(folder.getRoot().getAbsolutePath(), false), memory);
+		learning.train();
+
+		assertEquals(learning.getStepCounter(), memory.getStored());
+		// Replayed transitions have their TD error as priority instead of the initial one.
+		int updated = 0;
+		for (int slot = 0; slot < memory.size(); slot++) {
+			if (memory.priority(slot) != 1) {
+				updated++;
+			}
+		}
+		assertTrue(updated > 0);
+		assertTrue(learning.getCurrentDQN().getLatestScore() > 0);
+	}
+}
@@ -0,0 +1,103 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayMemoryTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static int[] field(int value) {
+		int[] field = new int[12];
+		for (int i = 0; i < field.length; i++) {
+			field[i] = (value + i) % 49;
+		}
+		return field;
+	}
+
+	@Test
+	public void samplesWhatWasStored() {
+		ReplayMemory memory = new ReplayMemory(100);
+		for (int i = 0; i < 250; i++) {
+			memory.store(field(i), i % 6, i * 0.5, i % 3 == 0, field(i + 1));
+		}
+		assertEquals(100, memory.size());
+		assertEquals(250, memory.getStored());
+		assertEquals(3000, memory.getMemoryBytes());
+
+		ReplayMemory.Batch batch = memory.sample(64, new Random(1));
+		for (int row = 0; row < batch.size(); row++) {
+			// Only the last 100 transitions are left, and slot s holds transition 200 + s or 100 + s.
+			int slot = batch.getSlots()[row];
+			int i = slot < 50 ? 200 + slot : 100 + slot;
+			assertEquals(i % 6, batch.getActions()[row]);
+			assertEquals(i * 0.5, batch.getRewards()[row], 0);
+			assertEquals(i % 3 == 0, batch.getDone()[row]);
+			for (int pod = 0; pod < 12; pod++) {
+				assertEquals(field(i)[pod], batch.getObservations().getDouble(row, pod), 0);
+				assertEquals(field(i + 1)[pod], batch.getNextObservations().getDouble(row, pod), 0);
+			}
+		}
+	}
+
+	@Test
+	public void trainingUsesTheOffHeapMemory() throws Exception {
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(2)).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.build();
+		QLearning.QLConfiguration conf = QLearning.QLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(200)
+				.maxStep(300)
+				.expRepMaxSize(1000)
+				.batchSize(16)
+				.targetDqnUpdateFreq(50)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(100)
+				.doubleDQN(true)
+				.build();
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		ReplayMemory memory = new ReplayMemory(1000);
+		MaskedQLearningDiscreteDense learning = new MaskedQLearningDiscreteDense(gameMDP,
+				new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6), conf,
+				new DataManager(folder.getRoot().getAbsolutePath(), false), memory);
+		learning.train();
+
+		// An epoch that starts before maxStep runs to the end of its game.
+		assertEquals(learning.getStepCounter(), memory.getStored());
+		assertTrue(memory.getStored() >= 300);
+		assertTrue(learning.getCurrentDQN().getLatestScore() > 0);
+		// Every stored action was legal, so no episode ended with the illegal move reward.
+		ReplayMemory.Batch batch = memory.sample(1000, new Random(3));
+		for (int row = 0; row < batch.size(); row++) {
+			assertTrue(batch.getRewards()[row] > -10);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransitionQueueTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void dropsWhenFull() {
+		TransitionQueue queue = new TransitionQueue(3);
+		int[] field = new int[12];
+		assertEquals(4, queue.getCapacity());
+		for (int i = 0; i < 4; i++) {
+			field[0] = i;
+			assertTrue(queue.offer(field, i, i, false, field));
+		}
+		assertFalse(queue.offer(field, 5, 5, false, field));
+		assertEquals(1, queue.getDropped());
+		assertEquals(4, queue.getDepth());
+
+		int[] expected = {0};
+		assertEquals(4, queue.drain((observation, action, reward, done, next) -> {
+			assertEquals(expected[0], observation[0]);
+			assertEquals(expected[0]++, action);
+		}, 10));
+		assertEquals(0, queue.getDepth());
+		assertTrue(queue.offer(field, 1, 1, true, field));
+	}
+
+	@Test
+	public void everyTransitionArrivesOnce() throws Exception {
+		int producers = 4;
+		int perProducer = 50000;
+		TransitionQueue queue = new TransitionQueue(1024);
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			threads[p] = new Thread(() -> {
+				int[] field = new int[12];
+				int[] next = new int[12];
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < perProducer; i++) {
+					// The pods carry the producer and the sequence number, the reward a checksum.
+					field[0] = producer;
+					field[1] = i & 0x7F;
+					field[2] = (i >> 7) & 0x7F;
+					field[3] = (i >> 14) & 0x7F;
+					next[0] = producer;
+					while (!queue.offer(field, i % 6, producer * 1000000 + i, i % 2 == 0, next)) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[p].start();
+		}
+		start.countDown();
+
+		int[] lastSeen = {-1, -1, -1, -1};
+		int total = 0;
+		while (total < producers * perProducer) {
+			total += queue.drain((observation, action, reward, done, next) -> {
+				int producer = observation[0];
+				int i = observation[1] | observation[2] << 7 | observation[3] << 14;
+				// Each producer's transitions arrive in order, complete and untorn.
+				assertEquals(lastSeen[producer] + 1, i);
+				lastSeen[producer] = i;
+				assertEquals(i % 6, action);
+				assertEquals(producer * 1000000 + i, reward, 0);
+				assertEquals(i % 2 == 0, done);
+				assertEquals(producer, next[0]);
+			}, 256);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(producers * perProducer, queue.getDrained());
+		assertEquals(queue.getOffered(), queue.getDrained() + queue.getDropped());
+	}
+
+	@Test
+	public void actorsFeedTheLearner() throws Exception {
+		GameMDP gameMDP = GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(RandomEngine.builder().player(Player.PLAYER_TWO).build())
+				.oppositionEngineFactory(() -> RandomEngine.builder().player(Player.PLAYER_TWO).build())
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.build();
+		QLearning.QLConfiguration conf = QLearning.QLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(50)
+				.maxStep(200)
+				.expRepMaxSize(10000)
+				.batchSize(16)
+				.targetDqnUpdateFreq(50)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(100)
+				.doubleDQN(true)
+				.build();
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		ActorLearnerQLearningDiscreteDense learning = new ActorLearnerQLearningDiscreteDense(gameMDP,
+				new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6), conf,
+				new DataManager(folder.getRoot().getAbsolutePath(), false), 2, 4096, 10, null);
+		learning.train();
+
+		assertEquals(200, learning.getStepCounter());
+		assertEquals(200 - 11, learning.getUpdates());
+		assertTrue(learning.getActorSteps() >= 16);
+		assertEquals(learning.getQueue().getOffered(),
+				learning.getQueue().getDrained() + learning.getQueue().getDropped() + learning.getQueue().getDepth());
+	}
+}
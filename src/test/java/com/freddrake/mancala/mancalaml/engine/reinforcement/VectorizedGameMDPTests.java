@@ -0,0 +1,142 @@
+package com.freddrake.mancala.mancalaml.engine.reinforcement;
+
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import org.deeplearning4j.gym.StepReply;
+import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.util.DataManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.Adam;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VectorizedGameMDPTests {
+	private static final int ENVIRONMENTS = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static GameMDP gameMDP(RandomEngine opponent) {
+		return gameMDP(opponent, false);
+	}
+
+	private static GameMDP gameMDP(RandomEngine opponent, boolean leadRewards) {
+		return GameMDP.builder()
+				.player(Player.PLAYER_ONE)
+				.oppositionEngine(opponent)
+				.discreteSpace(new DiscreteSpace(6))
+				.observationSpace(new ArrayObservationSpace<>(new int[] {12}))
+				.illegalMoveReward(-100)
+				.maskIllegalMoves(true)
+				.leadRewards(leadRewards)
+				.build();
+	}
+
+	private static RandomEngine opponent(int seed) {
+		return RandomEngine.builder().player(Player.PLAYER_TWO).random(new Random(seed)).build();
+	}
+
+	@Test
+	public void lockstepMatchesSingleGames() {
+		assertLockstepMatchesSingleGames(false);
+	}
+
+	@Test
+	public void lockstepMatchesSingleGamesWithLeadRewards() {
+		assertLockstepMatchesSingleGames(true);
+	}
+
+	private static void assertLockstepMatchesSingleGames(boolean leadRewards) {
+		// Each board gets its own seeded opponent, and so does the single game it is compared with.
+		GameMDP[] singles = new GameMDP[ENVIRONMENTS];
+		RandomEngine[] opponents = new RandomEngine[ENVIRONMENTS];
+		for (int i = 0; i < ENVIRONMENTS; i++) {
+			singles[i] = gameMDP(opponent(i), leadRewards);
+			singles[i].reset();
+			opponents[i] = opponent(i);
+		}
+		VectorizedGameMDP vectorized = singles[0].vectorize(ENVIRONMENTS, (boards, indices, count, moves) -> {
+			for (int j = 0; j < count; j++) {
+				moves[j] = opponents[indices[j]].chooseMove(boards[indices[j]]);
+			}
+		});
+		vectorized.reset();
+
+		Random random = new Random(3);
+		int[] actions = new int[ENVIRONMENTS];
+		int episodes = 0;
+		for (int step = 0; step < 500; step++) {
+			for (int i = 0; i < ENVIRONMENTS; i++) {
+				actions[i] = singles[i].getActionSpace().randomAction();
+				if (random.nextBoolean()) {
+					actions[i] = 31 - Integer.numberOfLeadingZeros(vectorized.legalActions(i));
+				}
+			}
+			VectorizedGameMDP.StepReply reply = vectorized.step(actions);
+
+			for (int i = 0; i < ENVIRONMENTS; i++) {
+				StepReply<GameObservation> single = singles[i].step(actions[i]);
+				assertEquals(single.getReward(), reply.getRewards()[i], 0);
+				assertEquals(single.isDone(), reply.getDone()[i]);
+				if (single.isDone()) {
+					singles[i].reset();
+					episodes++;
+				}
+				assertArrayEquals(singles[i].getGameBoard().pebbleField(Player.PLAYER_ONE),
+						vectorized.getGameBoard(i).pebbleField(Player.PLAYER_ONE));
+				INDArray row = reply.getObservations().getRow(i);
+				for (int pod = 0; pod < 12; pod++) {
+					assertEquals(vectorized.getGameBoard(i).pebbleField(Player.PLAYER_ONE)[pod], row.getDouble(pod), 0);
+				}
+			}
+		}
+		assertTrue(episodes > 20);
+		assertEquals(episodes, vectorized.getEpisodes());
+		assertEquals(500, vectorized.getSteps());
+	}
+
+	@Test
+	public void trainingStoresATransitionPerEnvironment() throws Exception {
+		GameMDP gameMDP = gameMDP(opponent(1));
+		VectorizedGameMDP environment = gameMDP.vectorize(ENVIRONMENTS, null);
+		QLearning.QLConfiguration conf = QLearning.QLConfiguration.builder()
+				.seed(123)
+				.maxEpochStep(20)
+				.maxStep(100)
+				.expRepMaxSize(1000)
+				.batchSize(16)
+				.targetDqnUpdateFreq(50)
+				.updateStart(10)
+				.rewardFactor(0.1)
+				.gamma(0.9)
+				.errorClamp(1.0)
+				.minEpsilon(0.1f)
+				.epsilonNbStep(50)
+				.doubleDQN(true)
+				.build();
+		DQNFactoryStdDense.Configuration netConfiguration = DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build();
+		VectorizedQLearningDiscreteDense learning = new VectorizedQLearningDiscreteDense(gameMDP, environment,
+				new DQNFactoryStdDense(netConfiguration).buildDQN(new int[] {12}, 6), conf,
+				new DataManager(folder.getRoot().getAbsolutePath(), false));
+		learning.train();
+
+		assertEquals(100, learning.getStepCounter());
+		assertEquals(100, environment.getSteps());
+		assertEquals(100 * ENVIRONMENTS, learning.getTransitions());
+		assertTrue(environment.getEpisodes() > 0);
+	}
+}
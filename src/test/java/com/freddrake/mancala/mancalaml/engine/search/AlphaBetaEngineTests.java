@@ -0,0 +1,90 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.RandomEngine;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.TournamentRecord;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlphaBetaEngineTests {
+	// Plain minimax without pruning or ordering, to check the search against.
+	private static int minimax(GameBoard board, Player side, int depth) {
+		int validMoves = board.validMoveMask(side);
+		if (validMoves == 0) {
+			return SearchWorker.finalScore(board, side);
+		}
+		if (depth == 0) {
+			return board.playerPoints(side) - board.playerPoints(SearchWorker.opponent(side));
+		}
+		int best = Integer.MIN_VALUE;
+		for (int move = 0; move < 6; move++) {
+			if ((validMoves & (1 << move)) == 0) {
+				continue;
+			}
+			GameBoard child = new GameBoard(board.playerPoints(PLAYER_ONE), board.playerPoints(PLAYER_TWO),
+					board.pebbleField(PLAYER_ONE));
+			int score = child.executeMove(side, move + 1)
+					? minimax(child, side, depth - 1)
+					: -minimax(child, SearchWorker.opponent(side), depth - 1);
+			best = Math.max(best, score);
+		}
+		return best;
+	}
+
+	@Test
+	public void scoresMatchMinimax() {
+		Random random = new Random(8);
+		RandomEngine playerOne = RandomEngine.builder().player(PLAYER_ONE).random(random).build();
+		RandomEngine playerTwo = RandomEngine.builder().player(PLAYER_TWO).random(random).build();
+		AlphaBetaEngine search = AlphaBetaEngine.builder().player(PLAYER_ONE).maxDepth(5).moveTimeMillis(0L).build();
+
+		GameBoard board = new GameBoard();
+		int checked = 0;
+		while (checked < 200) {
+			board.resetGameBoard();
+			int turns = random.nextInt(15);
+			for (int turn = 0; turn < turns; turn++) {
+				if (playerOne.executeMove(board) || playerTwo.executeMove(board)) {
+					break;
+				}
+			}
+			if (Integer.bitCount(board.validMoveMask(PLAYER_ONE)) < 2) {
+				continue;
+			}
+
+			int move = search.chooseMove(board);
+			GameBoard child = new GameBoard(board.playerPoints(PLAYER_ONE), board.playerPoints(PLAYER_TWO),
+					board.pebbleField(PLAYER_ONE));
+			int depth = search.getLastDepth();
+			int moveScore = child.executeMove(PLAYER_ONE, move)
+					? minimax(child, PLAYER_ONE, depth - 1)
+					: -minimax(child, PLAYER_TWO, depth - 1);
+
+			assertEquals(minimax(board, PLAYER_ONE, depth), search.getLastScore());
+			assertEquals(search.getLastScore(), moveScore);
+			checked++;
+		}
+	}
+
+	@Test
+	public void beatsRandom() {
+		TournamentRecord record = Tournament.builder()
+				.playerOneEngine(random -> AlphaBetaEngine.builder().player(PLAYER_ONE).maxDepth(4).moveTimeMillis(0L).build())
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(50)
+				.threads(2)
+				.seed(1L)
+				.build()
+				.play();
+
+		assertTrue(record.toString(), record.getWins() >= 45);
+	}
+}
@@ -0,0 +1,41 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.TournamentRecord;
+import org.junit.Test;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MctsEngineTests {
+	@Test
+	public void findsTheOnlyWinningMove() {
+		// Endgames where exhaustive search finds exactly one winning move, and every other move loses.
+		GameBoard first = new GameBoard(20, 22, 0, 0, 2, 0, 1, 1, 1, 0, 0, 0, 1, 0);
+		GameBoard second = new GameBoard(20, 23, 0, 1, 1, 0, 2, 0, 0, 0, 0, 0, 1, 0);
+		try (MctsEngine engine = MctsEngine.builder().player(PLAYER_ONE).threads(1).simulations(5_000L).seed(1L).build()) {
+			assertEquals(6, engine.chooseMove(first));
+			assertTrue(engine.getLastScore() > 0);
+			assertEquals(5, engine.chooseMove(second));
+			assertEquals(5_000, engine.getLastSimulations());
+		}
+	}
+
+	@Test
+	public void sharedTreeBeatsRandom() {
+		TournamentRecord record = Tournament.builder()
+				.playerOneEngine(random -> MctsEngine.builder().player(PLAYER_ONE).threads(3)
+						.simulations(2_000L).nodePoolSize(1 << 14).seed(random.nextLong()).build())
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(30)
+				.threads(1)
+				.seed(3L)
+				.build()
+				.play();
+
+		assertTrue(record.toString(), record.getWins() >= 27);
+	}
+}
@@ -0,0 +1,80 @@
+package com.freddrake.mancala.mancalaml.engine.search;
+
+import com.freddrake.mancala.mancalaml.engine.Tournament;
+import com.freddrake.mancala.mancalaml.engine.TournamentRecord;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_ONE;
+import static com.freddrake.mancala.mancalaml.Player.PLAYER_TWO;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.LOWER_BOUND;
+import static com.freddrake.mancala.mancalaml.engine.search.TranspositionTable.MISS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelSearchEngineTests {
+	@Test
+	public void tableKeepsDeeperEntries() {
+		TranspositionTable table = new TranspositionTable(1024);
+		table.store(42, 7, LOWER_BOUND, 3, -100_015);
+		table.store(42, 5, LOWER_BOUND, 1, 12);
+
+		long entry = table.probe(42);
+		assertNotEquals(MISS, entry);
+		assertEquals(7, TranspositionTable.depth(entry));
+		assertEquals(LOWER_BOUND, TranspositionTable.bound(entry));
+		assertEquals(3, TranspositionTable.move(entry));
+		assertEquals(-100_015, TranspositionTable.score(entry));
+		assertEquals(MISS, table.probe(42 + 1024));
+	}
+
+	@Test
+	public void concurrentWritersNeverMixEntries() throws Exception {
+		// Keys collide constantly in a small table; every entry's contents are derived from its key,
+		// so a torn entry that got through would show up as a mismatch.
+		TranspositionTable table = new TranspositionTable(64);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Future<?>[] writers = new Future<?>[4];
+		for (int t = 0; t < writers.length; t++) {
+			long seed = t;
+			writers[t] = executor.submit(() -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				for (int i = 0; i < 2_000_000; i++) {
+					long key = random.nextLong(4096) * 0x9E3779B97F4A7C15L;
+					long entry = table.probe(key);
+					if (entry != MISS) {
+						assertEquals((int) (key >>> 40), TranspositionTable.score(entry));
+						assertEquals((int) (key >>> 8) & 0x7, TranspositionTable.move(entry));
+					}
+					table.store(key, 1, LOWER_BOUND, (int) (key >>> 8) & 0x7, (int) (key >>> 40));
+				}
+			});
+		}
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void beatsRandom() {
+		TournamentRecord record = Tournament.builder()
+				.playerOneEngine(random -> ParallelSearchEngine.builder().player(PLAYER_ONE).threads(3)
+						.maxDepth(5).moveTimeMillis(0L).transpositionTableSize(1 << 12).build())
+				.playerTwoEngine(Tournament.randomEngine(PLAYER_TWO))
+				.games(30)
+				.threads(1)
+				.seed(2L)
+				.build()
+				.play();
+
+		assertTrue(record.toString(), record.getWins() >= 27);
+	}
+}
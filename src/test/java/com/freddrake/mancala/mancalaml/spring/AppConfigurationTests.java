@@ -0,0 +1,92 @@
+package com.freddrake.mancala.mancalaml.spring;
+
+import com.freddrake.mancala.mancalaml.GameBoard;
+import com.freddrake.mancala.mancalaml.Player;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameMDP;
+import com.freddrake.mancala.mancalaml.engine.reinforcement.GameObservation;
+import org.deeplearning4j.rl4j.mdp.MDP;
+import org.deeplearning4j.rl4j.network.dqn.DQNFactoryStdDense;
+import org.deeplearning4j.rl4j.space.ArrayObservationSpace;
+import org.deeplearning4j.rl4j.space.DiscreteSpace;
+import org.deeplearning4j.rl4j.space.ObservationSpace;
+import org.junit.Test;
+import org.nd4j.linalg.learning.config.Adam;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertTrue;
+
+public class AppConfigurationTests {
+	private static byte[] network() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DQNFactoryStdDense(DQNFactoryStdDense.Configuration.builder()
+				.numLayer(1)
+				.numHiddenNodes(16)
+				.updater(new Adam())
+				.build()).buildDQN(new int[] {12}, 6).save(bytes);
+		return bytes.toByteArray();
+	}
+
+	// Hands out a fresh stream over the same network every time, as the prototype bean does.
+	private static ObjectProvider<InputStream> streams(byte[] network) {
+		return new ObjectProvider<InputStream>() {
+			@Override
+			public InputStream getObject(Object... args) {
+				return getObject();
+			}
+
+			@Override
+			public InputStream getIfAvailable() {
+				return getObject();
+			}
+
+			@Override
+			public InputStream getIfUnique() {
+				return getObject();
+			}
+
+			@Override
+			public InputStream getObject() {
+				return new ByteArrayInputStream(network);
+			}
+		};
+	}
+
+	// Plays the player's first legal move until the opponent has had a turn, and checks from the trace that it moved for player two.
+	private static void assertOpponentPlaysPlayerTwo(MDP<GameObservation, Integer, DiscreteSpace> mdp, GameBoard board) {
+		mdp.reset();
+		for (int step = 0; step < 10 && !mdp.isDone() && !board.getMoveTrace().render().contains("PLAYER_TWO"); step++) {
+			mdp.step(Integer.numberOfTrailingZeros(board.validMoveMask(Player.PLAYER_ONE)));
+		}
+		String trace = board.getMoveTrace().render();
+		assertTrue(trace, trace.contains("PLAYER_TWO location"));
+		assertTrue(trace, !trace.contains("illegal"));
+	}
+
+	@Test
+	public void networkOpponentsMoveForPlayerTwo() throws IOException {
+		AppProperties properties = new AppProperties();
+		properties.setIllegalMoveReward(-100);
+		properties.setMaskIllegalMoves(true);
+		properties.setMoveTraceCapacity(100);
+		AppConfiguration configuration = new AppConfiguration(properties);
+		ObservationSpace<GameObservation> observationSpace = new ArrayObservationSpace<>(new int[] {12});
+		byte[] network = network();
+
+		GameMDP gameMDP = configuration.dqlGameMDP(
+				configuration.dqnEngine(observationSpace, new ByteArrayInputStream(network)),
+				observationSpace, new DiscreteSpace(6), streams(network));
+		assertOpponentPlaysPlayerTwo(gameMDP, gameMDP.getGameBoard());
+
+		GameMDP instance = (GameMDP) gameMDP.newInstance();
+		try {
+			assertOpponentPlaysPlayerTwo(instance, instance.getGameBoard());
+		} finally {
+			instance.close();
+		}
+	}
+}